@@ -0,0 +1,112 @@
+package com.inventario.benchmarks;
+
+import com.inventario.config.Configuracion;
+import com.inventario.facade.ProductoFacade;
+import com.inventario.model.Producto;
+import com.inventario.persistence.MigradorEsquema;
+import com.inventario.persistence.ProductoDAO;
+import org.h2.jdbcx.JdbcConnectionPool;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.SplittableRandom;
+
+/**
+ * Base H2 en memoria (modo MySQL) con el esquema migrado y N productos
+ * generados de forma determinista. Cada instancia usa su propia base.
+ */
+public final class BaseDatos implements AutoCloseable {
+
+    public static final String[] CATEGORIAS = {"Electronicos", "Accesorios", "Muebles", "Ropa"};
+    private static final String[] PALABRAS = {
+        "Silla", "Mesa", "Cable", "Camisa", "Lámpara", "Teclado", "Monitor", "Funda",
+        "Escritorio", "Pantalón", "Cargador", "Estante", "Chaqueta", "Ratón", "Sofá", "Audífonos"
+    };
+    private static final int FILAS_POR_LOTE = 1_000;
+
+    private final JdbcConnectionPool pool;
+    private final ProductoDAO dao = new ProductoDAO();
+    private final int filas;
+
+    public BaseDatos(int filas) throws SQLException {
+        this.filas = filas;
+        this.pool = JdbcConnectionPool.create(
+                "jdbc:h2:mem:bench-" + System.nanoTime()
+                        + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+                "sa", "");
+        pool.setMaxConnections(64);
+        try (Connection con = pool.getConnection()) {
+            new MigradorEsquema().migrar(con);
+        }
+        sembrar();
+    }
+
+    public DataSource ds() { return pool; }
+    public ProductoDAO dao() { return dao; }
+    public int filas() { return filas; }
+
+    /** Fachada con la configuración por defecto salvo el fetch size (H2 no acepta Integer.MIN_VALUE). */
+    public ProductoFacade fachada() {
+        Properties props = new Properties();
+        props.setProperty("inventario.exportacion.fetchSize", "1000");
+        props.setProperty("inventario.conteo.resyncSegundos", "0");
+        return new ProductoFacade(pool, Configuracion.de(props));
+    }
+
+    public static String codigo(int i) {
+        return String.format("SKU%08d", i);
+    }
+
+    /** Producto válido determinista; el código lleva prefijo para no chocar con los sembrados. */
+    public static Producto producto(String prefijo, long i) {
+        SplittableRandom r = new SplittableRandom(i);
+        return new Producto(
+                prefijo + i,
+                PALABRAS[r.nextInt(PALABRAS.length)] + " " + PALABRAS[r.nextInt(PALABRAS.length)] + " " + i,
+                CATEGORIAS[(int) (i % CATEGORIAS.length)],
+                BigDecimal.valueOf(100 + r.nextInt(1_000_000), 2),
+                r.nextInt(500),
+                r.nextInt(10) != 0);
+    }
+
+    private void sembrar() throws SQLException {
+        try (Connection con = pool.getConnection()) {
+            con.setAutoCommit(false);
+            List<Producto> lote = new ArrayList<>(FILAS_POR_LOTE);
+            for (int i = 0; i < filas; i++) {
+                Producto p = producto("", i);
+                p.setCodigo(codigo(i));
+                lote.add(p);
+                if (lote.size() == FILAS_POR_LOTE) {
+                    dao.insertarLote(con, lote, false);
+                    con.commit();
+                    lote.clear();
+                }
+            }
+            if (!lote.isEmpty()) {
+                dao.insertarLote(con, lote, false);
+                con.commit();
+            }
+            try (Statement st = con.createStatement()) {
+                st.execute("ANALYZE");
+            }
+            con.commit();
+        }
+    }
+
+    @Override
+    public void close() {
+        try (Connection con = pool.getConnection(); Statement st = con.createStatement()) {
+            st.execute("SHUTDOWN");
+        } catch (SQLException ignore) {
+            // la base ya no existe
+        }
+        pool.dispose();
+    }
+}
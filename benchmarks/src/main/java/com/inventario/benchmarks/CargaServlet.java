@@ -0,0 +1,198 @@
+package com.inventario.benchmarks;
+
+import com.inventario.config.Configuracion;
+import com.inventario.controller.EjecutorPeticiones;
+import com.inventario.controller.ProductoServlet;
+import com.inventario.facade.ProductoFacade;
+import com.inventario.metricas.HistogramaLatencia;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Prueba de carga de ProductoServlet en modo síncrono y asíncrono (hilos
+ * virtuales). No es un benchmark JMH: simula el contenedor con un pool fijo de
+ * hilos de plataforma (los workers HTTP de GlassFish) y un DataSource con pool
+ * acotado y latencia de red artificial por conexión, y mide desde que la
+ * petición entra en la cola del contenedor hasta el forward / dispatch al JSP.
+ *
+ *   java -cp benchmarks/target/benchmarks.jar com.inventario.benchmarks.CargaServlet \
+ *        filas=100000 clientes=200 trabajadores=16 conexiones=32 latenciaMs=5 segundos=15
+ *
+ * Mezcla: 80 % list (primera página por cursor), 20 % search por código al azar.
+ */
+public final class CargaServlet {
+
+    private CargaServlet() { }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> op = new HashMap<>();
+        for (String a : args) {
+            int i = a.indexOf('=');
+            if (i > 0) op.put(a.substring(0, i), a.substring(i + 1));
+        }
+        int filas = Integer.parseInt(op.getOrDefault("filas", "100000"));
+        int clientes = Integer.parseInt(op.getOrDefault("clientes", "200"));
+        int trabajadores = Integer.parseInt(op.getOrDefault("trabajadores", "16"));
+        int conexiones = Integer.parseInt(op.getOrDefault("conexiones", "32"));
+        long latenciaMs = Long.parseLong(op.getOrDefault("latenciaMs", "5"));
+        int segundos = Integer.parseInt(op.getOrDefault("segundos", "15"));
+
+        System.out.printf("filas=%d clientes=%d trabajadores=%d conexiones=%d latenciaMs=%d segundos=%d%n",
+                filas, clientes, trabajadores, conexiones, latenciaMs, segundos);
+        System.out.printf("%-10s %10s %12s %10s %10s %10s %8s%n",
+                "modo", "peticiones", "pet/s", "p50 ms", "p99 ms", "max ms", "503");
+
+        try (BaseDatos bd = new BaseDatos(filas)) {
+            DataSource lento = conLatencia(bd.ds(), conexiones, latenciaMs);
+            for (boolean asincrono : new boolean[] {false, true}) {
+                ProductoFacade facade = new ProductoFacade(lento, fachadaConfig());
+                EjecutorPeticiones ejecutor = asincrono ? new EjecutorPeticiones(conexiones, 1000, 30_000) : null;
+                Map<String, Object> attrs = new HashMap<>();
+                attrs.put(ProductoFacade.ATRIBUTO, facade);
+                if (ejecutor != null) attrs.put(EjecutorPeticiones.ATRIBUTO, ejecutor);
+                ServletContext ctx = Simulados.contexto(attrs);
+                ProductoServlet servlet = new ProductoServlet();
+                servlet.init(Simulados.config(ctx, "ProductoServlet"));
+                try {
+                    correr(servlet, ctx, filas, clientes, trabajadores, 2, null);     // calentamiento
+                    Resultado r = new Resultado();
+                    correr(servlet, ctx, filas, clientes, trabajadores, segundos, r);
+                    System.out.printf("%-10s %10d %12.1f %10.2f %10.2f %10.2f %8d%n",
+                            asincrono ? "asincrono" : "sincrono", r.latencias.cuenta(),
+                            r.latencias.cuenta() / (double) segundos,
+                            r.latencias.percentil(0.50) / 1e6, r.latencias.percentil(0.99) / 1e6,
+                            r.latencias.maximoNanos() / 1e6, r.rechazadas.sum());
+                } finally {
+                    servlet.destroy();
+                    if (ejecutor != null) ejecutor.close();
+                    facade.cerrar();
+                }
+            }
+        }
+    }
+
+    private static final class Resultado {
+        final HistogramaLatencia latencias = new HistogramaLatencia();
+        final LongAdder rechazadas = new LongAdder();
+    }
+
+    /* Clientes en lazo cerrado contra un pool fijo de "workers HTTP" durante 'segundos' */
+    private static void correr(ProductoServlet servlet, ServletContext ctx, int filas, int clientes,
+                               int trabajadores, int segundos, Resultado r) throws InterruptedException {
+        ExecutorService contenedor = Executors.newFixedThreadPool(trabajadores);
+        ExecutorService usuarios = Executors.newVirtualThreadPerTaskExecutor();
+        AtomicBoolean seguir = new AtomicBoolean(true);
+        for (int c = 0; c < clientes; c++) {
+            usuarios.execute(() -> {
+                while (seguir.get()) {
+                    long inicio = System.nanoTime();
+                    CompletableFuture<Void> fin = new CompletableFuture<>();
+                    HttpServletRequest req = Simulados.peticion(ctx, "/productos", parametros(filas),
+                            () -> fin.complete(null));
+                    HttpServletResponse resp = Simulados.respuesta();
+                    contenedor.execute(() -> {
+                        try {
+                            servlet.service(req, resp);
+                            if (!req.isAsyncStarted()) fin.complete(null);
+                        } catch (Exception e) {
+                            fin.completeExceptionally(e);
+                        }
+                    });
+                    try {
+                        fin.get();
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                        return;
+                    }
+                    if (r != null) {
+                        r.latencias.registrar(System.nanoTime() - inicio);
+                        if (resp.getStatus() == HttpServletResponse.SC_SERVICE_UNAVAILABLE) r.rechazadas.increment();
+                    }
+                }
+            });
+        }
+        TimeUnit.SECONDS.sleep(segundos);
+        seguir.set(false);
+        usuarios.shutdown();
+        usuarios.awaitTermination(1, TimeUnit.MINUTES);
+        contenedor.shutdown();
+        contenedor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    private static Map<String, String> parametros(int filas) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        if (rnd.nextInt(5) != 0) return Map.of();
+        return Map.of("action", "search", "codigo", BaseDatos.codigo(rnd.nextInt(filas)));
+    }
+
+    private static Configuracion fachadaConfig() {
+        Properties props = new Properties();
+        props.setProperty("inventario.exportacion.fetchSize", "1000");
+        props.setProperty("inventario.conteo.resyncSegundos", "0");
+        props.setProperty("inventario.analitica.habilitada", "false");
+        // Sin cache: cada búsqueda va a la base, como con códigos que no se repiten
+        props.setProperty("inventario.cache.ttlSegundos", "0");
+        props.setProperty("inventario.cache.ttlNegativoSegundos", "0");
+        return Configuracion.de(props);
+    }
+
+    /*
+     * DataSource con 'conexiones' como máximo (espera si no hay, como el pool de
+     * GlassFish) y 'latenciaMs' de espera al obtener cada conexión, en lugar del
+     * viaje de red a MySQL que H2 en memoria no tiene.
+     */
+    private static DataSource conLatencia(DataSource ds, int conexiones, long latenciaMs) {
+        Semaphore pool = new Semaphore(conexiones, true);
+        return (DataSource) Proxy.newProxyInstance(CargaServlet.class.getClassLoader(), new Class<?>[] {DataSource.class},
+                (p, m, a) -> {
+                    if (!m.getName().equals("getConnection")) return invocar(m, ds, a);
+                    pool.acquire();
+                    Connection con;
+                    try {
+                        TimeUnit.MILLISECONDS.sleep(latenciaMs);
+                        con = (Connection) invocar(m, ds, a);
+                    } catch (Throwable t) {
+                        pool.release();
+                        throw t;
+                    }
+                    AtomicBoolean cerrada = new AtomicBoolean();
+                    return Proxy.newProxyInstance(CargaServlet.class.getClassLoader(), new Class<?>[] {Connection.class},
+                            (pc, mc, ac) -> {
+                                if (mc.getName().equals("close") && cerrada.compareAndSet(false, true)) {
+                                    try {
+                                        return invocar(mc, con, ac);
+                                    } finally {
+                                        pool.release();
+                                    }
+                                }
+                                return invocar(mc, con, ac);
+                            });
+                });
+    }
+
+    private static Object invocar(Method m, Object destino, Object[] args) throws Throwable {
+        try {
+            return m.invoke(destino, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
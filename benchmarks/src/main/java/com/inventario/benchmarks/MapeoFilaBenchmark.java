@@ -0,0 +1,88 @@
+package com.inventario.benchmarks;
+
+import com.inventario.model.Producto;
+import com.inventario.model.ProductoVista;
+import com.inventario.persistence.MapeadorFila;
+import com.inventario.persistence.ProductoDAO;
+import org.h2.tools.SimpleResultSet;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coste de mapear filas a objetos, aislado del driver: un ResultSet en
+ * memoria (H2 SimpleResultSet, devuelve los valores ya construidos) con
+ * 'filas' filas. Pensado para correr con -prof gc y comparar gc.alloc.rate.norm:
+ *
+ *   java -jar benchmarks/target/benchmarks.jar MapeoFila -prof gc
+ *
+ * porNombre reproduce el mapRow anterior (columnas por etiqueta).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MapeoFilaBenchmark {
+
+    @Param({"1000"})
+    public int filas;
+
+    private SimpleResultSet rs;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        rs = new SimpleResultSet();
+        rs.setAutoClose(false);
+        rs.addColumn("id", Types.INTEGER, 10, 0);
+        rs.addColumn("codigo", Types.VARCHAR, 50, 0);
+        rs.addColumn("nombre", Types.VARCHAR, 150, 0);
+        rs.addColumn("categoria", Types.VARCHAR, 50, 0);
+        rs.addColumn("precio", Types.DECIMAL, 12, 2);
+        rs.addColumn("stock", Types.INTEGER, 10, 0);
+        rs.addColumn("activo", Types.BOOLEAN, 1, 0);
+        for (int i = 0; i < filas; i++) {
+            Producto p = BaseDatos.producto("", 1_000 + i);
+            // new String: cada fila trae su propia instancia, como al leer del driver
+            rs.addRow(1_000 + i, BaseDatos.codigo(i), p.getNombre(), new String(p.getCategoria()),
+                    p.getPrecio(), p.getStock() + 1_000, p.getActivo());
+        }
+    }
+
+    @Benchmark
+    public void porNombre(Blackhole bh) throws SQLException {
+        recorrer(bh, MapeoFilaBenchmark::mapRowPorNombre);
+    }
+
+    @Benchmark
+    public void producto(Blackhole bh) throws SQLException {
+        recorrer(bh, ProductoDAO.PRODUCTO);
+    }
+
+    @Benchmark
+    public void vista(Blackhole bh) throws SQLException {
+        recorrer(bh, ProductoDAO.VISTA);
+    }
+
+    private void recorrer(Blackhole bh, MapeadorFila<?> mapeador) throws SQLException {
+        rs.beforeFirst();
+        while (rs.next()) bh.consume(mapeador.mapear(rs));
+    }
+
+    private static Producto mapRowPorNombre(ResultSet rs) throws SQLException {
+        Producto p = new Producto();
+        p.setId(rs.getInt("id"));
+        p.setCodigo(rs.getString("codigo"));
+        p.setNombre(rs.getString("nombre"));
+        p.setCategoria(rs.getString("categoria"));
+        p.setPrecio(rs.getBigDecimal("precio"));
+        p.setStock(rs.getInt("stock"));
+        p.setActivo(rs.getBoolean("activo"));
+        return p;
+    }
+}
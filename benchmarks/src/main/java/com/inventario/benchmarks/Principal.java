@@ -0,0 +1,29 @@
+package com.inventario.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Punto de entrada de benchmarks.jar: acepta las opciones habituales de JMH
+ * y, si no se indica otra cosa, deja los resultados en jmh-resultados.json
+ * para poder compararlos entre versiones.
+ */
+public final class Principal {
+
+    private Principal() { }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        if (cli.shouldHelp() || cli.shouldList() || cli.shouldListProfilers() || cli.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        ChainedOptionsBuilder opciones = new OptionsBuilder().parent(cli);
+        if (!cli.getResultFormat().hasValue()) opciones.resultFormat(ResultFormatType.JSON);
+        if (!cli.getResult().hasValue()) opciones.result("jmh-resultados.json");
+        new Runner(opciones.build()).run();
+    }
+}
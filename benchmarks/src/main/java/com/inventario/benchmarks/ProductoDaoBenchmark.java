@@ -0,0 +1,112 @@
+package com.inventario.benchmarks;
+
+import com.inventario.model.CursorProducto;
+import com.inventario.model.Producto;
+import com.inventario.persistence.ProductoDAO;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ProductoDAO contra H2: listado en página inicial y profunda (OFFSET y keyset),
+ * búsqueda por código, conteo e inserción simple y por lotes. Cada operación
+ * incluye pedir y devolver la conexión al pool, como en la fachada.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProductoDaoBenchmark {
+
+    private static final int LIMITE = 20;
+
+    @Param({"10000", "100000"})
+    public int filas;
+
+    private BaseDatos bd;
+    private ProductoDAO dao;
+    private CursorProducto cursorProfundo;
+    private final AtomicLong secuencia = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void preparar() throws Exception {
+        bd = new BaseDatos(filas);
+        dao = bd.dao();
+        try (Connection con = bd.ds().getConnection()) {
+            Producto p = dao.listar(con, 1, filas - LIMITE - 1).get(0);
+            cursorProfundo = CursorProducto.despuesDe(p);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        bd.close();
+    }
+
+    @Benchmark
+    public List<Producto> listarPrimeraPagina() throws Exception {
+        try (Connection con = bd.ds().getConnection()) {
+            return dao.listar(con, LIMITE, 0);
+        }
+    }
+
+    @Benchmark
+    public List<Producto> listarPaginaProfundaOffset() throws Exception {
+        try (Connection con = bd.ds().getConnection()) {
+            return dao.listar(con, LIMITE, filas - LIMITE);
+        }
+    }
+
+    @Benchmark
+    public List<Producto> listarPaginaProfundaKeyset() throws Exception {
+        try (Connection con = bd.ds().getConnection()) {
+            return dao.listarKeyset(con, cursorProfundo, LIMITE);
+        }
+    }
+
+    @Benchmark
+    public Optional<Producto> buscarPorCodigo() throws Exception {
+        String codigo = BaseDatos.codigo(ThreadLocalRandom.current().nextInt(filas));
+        try (Connection con = bd.ds().getConnection()) {
+            return dao.buscarPorCodigo(con, codigo);
+        }
+    }
+
+    @Benchmark
+    public int contar() throws Exception {
+        try (Connection con = bd.ds().getConnection()) {
+            return dao.contar(con);
+        }
+    }
+
+    @Benchmark
+    public Producto insertar() throws Exception {
+        Producto p = BaseDatos.producto("DAO", secuencia.incrementAndGet());
+        try (Connection con = bd.ds().getConnection()) {
+            dao.insertar(con, p);
+        }
+        return p;
+    }
+
+    /** Un lote de 1000 filas en una transacción (INSERT multi-fila). */
+    @Benchmark
+    @OperationsPerInvocation(1_000)
+    public int insertarLote() throws Exception {
+        List<Producto> lote = new ArrayList<>(1_000);
+        for (int i = 0; i < 1_000; i++) lote.add(BaseDatos.producto("LOT", secuencia.incrementAndGet()));
+        try (Connection con = bd.ds().getConnection()) {
+            con.setAutoCommit(false);
+            int n = dao.insertarLote(con, lote, false);
+            con.commit();
+            return n;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.inventario.benchmarks;
+
+import com.inventario.facade.ProductoFacade;
+import com.inventario.formato.FilaProducto;
+import com.inventario.formato.FuenteProductos;
+import com.inventario.model.Pagina;
+import com.inventario.model.Producto;
+import com.inventario.model.ProductoVista;
+import com.inventario.model.ResumenImportacion;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ProductoFacade: lo que ve el servlet, con cache y contador incluidos.
+ * eliminar se mide como crear + eliminar (la diferencia con crear es el borrado),
+ * para no depender de un stock de filas que se agota a mitad de la iteración.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProductoFacadeBenchmark {
+
+    @Param({"10000", "100000"})
+    public int filas;
+
+    private BaseDatos bd;
+    private ProductoFacade facade;
+    private final AtomicLong secuencia = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void preparar() throws Exception {
+        bd = new BaseDatos(filas);
+        facade = bd.fachada();
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        facade.cerrar();
+        bd.close();
+    }
+
+    @Benchmark
+    public List<ProductoVista> listarPrimeraPagina() throws Exception {
+        return facade.listar(20, 0);
+    }
+
+    @Benchmark
+    public List<ProductoVista> listarPaginaProfunda() throws Exception {
+        return facade.listar(20, filas - 20);
+    }
+
+    @Benchmark
+    public Pagina<ProductoVista> listarPorCursor() throws Exception {
+        return facade.listarPorCursor(null, 20);
+    }
+
+    /** Códigos al azar: mezcla de aciertos y fallos de cache según la capacidad. */
+    @Benchmark
+    public Optional<Producto> buscarPorCodigo() throws Exception {
+        return facade.buscarPorCodigo(BaseDatos.codigo(ThreadLocalRandom.current().nextInt(filas)));
+    }
+
+    @Benchmark
+    public int contar() throws Exception {
+        return facade.contar();
+    }
+
+    @Benchmark
+    public Producto crear() throws Exception {
+        Producto p = BaseDatos.producto("FAC", secuencia.incrementAndGet());
+        facade.crear(p);
+        return p;
+    }
+
+    @Benchmark
+    public void crearYEliminar() throws Exception {
+        Producto p = BaseDatos.producto("DEL", secuencia.incrementAndGet());
+        facade.crear(p);
+        facade.eliminar(p.getId());
+    }
+
+    /** Importación masiva de 1000 filas (lotes multi-fila, invalida cache y contador). */
+    @Benchmark
+    @OperationsPerInvocation(1_000)
+    public ResumenImportacion importar() throws Exception {
+        long base = secuencia.getAndAdd(1_000);
+        FuenteProductos fuente = new FuenteProductos() {
+            private int fila;
+
+            @Override
+            public FilaProducto siguiente() {
+                if (fila == 1_000) return null;
+                fila++;
+                return new FilaProducto(fila, BaseDatos.producto("IMP", base + fila), null);
+            }
+
+            @Override
+            public void close() { }
+        };
+        return facade.importar(fuente, false, error -> { });
+    }
+}
@@ -0,0 +1,74 @@
+package com.inventario.benchmarks;
+
+import com.inventario.controller.ProductoServlet;
+import com.inventario.facade.ProductoFacade;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Camino completo de ProductoServlet.doGet (parámetros, fachada, atributos
+ * para el JSP) con petición y respuesta simuladas. No incluye el render del JSP.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProductoServletBenchmark {
+
+    @Param({"10000", "100000"})
+    public int filas;
+
+    private BaseDatos bd;
+    private ProductoFacade facade;
+    private ServletContext ctx;
+    private ProductoServlet servlet;
+    private String paginaProfunda;
+
+    @Setup(Level.Trial)
+    public void preparar() throws Exception {
+        bd = new BaseDatos(filas);
+        facade = bd.fachada();
+        ctx = Simulados.contexto(Map.of(ProductoFacade.ATRIBUTO, facade));
+        servlet = new ProductoServlet();
+        servlet.init(Simulados.config(ctx, "ProductoServlet"));
+        paginaProfunda = Integer.toString(filas / 10);    // límite 10 por página en el servlet
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        servlet.destroy();
+        facade.cerrar();
+        bd.close();
+    }
+
+    private HttpServletResponse get(Map<String, String> params) throws Exception {
+        HttpServletRequest req = Simulados.peticion(ctx, "/productos", params);
+        HttpServletResponse resp = Simulados.respuesta();
+        servlet.service(req, resp);
+        return resp;
+    }
+
+    @Benchmark
+    public HttpServletResponse listar() throws Exception {
+        return get(Map.of());
+    }
+
+    @Benchmark
+    public HttpServletResponse listarPaginaProfunda() throws Exception {
+        return get(Map.of("page", paginaProfunda));
+    }
+
+    @Benchmark
+    public HttpServletResponse buscar() throws Exception {
+        String codigo = BaseDatos.codigo(ThreadLocalRandom.current().nextInt(filas));
+        return get(Map.of("action", "search", "codigo", codigo));
+    }
+}
@@ -0,0 +1,141 @@
+package com.inventario.benchmarks;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.RequestDispatcher;
+import jakarta.servlet.ServletConfig;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Objetos del API de Servlet simulados con proxies dinámicos: lo justo para
+ * recorrer init/service de los servlets fuera del contenedor. forward no
+ * renderiza el JSP; solo registra a dónde se envió la petición. Las peticiones
+ * con alTerminar admiten startAsync: dispatch / complete lo invocan.
+ */
+public final class Simulados {
+
+    private Simulados() { }
+
+    /** Manejador reducido: nombre del método y argumentos. */
+    @FunctionalInterface
+    interface Manejador {
+        Object invocar(String metodo, Object[] args) throws Exception;
+    }
+
+    private static final Object NO_MANEJADO = new Object();
+
+    @SuppressWarnings("unchecked")
+    static <T> T proxy(Class<T> tipo, Manejador h) {
+        return (T) Proxy.newProxyInstance(Simulados.class.getClassLoader(), new Class<?>[] {tipo}, (p, m, args) -> {
+            Object r = h.invocar(m.getName(), args == null ? new Object[0] : args);
+            if (r != NO_MANEJADO) return r;
+            Class<?> rt = m.getReturnType();
+            if (rt == boolean.class) return false;
+            if (rt == int.class) return 0;
+            if (rt == long.class) return 0L;
+            return null;
+        });
+    }
+
+    public static ServletContext contexto(Map<String, Object> atributos) {
+        Map<String, Object> attrs = new ConcurrentHashMap<>(atributos);
+        return proxy(ServletContext.class, (m, a) -> switch (m) {
+            case "getAttribute" -> attrs.get((String) a[0]);
+            case "setAttribute" -> { attrs.put((String) a[0], a[1]); yield null; }
+            case "getInitParameter" -> null;
+            case "getContextPath" -> "/inventario";
+            case "log" -> null;
+            default -> NO_MANEJADO;
+        });
+    }
+
+    public static ServletConfig config(ServletContext ctx, String nombre) {
+        return proxy(ServletConfig.class, (m, a) -> switch (m) {
+            case "getServletContext" -> ctx;
+            case "getServletName" -> nombre;
+            case "getInitParameterNames" -> Collections.emptyEnumeration();
+            default -> NO_MANEJADO;
+        });
+    }
+
+    /** Petición GET con los parámetros dados; los atributos viven en un HashMap. */
+    public static HttpServletRequest peticion(ServletContext ctx, String servletPath, Map<String, String> params) {
+        return peticion(ctx, servletPath, params, null);
+    }
+
+    /** Como peticion, con soporte de startAsync si alTerminar no es null (se llama al dispatch / complete). */
+    public static HttpServletRequest peticion(ServletContext ctx, String servletPath, Map<String, String> params,
+                                              Runnable alTerminar) {
+        Map<String, Object> attrs = new HashMap<>();
+        boolean[] asincrona = {false};
+        AsyncContext async = proxy(AsyncContext.class, (m, a) -> switch (m) {
+            case "dispatch", "complete" -> {
+                attrs.put("__forward", Boolean.TRUE);
+                alTerminar.run();
+                yield null;
+            }
+            case "setTimeout", "addListener" -> null;
+            default -> NO_MANEJADO;
+        });
+        HttpSession sesion = proxy(HttpSession.class, (m, a) -> switch (m) {
+            case "getAttribute", "setAttribute", "removeAttribute" -> null;
+            default -> NO_MANEJADO;
+        });
+        RequestDispatcher dispatcher = proxy(RequestDispatcher.class, (m, a) -> {
+            if (m.equals("forward")) {
+                attrs.put("__forward", Boolean.TRUE);
+                return null;
+            }
+            return NO_MANEJADO;
+        });
+        return proxy(HttpServletRequest.class, (m, a) -> switch (m) {
+            case "getMethod" -> "GET";
+            case "getProtocol" -> "HTTP/1.1";
+            case "getServletPath" -> servletPath;
+            case "getContextPath" -> "/inventario";
+            case "getRequestURI" -> "/inventario" + servletPath;
+            case "getParameter" -> params.get((String) a[0]);
+            case "isAsyncSupported" -> alTerminar != null;
+            case "isAsyncStarted" -> asincrona[0];
+            case "startAsync" -> {
+                if (alTerminar == null) throw new IllegalStateException("startAsync no soportado");
+                asincrona[0] = true;
+                yield async;
+            }
+            case "getAsyncContext" -> asincrona[0] ? async : null;
+            case "getAttribute" -> attrs.get((String) a[0]);
+            case "setAttribute" -> { attrs.put((String) a[0], a[1]); yield null; }
+            case "removeAttribute" -> attrs.remove((String) a[0]);
+            case "getSession" -> sesion;
+            case "getRequestDispatcher" -> dispatcher;
+            case "getServletContext" -> ctx;
+            case "getHeader", "getDateHeader" -> m.equals("getDateHeader") ? -1L : null;
+            case "setCharacterEncoding" -> null;
+            default -> NO_MANEJADO;
+        });
+    }
+
+    /** Respuesta que descarta el cuerpo. */
+    public static HttpServletResponse respuesta() {
+        int[] status = {200};
+        PrintWriter nulo = new PrintWriter(Writer.nullWriter());
+        return proxy(HttpServletResponse.class, (m, a) -> switch (m) {
+            case "getStatus" -> status[0];
+            case "setStatus", "sendError" -> { status[0] = (Integer) a[0]; yield null; }
+            case "sendRedirect" -> { status[0] = 302; yield null; }
+            case "getWriter" -> nulo;
+            case "isCommitted" -> false;
+            default -> NO_MANEJADO;
+        });
+    }
+}
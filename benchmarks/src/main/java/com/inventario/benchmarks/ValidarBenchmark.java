@@ -0,0 +1,74 @@
+package com.inventario.benchmarks;
+
+import com.inventario.facade.ProductoFacade;
+import com.inventario.model.Producto;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validación de ProductoFacade, sin tocar la base. valido pasa todas las
+ * reglas (ProductoFacade.validar, el camino habitual de crear e importar);
+ * primeraRegla y ultimaRegla van por crear con productos que se rechazan antes
+ * de abrir transacción: falla la primera regla (código corto) o la última
+ * (stock negativo), que recorre todas, y el coste lo domina la excepción.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidarBenchmark {
+
+    private BaseDatos bd;
+    private ProductoFacade facade;
+    private Producto valido;
+    private Producto primeraRegla;
+    private Producto ultimaRegla;
+
+    @Setup
+    public void preparar() throws Exception {
+        // La validación no toca la base; basta una vacía para construir la fachada
+        bd = new BaseDatos(0);
+        facade = bd.fachada();
+        valido = new Producto("VAL42", "Silla plegable", "Muebles", BigDecimal.ONE, 1, true);
+        primeraRegla = new Producto("V", "Silla plegable", "Muebles", BigDecimal.ONE, 1, true);
+        ultimaRegla = new Producto("VAL43", "Silla plegable", "Muebles", BigDecimal.ONE, -1, true);
+    }
+
+    @TearDown
+    public void cerrar() {
+        facade.cerrar();
+        bd.close();
+    }
+
+    @Benchmark
+    public Producto valido() throws Exception {
+        facade.validar(valido);
+        return valido;
+    }
+
+    @Benchmark
+    public void primeraRegla(Blackhole bh) {
+        rechazar(primeraRegla, bh);
+    }
+
+    @Benchmark
+    public void ultimaRegla(Blackhole bh) {
+        rechazar(ultimaRegla, bh);
+    }
+
+    private void rechazar(Producto p, Blackhole bh) {
+        try {
+            facade.crear(p);
+            throw new IllegalStateException("La validación debía rechazar " + p.getCodigo());
+        } catch (IllegalStateException e) {
+            throw e;
+        } catch (Exception e) {
+            bh.consume(e);
+        }
+    }
+}
@@ -9,7 +9,8 @@ CREATE USER 'inv_user'@'localhost' IDENTIFIED BY 'inv_pass';
 GRANT ALL PRIVILEGES ON inventario_db.* TO 'inv_user'@'localhost';
 FLUSH PRIVILEGES;
 
--- Crear tabla productos
+-- Crear tabla productos (esquema inicial). El resto de columnas, índices y
+-- tablas los crea MigradorEsquema al desplegar; no se añaden aquí
 CREATE TABLE productos (
     id INT AUTO_INCREMENT PRIMARY KEY,
     codigo VARCHAR(32) NOT NULL UNIQUE,
@@ -20,7 +21,8 @@ CREATE TABLE productos (
     activo TINYINT(1) NOT NULL DEFAULT 1,
 
     INDEX idx_codigo (codigo),
-    INDEX idx_categoria (categoria)
+    INDEX idx_categoria (categoria),
+    INDEX idx_nombre (nombre, id)
 );
 
 -- Insertar datos de prueba
@@ -0,0 +1,198 @@
+package com.inventario.analitica;
+
+import com.inventario.model.Cambio;
+import com.inventario.persistence.ProductoDAO;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Mantiene la Instantanea columnar de productos para consultas analíticas.
+ * Un hilo de fondo la refresca de forma incremental, fusionando por id:
+ * - las filas con actualizado_en desde la marca de la instantánea menos
+ *   margenMs (las lápidas se quitan);
+ * - los ids pasados a productos_archivo en ese intervalo (lápidas purgadas y
+ *   códigos liberados para una nueva alta), que se quitan;
+ * - con el feed de cambios, los ids de cada cambio publicado, releídos por id:
+ *   el feed publica en orden de commit, así que cubre también las
+ *   transacciones que confirman más de margenMs después de escribir.
+ * Sin feed, una de esas transacciones largas solo entra con la reconstrucción
+ * completa periódica, que además recoge lo borrado por fuera de la aplicación.
+ * La nueva instantánea se publica con una escritura volatile: los lectores
+ * nunca se bloquean y ven siempre una copia coherente.
+ */
+public class AnaliticaInventario implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(AnaliticaInventario.class.getName());
+
+    /* Ids del feed pendientes de releer; pasado esto se reconstruye completa */
+    private static final int MAX_PENDIENTES = 100_000;
+
+    private final DataSource ds;
+    private final ProductoDAO dao;
+    private final int fetchSize;
+    private final long reconstruirCadaMs;
+    private final long margenMs;
+    private final Set<Integer> pendientes = ConcurrentHashMap.newKeySet();
+    private volatile boolean desbordado;
+
+    private volatile Instantanea actual;
+    private long ultimaCompletaMs;      // solo bajo el monitor de refrescar()
+
+    private final AtomicLong incrementales = new AtomicLong();
+    private final AtomicLong completas = new AtomicLong();
+    private final AtomicLong filasLeidas = new AtomicLong();
+    private final AtomicLong errores = new AtomicLong();
+    private volatile long duracionUltimoMs;
+
+    private ScheduledExecutorService planificador;
+
+    /**
+     * @param margenMs solape al pedir filas por actualizado_en: cubre las transacciones
+     *                 que confirman hasta ese tiempo después de escribir
+     */
+    public AnaliticaInventario(DataSource ds, ProductoDAO dao, int fetchSize, long reconstruirCadaMinutos,
+                               long margenMs) {
+        this.ds = ds;
+        this.dao = dao;
+        this.fetchSize = fetchSize;
+        this.reconstruirCadaMs = TimeUnit.MINUTES.toMillis(reconstruirCadaMinutos);
+        this.margenMs = Math.max(0, margenMs);
+    }
+
+    /** Suscriptor del feed de cambios: anota los ids para releerlos en el próximo refresco. */
+    public void cambiosRecibidos(List<Cambio> cambios) {
+        if (desbordado) return;
+        for (Cambio c : cambios) pendientes.add(c.productoId());
+        if (pendientes.size() > MAX_PENDIENTES) {
+            desbordado = true;
+            pendientes.clear();
+        }
+    }
+
+    /** Arranca el refresco periódico (segundos <= 0 lo desactiva; se refresca al consultar la primera vez). */
+    public synchronized void iniciar(long segundos) {
+        if (segundos <= 0 || planificador != null) return;
+        planificador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "inventario-analitica");
+            t.setDaemon(true);
+            return t;
+        });
+        planificador.scheduleWithFixedDelay(() -> {
+            try {
+                refrescar();
+            } catch (Exception e) {
+                errores.incrementAndGet();
+                LOG.log(Level.WARNING, "[Analítica] No se pudo refrescar la instantánea", e);
+            }
+        }, 0, segundos, TimeUnit.SECONDS);
+    }
+
+    /** Instantánea vigente; si aún no hay ninguna se construye en este hilo. */
+    public Instantanea instantanea() throws SQLException {
+        Instantanea i = actual;
+        if (i != null) return i;
+        synchronized (this) {
+            if (actual == null) refrescar();
+            return actual;
+        }
+    }
+
+    /** Refresca la instantánea (incremental si es posible). */
+    public synchronized void refrescar() throws SQLException {
+        long t0 = System.currentTimeMillis();
+        Instantanea previa = actual;
+        Instantanea nueva;
+        boolean completa = previa == null || previa.marca == null || desbordado
+                || t0 - ultimaCompletaMs >= reconstruirCadaMs;
+        List<Integer> releer = new ArrayList<>();
+        if (completa) {
+            // Lo anotado hasta aquí ya confirmó: lo ve la lectura completa
+            desbordado = false;
+            pendientes.clear();
+        } else {
+            for (Iterator<Integer> it = pendientes.iterator(); it.hasNext(); ) {
+                releer.add(it.next());
+                it.remove();
+            }
+        }
+        try (Connection con = ds.getConnection()) {
+            if (completa) {
+                nueva = leer(con, new String[0], null).construir(t0);
+                ultimaCompletaMs = t0;
+                completas.incrementAndGet();
+            } else {
+                Timestamp desde = new Timestamp(previa.marca.getTime() - margenMs);
+                nueva = leer(con, previa.diccionario, desde).fusionarCon(previa, t0);
+                Set<Integer> ids = new TreeSet<>(releer);
+                ids.addAll(dao.idsArchivados(con, desde));
+                if (!ids.isEmpty()) nueva = leerIds(con, nueva.diccionario, new ArrayList<>(ids)).fusionarCon(nueva, t0);
+                incrementales.incrementAndGet();
+            }
+        } catch (SQLException | RuntimeException e) {
+            pendientes.addAll(releer);
+            throw e;
+        }
+        actual = nueva;
+        duracionUltimoMs = System.currentTimeMillis() - t0;
+    }
+
+    private ConstructorInstantanea leer(Connection con, String[] diccionario, Timestamp desde) throws SQLException {
+        ConstructorInstantanea c = new ConstructorInstantanea(diccionario);
+        filasLeidas.addAndGet(dao.recorrerCambios(con, desde, fetchSize, c::agregar));
+        return c;
+    }
+
+    /* Relee por id (ordenados); los que ya no están en productos se quitan */
+    private ConstructorInstantanea leerIds(Connection con, String[] diccionario, List<Integer> ids) throws SQLException {
+        ConstructorInstantanea c = new ConstructorInstantanea(diccionario);
+        int[] siguiente = {0};
+        filasLeidas.addAndGet(dao.recorrerPorIds(con, ids, rs -> {
+            int id = rs.getInt(1);
+            while (ids.get(siguiente[0]) < id) c.quitar(ids.get(siguiente[0]++));
+            siguiente[0]++;
+            c.agregar(rs);
+        }));
+        while (siguiente[0] < ids.size()) c.quitar(ids.get(siguiente[0]++));
+        return c;
+    }
+
+    /** Contadores y edad de la instantánea vigente. */
+    public Map<String, Long> estadisticas() {
+        Instantanea i = actual;
+        Map<String, Long> m = new LinkedHashMap<>();
+        m.put("filas", i == null ? 0L : i.filas);
+        m.put("edadMs", i == null ? -1L : System.currentTimeMillis() - i.tomadaEnMillis);
+        m.put("refrescosIncrementales", incrementales.get());
+        m.put("idsPendientes", (long) pendientes.size());
+        m.put("reconstrucciones", completas.get());
+        m.put("filasLeidas", filasLeidas.get());
+        m.put("errores", errores.get());
+        m.put("duracionUltimoMs", duracionUltimoMs);
+        return m;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (planificador != null) {
+            planificador.shutdownNow();
+            planificador = null;
+        }
+    }
+}
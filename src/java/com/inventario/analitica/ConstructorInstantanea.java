@@ -0,0 +1,141 @@
+package com.inventario.analitica;
+
+import com.inventario.model.ProductoVista;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Acumula filas (en orden de id) en columnas que crecen por duplicación y
+ * produce una Instantanea; también fusiona un delta sobre una instantánea previa.
+ */
+final class ConstructorInstantanea {
+
+    private int filas;
+    private int[] ids = new int[1024];
+    private String[] codigos = new String[1024];
+    private String[] nombres = new String[1024];
+    private long[] centavos = new long[1024];
+    private int[] stocks = new int[1024];
+    private int[] categorias = new int[1024];
+    private final BitSet activos = new BitSet();
+    private final BitSet bajas = new BitSet();      // lápidas del delta (eliminado = 1)
+    private final Map<String, Integer> codigosCategoria = new HashMap<>();
+    private String[] diccionario;
+    private Timestamp marca;
+
+    /** @param diccionario diccionario de partida (el de la instantánea previa, para conservar los códigos) */
+    ConstructorInstantanea(String[] diccionario) {
+        this.diccionario = diccionario.clone();
+        for (int i = 0; i < diccionario.length; i++) codigosCategoria.put(diccionario[i], i);
+    }
+
+    /** Columnas como ProductoDAO.recorrerCambios. */
+    void agregar(ResultSet rs) throws SQLException {
+        if (filas == ids.length) crecer();
+        ids[filas] = rs.getInt(1);
+        codigos[filas] = rs.getString(2);
+        nombres[filas] = rs.getString(3);
+        categorias[filas] = codigoCategoria(rs.getString(4));
+        BigDecimal precio = rs.getBigDecimal(5);
+        centavos[filas] = precio == null ? 0 : ProductoVista.centavos(precio);
+        stocks[filas] = rs.getInt(6);
+        activos.set(filas, rs.getBoolean(7));
+        bajas.set(filas, rs.getBoolean(9));
+        Timestamp t = rs.getTimestamp(8);
+        if (t != null && (marca == null || t.after(marca))) marca = t;
+        filas++;
+    }
+
+    /** Id que ya no está en productos (archivado o borrado): sale en la fusión como una lápida. */
+    void quitar(int id) {
+        if (filas == ids.length) crecer();
+        ids[filas] = id;
+        codigos[filas] = null;
+        nombres[filas] = null;
+        activos.clear(filas);
+        bajas.set(filas);
+        filas++;
+    }
+
+    int filas() { return filas; }
+
+    /** Para una lectura completa (recorrerCambios con desde = null, sin lápidas). */
+    Instantanea construir(long ahora) {
+        return new Instantanea(filas, Arrays.copyOf(ids, filas), Arrays.copyOf(codigos, filas),
+                Arrays.copyOf(nombres, filas), Arrays.copyOf(centavos, filas), Arrays.copyOf(stocks, filas),
+                Arrays.copyOf(categorias, filas), diccionario, (BitSet) activos.clone(), marca, ahora);
+    }
+
+    /**
+     * Nueva instantánea = previa con las filas de este delta reemplazadas,
+     * insertadas o quitadas si son lápidas o se pasaron a quitar (ambas
+     * ordenadas por id, fusión lineal).
+     */
+    Instantanea fusionarCon(Instantanea previa, long ahora) {
+        int n = previa.filas, m = filas;
+        int cap = n + m;
+        int[] nIds = new int[cap];
+        String[] nCod = new String[cap];
+        String[] nNom = new String[cap];
+        long[] nCent = new long[cap];
+        int[] nStock = new int[cap];
+        int[] nCat = new int[cap];
+        BitSet nAct = new BitSet(cap);
+
+        int i = 0, j = 0, k = 0;
+        while (i < n || j < m) {
+            boolean delDelta;
+            if (i == n) delDelta = true;
+            else if (j == m) delDelta = false;
+            else delDelta = ids[j] <= previa.ids[i];
+
+            if (delDelta) {
+                if (i < n && previa.ids[i] == ids[j]) i++;    // la fila cambió: se descarta la vieja
+                if (bajas.get(j)) {
+                    j++;
+                    continue;
+                }
+                nIds[k] = ids[j]; nCod[k] = codigos[j]; nNom[k] = nombres[j]; nCent[k] = centavos[j];
+                nStock[k] = stocks[j]; nCat[k] = categorias[j]; nAct.set(k, activos.get(j));
+                j++;
+            } else {
+                nIds[k] = previa.ids[i]; nCod[k] = previa.codigos[i]; nNom[k] = previa.nombres[i];
+                nCent[k] = previa.centavos[i]; nStock[k] = previa.stocks[i]; nCat[k] = previa.categorias[i];
+                nAct.set(k, previa.activos.get(i));
+                i++;
+            }
+            k++;
+        }
+        Timestamp nMarca = marca == null || (previa.marca != null && previa.marca.after(marca)) ? previa.marca : marca;
+        return new Instantanea(k, Arrays.copyOf(nIds, k), Arrays.copyOf(nCod, k), Arrays.copyOf(nNom, k),
+                Arrays.copyOf(nCent, k), Arrays.copyOf(nStock, k), Arrays.copyOf(nCat, k),
+                diccionario, nAct, nMarca, ahora);
+    }
+
+    private int codigoCategoria(String categoria) {
+        Integer c = codigosCategoria.get(categoria);
+        if (c != null) return c;
+        int nuevo = diccionario.length;
+        diccionario = Arrays.copyOf(diccionario, nuevo + 1);
+        diccionario[nuevo] = categoria;
+        codigosCategoria.put(categoria, nuevo);
+        return nuevo;
+    }
+
+    private void crecer() {
+        int cap = ids.length * 2;
+        ids = Arrays.copyOf(ids, cap);
+        codigos = Arrays.copyOf(codigos, cap);
+        nombres = Arrays.copyOf(nombres, cap);
+        centavos = Arrays.copyOf(centavos, cap);
+        stocks = Arrays.copyOf(stocks, cap);
+        categorias = Arrays.copyOf(categorias, cap);
+    }
+}
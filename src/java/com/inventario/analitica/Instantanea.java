@@ -0,0 +1,104 @@
+package com.inventario.analitica;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+
+/**
+ * Copia columnar e inmutable de la tabla productos, ordenada por id:
+ * arreglos primitivos por columna, precio en centavos, categoría codificada
+ * por diccionario y un BitSet para activo. Las consultas recorren las
+ * columnas en paralelo (fork/join) sin tocar la base.
+ */
+public final class Instantanea {
+
+    final int filas;
+    final int[] ids;
+    final String[] codigos;
+    final String[] nombres;
+    final long[] centavos;
+    final int[] stocks;
+    final int[] categorias;
+    final String[] diccionario;
+    final BitSet activos;
+    final Timestamp marca;          // mayor actualizado_en leído
+    final long tomadaEnMillis;
+
+    Instantanea(int filas, int[] ids, String[] codigos, String[] nombres, long[] centavos, int[] stocks,
+                int[] categorias, String[] diccionario, BitSet activos, Timestamp marca, long tomadaEnMillis) {
+        this.filas = filas;
+        this.ids = ids;
+        this.codigos = codigos;
+        this.nombres = nombres;
+        this.centavos = centavos;
+        this.stocks = stocks;
+        this.categorias = categorias;
+        this.diccionario = diccionario;
+        this.activos = activos;
+        this.marca = marca;
+        this.tomadaEnMillis = tomadaEnMillis;
+    }
+
+    public int filas() { return filas; }
+    public long tomadaEnMillis() { return tomadaEnMillis; }
+
+    /** Productos, activos/inactivos, unidades y valoración por categoría (orden del diccionario). */
+    public List<ResumenCategoria> resumenPorCategoria() {
+        final int k = diccionario.length;
+        // Por categoría: [productos, activos, unidades, centavos]
+        long[] acc = IntStream.range(0, filas).parallel().collect(
+                () -> new long[k * 4],
+                (a, i) -> {
+                    int b = categorias[i] * 4;
+                    a[b]++;
+                    if (activos.get(i)) a[b + 1]++;
+                    a[b + 2] += stocks[i];
+                    a[b + 3] += centavos[i] * stocks[i];
+                },
+                (a, b) -> {
+                    for (int j = 0; j < a.length; j++) a[j] += b[j];
+                });
+
+        List<ResumenCategoria> out = new ArrayList<>(k);
+        for (int c = 0; c < k; c++) {
+            int b = c * 4;
+            if (acc[b] == 0) continue;
+            out.add(new ResumenCategoria(diccionario[c], acc[b], acc[b + 1], acc[b] - acc[b + 1],
+                    acc[b + 2], BigDecimal.valueOf(acc[b + 3], 2)));
+        }
+        return out;
+    }
+
+    /** Los 'limite' productos activos con menos stock (<= umbral), de menor a mayor stock. */
+    public List<ProductoStockBajo> stockBajo(int umbral, int limite) {
+        if (limite <= 0) return List.of();
+        Comparator<Integer> menorStock = Comparator.<Integer>comparingInt(i -> stocks[i]).thenComparingInt(i -> ids[i]);
+        PriorityQueue<Integer> top = IntStream.range(0, filas).parallel()
+                .filter(i -> stocks[i] <= umbral && activos.get(i))
+                .collect(
+                        () -> new PriorityQueue<>(menorStock.reversed()),
+                        (q, i) -> {
+                            q.add(i);
+                            if (q.size() > limite) q.poll();
+                        },
+                        (q1, q2) -> {
+                            for (Integer i : q2) {
+                                q1.add(i);
+                                if (q1.size() > limite) q1.poll();
+                            }
+                        });
+        List<Integer> indices = new ArrayList<>(top);
+        indices.sort(menorStock);
+        List<ProductoStockBajo> out = new ArrayList<>(indices.size());
+        for (int i : indices) {
+            out.add(new ProductoStockBajo(ids[i], codigos[i], nombres[i], diccionario[categorias[i]],
+                    stocks[i], BigDecimal.valueOf(centavos[i], 2)));
+        }
+        return out;
+    }
+}
@@ -0,0 +1,9 @@
+package com.inventario.analitica;
+
+import java.math.BigDecimal;
+
+/**
+ * Producto activo con stock en o por debajo del umbral consultado.
+ */
+public record ProductoStockBajo(int id, String codigo, String nombre, String categoria,
+                                int stock, BigDecimal precio) { }
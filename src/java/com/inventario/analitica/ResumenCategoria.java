@@ -0,0 +1,10 @@
+package com.inventario.analitica;
+
+import java.math.BigDecimal;
+
+/**
+ * Agregado de una categoría: productos, activos / inactivos, unidades en
+ * stock y valoración (precio * stock).
+ */
+public record ResumenCategoria(String categoria, long productos, long activos, long inactivos,
+                               long unidades, BigDecimal valor) { }
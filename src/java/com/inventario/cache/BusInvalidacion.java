@@ -0,0 +1,26 @@
+package com.inventario.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * Canal entre instancias para que cada una descarte de sus caches lo que otra
+ * escribió. Cada escritura publica una Invalidacion y todas las instancias
+ * suscritas la reciben, incluida a veces la que la publicó: el receptor
+ * descarta las suyas por el nodo.
+ *
+ * Implementaciones: BusInvalidacionLocal (en la JVM, para pruebas y varias
+ * fachadas en un proceso) y facade.BusInvalidacionFeed (productos_cambios).
+ * Otra clase con constructor sin argumentos se puede elegir con
+ * inventario.invalidacion.bus.
+ */
+public interface BusInvalidacion extends AutoCloseable {
+
+    /** Difunde el aviso; no debe bloquear la escritura que lo origina. */
+    void publicar(Invalidacion invalidacion);
+
+    /** Registra un receptor (se le llama desde el hilo del bus); devuelve la baja. */
+    Runnable suscribir(Consumer<Invalidacion> receptor);
+
+    @Override
+    default void close() { }
+}
@@ -0,0 +1,40 @@
+package com.inventario.cache;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bus en memoria: entrega cada aviso a todos los suscriptores en el hilo que
+ * publica, ya terminado el commit. Sirve para varias fachadas en una JVM (y
+ * para probar la coherencia sin un transporte real).
+ */
+public class BusInvalidacionLocal implements BusInvalidacion {
+
+    private static final Logger LOG = Logger.getLogger(BusInvalidacionLocal.class.getName());
+
+    private final CopyOnWriteArrayList<Consumer<Invalidacion>> receptores = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publicar(Invalidacion invalidacion) {
+        for (Consumer<Invalidacion> r : receptores) {
+            try {
+                r.accept(invalidacion);
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "[Invalidación] Un receptor falló", e);
+            }
+        }
+    }
+
+    @Override
+    public Runnable suscribir(Consumer<Invalidacion> receptor) {
+        receptores.add(receptor);
+        return () -> receptores.remove(receptor);
+    }
+
+    @Override
+    public void close() {
+        receptores.clear();
+    }
+}
@@ -0,0 +1,324 @@
+package com.inventario.cache;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cache de lectura acotada (read-through).
+ *
+ * - Desalojo LRU por segmentos: cada segmento es un LinkedHashMap en orden
+ *   de acceso con su propio candado, así los lectores de claves distintas
+ *   casi nunca compiten.
+ * - TTL para valores y un TTL aparte (más corto) para ausencias cacheadas.
+ * - Single-flight: los fallos concurrentes sobre una misma clave esperan
+ *   una única carga.
+ * - Una invalidación durante una carga en vuelo impide que ese resultado
+ *   (posiblemente viejo) quede guardado.
+ */
+public class CacheLectura<K, V> {
+
+    /** Carga el valor desde el origen; null significa "no existe". */
+    @FunctionalInterface
+    public interface Cargador<K, V> {
+        V cargar(K clave) throws Exception;
+    }
+
+    /** Carga varias claves de una vez; las que no estén en el resultado no existen. */
+    @FunctionalInterface
+    public interface CargadorLote<K, V> {
+        Map<K, V> cargar(Set<K> claves) throws Exception;
+    }
+
+    /** Foto de las estadísticas para dimensionar la cache. */
+    public record Estadisticas(long aciertos, long aciertosNegativos, long fallos,
+                               long cargas, long erroresCarga, long nanosCarga,
+                               long desalojos, long expirados, long tamano, long capacidad) {
+        public double tasaAciertos() {
+            long total = aciertos + aciertosNegativos + fallos;
+            return total == 0 ? 0.0 : (aciertos + aciertosNegativos) / (double) total;
+        }
+    }
+
+    private static final class Entrada<V> {
+        final V valor;
+        final long expiraNanos;
+
+        Entrada(V valor, long expiraNanos) {
+            this.valor = valor;
+            this.expiraNanos = expiraNanos;
+        }
+    }
+
+    private static final class Segmento<K, V> extends LinkedHashMap<K, Entrada<V>> {
+        private static final long serialVersionUID = 1L;
+        final transient ReentrantLock lock = new ReentrantLock();
+        final int capacidad;
+        final LongAdder desalojos;
+        long version; // se incrementa en cada invalidación del segmento
+
+        Segmento(int capacidad, LongAdder desalojos) {
+            super(16, 0.75f, true);
+            this.capacidad = capacidad;
+            this.desalojos = desalojos;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, Entrada<V>> eldest) {
+            if (size() > capacidad) {
+                desalojos.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private final Segmento<K, V>[] segmentos;
+    private final int capacidad;
+    private final long ttlNanos;
+    private final long ttlNegativoNanos;
+    private final ConcurrentHashMap<K, CompletableFuture<V>> enVuelo = new ConcurrentHashMap<>();
+    private final AtomicLong invalidaciones = new AtomicLong();   // para poner(): cualquier invalidación
+
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder aciertosNegativos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder cargas = new LongAdder();
+    private final LongAdder erroresCarga = new LongAdder();
+    private final LongAdder nanosCarga = new LongAdder();
+    private final LongAdder desalojos = new LongAdder();
+    private final LongAdder expirados = new LongAdder();
+
+    /**
+     * @param capacidad    máximo de entradas (repartido entre segmentos)
+     * @param ttlMs        vida de un valor presente
+     * @param ttlNegativoMs vida de una ausencia cacheada (0 = no cachear ausencias)
+     */
+    @SuppressWarnings("unchecked")
+    public CacheLectura(int capacidad, long ttlMs, long ttlNegativoMs) {
+        int n = Math.max(1, Math.min(64, Integer.highestOneBit(Math.max(1, capacidad / 64))));
+        this.segmentos = (Segmento<K, V>[]) new Segmento<?, ?>[n];
+        int porSegmento = Math.max(1, capacidad / n);
+        for (int i = 0; i < n; i++) segmentos[i] = new Segmento<>(porSegmento, desalojos);
+        this.capacidad = porSegmento * n;
+        this.ttlNanos = ttlMs * 1_000_000L;
+        this.ttlNegativoNanos = ttlNegativoMs * 1_000_000L;
+    }
+
+    /** Devuelve el valor cacheado o lo carga (una sola vez aunque haya fallos concurrentes). */
+    public V obtener(K clave, Cargador<K, V> cargador) throws Exception {
+        Segmento<K, V> seg = segmento(clave);
+        Entrada<V> e;
+        seg.lock.lock();
+        try {
+            e = vigente(seg, clave);
+        } finally {
+            seg.lock.unlock();
+        }
+        if (e != null) {
+            if (e.valor == null) aciertosNegativos.increment(); else aciertos.increment();
+            return e.valor;
+        }
+        fallos.increment();
+
+        CompletableFuture<V> propio = new CompletableFuture<>();
+        CompletableFuture<V> ajeno = enVuelo.putIfAbsent(clave, propio);
+        if (ajeno != null) {
+            try {
+                return ajeno.get();
+            } catch (ExecutionException ee) {
+                throw ee.getCause() instanceof Exception ex ? ex : ee;
+            }
+        }
+
+        long inicio = System.nanoTime();
+        try {
+            // Otra carga pudo terminar (y salir de enVuelo) entre el fallo y el putIfAbsent
+            long version;
+            seg.lock.lock();
+            try {
+                e = vigente(seg, clave);
+                version = seg.version;
+            } finally {
+                seg.lock.unlock();
+            }
+            if (e != null) {
+                propio.complete(e.valor);
+                return e.valor;
+            }
+            V valor = cargador.cargar(clave);
+            cargas.increment();
+            guardarSiVigente(seg, clave, valor, version);
+            propio.complete(valor);
+            return valor;
+        } catch (Exception ex) {
+            erroresCarga.increment();
+            propio.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            nanosCarga.add(System.nanoTime() - inicio);
+            enVuelo.remove(clave, propio);
+        }
+    }
+
+    /**
+     * Versión por lotes de {@link #obtener}: resuelve de la cache lo que pueda y
+     * carga el resto con una sola llamada al cargador. Devuelve solo las claves
+     * que existen. Las claves que falten no se deduplican contra cargas
+     * individuales en vuelo (no hay single-flight por clave aquí).
+     */
+    public Map<K, V> obtenerTodos(Collection<K> claves, CargadorLote<K, V> cargador) throws Exception {
+        Map<K, V> out = new LinkedHashMap<>();
+        Map<K, Long> faltan = new LinkedHashMap<>();
+        for (K clave : claves) {
+            if (out.containsKey(clave) || faltan.containsKey(clave)) continue;
+            Segmento<K, V> seg = segmento(clave);
+            seg.lock.lock();
+            try {
+                Entrada<V> e = seg.get(clave);
+                if (e != null && e.expiraNanos - System.nanoTime() > 0) {
+                    if (e.valor == null) {
+                        aciertosNegativos.increment();
+                    } else {
+                        aciertos.increment();
+                        out.put(clave, e.valor);
+                    }
+                    continue;
+                }
+                if (e != null) {
+                    seg.remove(clave);
+                    expirados.increment();
+                }
+                faltan.put(clave, seg.version);
+            } finally {
+                seg.lock.unlock();
+            }
+        }
+        if (faltan.isEmpty()) return out;
+        fallos.add(faltan.size());
+
+        long inicio = System.nanoTime();
+        Map<K, V> cargados;
+        try {
+            cargados = cargador.cargar(faltan.keySet());
+            cargas.increment();
+        } catch (Exception ex) {
+            erroresCarga.increment();
+            throw ex;
+        } finally {
+            nanosCarga.add(System.nanoTime() - inicio);
+        }
+        faltan.forEach((clave, version) -> {
+            V valor = cargados.get(clave);
+            guardarSiVigente(segmento(clave), clave, valor, version);
+            if (valor != null) out.put(clave, valor);
+        });
+        return out;
+    }
+
+    /**
+     * Marca para {@link #poner}: se toma antes de leer el valor por otra vía
+     * (cuando aún no se conoce la clave).
+     */
+    public long marca() {
+        return invalidaciones.get();
+    }
+
+    /**
+     * Inserta un valor leído por otra vía (p. ej. buscarPorId) si desde 'marca'
+     * no hubo ninguna invalidación; si la hubo, el valor puede ser anterior y se
+     * descarta. Igual que la comprobación de versión de obtener, pero sobre
+     * toda la cache porque la clave no se conocía al empezar la lectura.
+     */
+    public void poner(K clave, V valor, long marca) {
+        Segmento<K, V> seg = segmento(clave);
+        seg.lock.lock();
+        try {
+            if (invalidaciones.get() == marca) guardar(seg, clave, valor);
+        } finally {
+            seg.lock.unlock();
+        }
+    }
+
+    public void invalidar(K clave) {
+        Segmento<K, V> seg = segmento(clave);
+        seg.lock.lock();
+        try {
+            seg.version++;
+            invalidaciones.incrementAndGet();
+            seg.remove(clave);
+        } finally {
+            seg.lock.unlock();
+        }
+        enVuelo.remove(clave);
+    }
+
+    public void invalidarTodo() {
+        for (Segmento<K, V> seg : segmentos) {
+            seg.lock.lock();
+            try {
+                seg.version++;
+                invalidaciones.incrementAndGet();
+                seg.clear();
+            } finally {
+                seg.lock.unlock();
+            }
+        }
+        enVuelo.clear();
+    }
+
+    public Estadisticas estadisticas() {
+        long tamano = 0;
+        for (Segmento<K, V> seg : segmentos) {
+            seg.lock.lock();
+            try {
+                tamano += seg.size();
+            } finally {
+                seg.lock.unlock();
+            }
+        }
+        return new Estadisticas(aciertos.sum(), aciertosNegativos.sum(), fallos.sum(),
+                cargas.sum(), erroresCarga.sum(), nanosCarga.sum(),
+                desalojos.sum(), expirados.sum(), tamano, capacidad);
+    }
+
+    /* ---------- util ---------- */
+
+    /* Entrada vigente o null (quita la vencida); con el candado del segmento tomado */
+    private Entrada<V> vigente(Segmento<K, V> seg, K clave) {
+        Entrada<V> e = seg.get(clave);
+        if (e == null) return null;
+        if (e.expiraNanos - System.nanoTime() > 0) return e;
+        seg.remove(clave);
+        expirados.increment();
+        return null;
+    }
+
+    private void guardarSiVigente(Segmento<K, V> seg, K clave, V valor, long version) {
+        seg.lock.lock();
+        try {
+            if (seg.version == version) guardar(seg, clave, valor);
+        } finally {
+            seg.lock.unlock();
+        }
+    }
+
+    private void guardar(Segmento<K, V> seg, K clave, V valor) {
+        long ttl = valor == null ? ttlNegativoNanos : ttlNanos;
+        if (ttl <= 0) return;
+        seg.put(clave, new Entrada<>(valor, System.nanoTime() + ttl));
+    }
+
+    private Segmento<K, V> segmento(K clave) {
+        int h = clave.hashCode();
+        h ^= (h >>> 16);
+        return segmentos[h & (segmentos.length - 1)];
+    }
+}
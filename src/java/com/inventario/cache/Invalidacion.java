@@ -0,0 +1,19 @@
+package com.inventario.cache;
+
+import java.util.Set;
+
+/**
+ * Aviso de que unos productos cambiaron en la base. 'nodo' identifica a la
+ * instancia que escribió (null si no se sabe); 'todo' = descartar todo lo cacheado.
+ */
+public record Invalidacion(String nodo, Set<String> codigos, Set<Integer> ids, boolean todo) {
+
+    public Invalidacion {
+        codigos = Set.copyOf(codigos);
+        ids = Set.copyOf(ids);
+    }
+
+    public static Invalidacion total(String nodo) {
+        return new Invalidacion(nodo, Set.of(), Set.of(), true);
+    }
+}
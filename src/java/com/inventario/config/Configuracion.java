@@ -0,0 +1,66 @@
+package com.inventario.config;
+
+import java.util.Properties;
+import java.util.function.Function;
+
+/**
+ * Lectura tipada de parámetros de configuración.
+ * En el contenedor la fuente son los context-param de web.xml
+ * (ver InventarioListener); fuera de él, un Properties o nada.
+ */
+public final class Configuracion {
+
+    private final Function<String, String> fuente;
+
+    public Configuracion(Function<String, String> fuente) {
+        this.fuente = fuente;
+    }
+
+    public static Configuracion vacia() {
+        return new Configuracion(clave -> null);
+    }
+
+    public static Configuracion de(Properties props) {
+        return new Configuracion(props::getProperty);
+    }
+
+    public String texto(String clave, String defecto) {
+        String v = fuente.apply(clave);
+        return (v == null || v.isBlank()) ? defecto : v.trim();
+    }
+
+    public int entero(String clave, int defecto) {
+        String v = texto(clave, null);
+        if (v == null) return defecto;
+        try {
+            return Integer.parseInt(v);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("El parámetro " + clave + " debe ser un entero: " + v);
+        }
+    }
+
+    public long largo(String clave, long defecto) {
+        String v = texto(clave, null);
+        if (v == null) return defecto;
+        try {
+            return Long.parseLong(v);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("El parámetro " + clave + " debe ser un entero: " + v);
+        }
+    }
+
+    public double decimal(String clave, double defecto) {
+        String v = texto(clave, null);
+        if (v == null) return defecto;
+        try {
+            return Double.parseDouble(v);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("El parámetro " + clave + " debe ser un número: " + v);
+        }
+    }
+
+    public boolean booleano(String clave, boolean defecto) {
+        String v = texto(clave, null);
+        return v == null ? defecto : Boolean.parseBoolean(v);
+    }
+}
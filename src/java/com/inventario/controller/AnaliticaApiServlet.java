@@ -0,0 +1,133 @@
+package com.inventario.controller;
+
+import com.inventario.analitica.ProductoStockBajo;
+import com.inventario.analitica.ResumenCategoria;
+import com.inventario.facade.ProductoFacade;
+import com.inventario.formato.Json;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Consultas analíticas sobre la instantánea columnar en memoria (no tocan la base).
+ *
+ *   GET /api/analitica?vista=categorias
+ *   GET /api/analitica?vista=stockBajo&umbral=5&limite=50
+ *
+ * Responde {"items": [...], "filas": n, "edadMs": n}; edadMs indica cuánto
+ * puede ir la vista por detrás de la tabla.
+ */
+@WebServlet(name = "AnaliticaApiServlet", urlPatterns = {"/api/analitica"})
+public class AnaliticaApiServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    private static final int UMBRAL_DEFECTO = 5;
+    private static final int LIMITE_DEFECTO = 50;
+    private static final int LIMITE_MAXIMO = 1000;
+
+    private ProductoFacade facade;
+
+    @Override
+    public void init() throws ServletException {
+        this.facade = (ProductoFacade) getServletContext().getAttribute(ProductoFacade.ATRIBUTO);
+        if (facade == null) {
+            throw new ServletException("La fachada no está disponible. Revisa el arranque de InventarioListener.");
+        }
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setCharacterEncoding("UTF-8");
+        resp.setContentType("application/json; charset=UTF-8");
+
+        String vista = req.getParameter("vista") == null ? "categorias" : req.getParameter("vista");
+        StringBuilder items = new StringBuilder();
+        try {
+            switch (vista) {
+                case "categorias" -> escribirCategorias(items, facade.resumenPorCategoria());
+                case "stockBajo" -> {
+                    int umbral = entero(req, "umbral", UMBRAL_DEFECTO);
+                    int limite = Math.max(1, Math.min(LIMITE_MAXIMO, entero(req, "limite", LIMITE_DEFECTO)));
+                    escribirStockBajo(items, facade.stockBajo(umbral, limite));
+                }
+                default -> {
+                    error(resp, HttpServletResponse.SC_BAD_REQUEST, "vista debe ser categorias o stockBajo.");
+                    return;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            error(resp, HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        } catch (Exception e) {
+            log("[Analítica] " + e.getMessage(), e);
+            error(resp, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "La analítica no está disponible.");
+            return;
+        }
+
+        Map<String, Long> estado = facade.estadisticasAnalitica();
+        PrintWriter out = resp.getWriter();
+        out.write("{\"items\":[");
+        out.append(items);
+        out.write("],\"filas\":");
+        out.write(Long.toString(estado.getOrDefault("filas", 0L)));
+        out.write(",\"edadMs\":");
+        out.write(Long.toString(estado.getOrDefault("edadMs", -1L)));
+        out.write('}');
+    }
+
+    private static void escribirCategorias(StringBuilder out, List<ResumenCategoria> resumen) throws IOException {
+        boolean primero = true;
+        for (ResumenCategoria r : resumen) {
+            if (!primero) out.append(',');
+            primero = false;
+            out.append("{\"categoria\":");
+            Json.cadena(out, r.categoria());
+            out.append(",\"productos\":").append(r.productos())
+               .append(",\"activos\":").append(r.activos())
+               .append(",\"inactivos\":").append(r.inactivos())
+               .append(",\"unidades\":").append(r.unidades())
+               .append(",\"valor\":").append(r.valor().toPlainString()).append('}');
+        }
+    }
+
+    private static void escribirStockBajo(StringBuilder out, List<ProductoStockBajo> productos) throws IOException {
+        boolean primero = true;
+        for (ProductoStockBajo p : productos) {
+            if (!primero) out.append(',');
+            primero = false;
+            out.append("{\"id\":").append(p.id()).append(",\"codigo\":");
+            Json.cadena(out, p.codigo());
+            out.append(",\"nombre\":");
+            Json.cadena(out, p.nombre());
+            out.append(",\"categoria\":");
+            Json.cadena(out, p.categoria());
+            out.append(",\"stock\":").append(p.stock())
+               .append(",\"precio\":").append(p.precio().toPlainString()).append('}');
+        }
+    }
+
+    private static int entero(HttpServletRequest req, String nombre, int defecto) {
+        String v = req.getParameter(nombre);
+        if (v == null || v.isBlank()) return defecto;
+        try {
+            return Integer.parseInt(v.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(nombre + " debe ser un entero.");
+        }
+    }
+
+    private static void error(HttpServletResponse resp, int status, String mensaje) throws IOException {
+        resp.setStatus(status);
+        PrintWriter out = resp.getWriter();
+        out.write("{\"error\":");
+        Json.cadena(out, mensaje);
+        out.write('}');
+    }
+}
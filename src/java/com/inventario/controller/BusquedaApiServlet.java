@@ -0,0 +1,145 @@
+package com.inventario.controller;
+
+import com.inventario.facade.ProductoFacade;
+import com.inventario.formato.Json;
+import com.inventario.model.CriteriosBusqueda;
+import com.inventario.model.ProductoVista;
+import com.inventario.model.ResultadoBusqueda;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Búsqueda facetada de productos.
+ *
+ *   GET /api/busqueda?q=sil&modo=prefijo|palabras&categoria=Muebles&categoria=Ropa
+ *                    &activo=true&precioMin=10&precioMax=99.5&stockMin=0&stockMax=5
+ *                    &cursor=...&limit=20
+ *
+ * Responde {"items": [...], "siguiente": token|null, "facetas": {categoria: n}, "facetasExactas": bool}.
+ */
+@WebServlet(name = "BusquedaApiServlet", urlPatterns = {"/api/busqueda"})
+public class BusquedaApiServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    private static final int LIMITE_DEFECTO = 20;
+    private static final int LIMITE_MAXIMO = 100;
+
+    private ProductoFacade facade;
+
+    @Override
+    public void init() throws ServletException {
+        this.facade = (ProductoFacade) getServletContext().getAttribute(ProductoFacade.ATRIBUTO);
+        if (facade == null) {
+            throw new ServletException("La fachada no está disponible. Revisa el arranque de InventarioListener.");
+        }
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setCharacterEncoding("UTF-8");
+        resp.setContentType("application/json; charset=UTF-8");
+
+        CriteriosBusqueda criterios;
+        int limit;
+        try {
+            String[] cats = req.getParameterValues("categoria");
+            Set<String> categorias = cats == null ? Set.of() : Set.of(Arrays.stream(cats)
+                    .filter(c -> c != null && !c.isBlank()).map(String::trim).distinct().toArray(String[]::new));
+            criterios = new CriteriosBusqueda(
+                    req.getParameter("q"),
+                    "palabras".equalsIgnoreCase(req.getParameter("modo")),
+                    categorias,
+                    booleano(req.getParameter("activo")),
+                    decimal(req, "precioMin"), decimal(req, "precioMax"),
+                    entero(req, "stockMin"), entero(req, "stockMax"));
+            Integer l = entero(req, "limit");
+            limit = l == null ? LIMITE_DEFECTO : Math.max(1, Math.min(LIMITE_MAXIMO, l));
+        } catch (IllegalArgumentException e) {
+            error(resp, HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+
+        ResultadoBusqueda r;
+        try {
+            r = facade.buscar(criterios, req.getParameter("cursor"), limit);
+        } catch (IllegalArgumentException e) {
+            error(resp, HttpServletResponse.SC_BAD_REQUEST, "Cursor inválido.");
+            return;
+        } catch (Exception e) {
+            log("[Búsqueda] " + e.getMessage(), e);
+            error(resp, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "No se pudo buscar.");
+            return;
+        }
+
+        PrintWriter out = resp.getWriter();
+        out.write("{\"items\":[");
+        boolean primero = true;
+        for (ProductoVista p : r.pagina().getItems()) {
+            if (!primero) out.write(',');
+            primero = false;
+            Json.producto(out, p);
+        }
+        out.write("],\"siguiente\":");
+        Json.cadena(out, r.pagina().getSiguiente());
+        out.write(",\"facetas\":{");
+        primero = true;
+        Map<String, Long> facetas = new TreeMap<>();
+        r.facetas().forEach((k, v) -> facetas.merge(k == null ? "" : k, v, Long::sum));
+        for (Map.Entry<String, Long> e : facetas.entrySet()) {
+            if (!primero) out.write(',');
+            primero = false;
+            Json.cadena(out, e.getKey());
+            out.write(':');
+            out.write(Long.toString(e.getValue()));
+        }
+        out.write("},\"facetasExactas\":");
+        out.write(Boolean.toString(r.facetasExactas()));
+        out.write('}');
+    }
+
+    private static Boolean booleano(String v) {
+        if (v == null || v.isBlank()) return null;
+        if ("true".equalsIgnoreCase(v) || "1".equals(v)) return Boolean.TRUE;
+        if ("false".equalsIgnoreCase(v) || "0".equals(v)) return Boolean.FALSE;
+        throw new IllegalArgumentException("activo debe ser true o false.");
+    }
+
+    private static BigDecimal decimal(HttpServletRequest req, String nombre) {
+        String v = req.getParameter(nombre);
+        if (v == null || v.isBlank()) return null;
+        try {
+            return new BigDecimal(v.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(nombre + " debe ser un número.");
+        }
+    }
+
+    private static Integer entero(HttpServletRequest req, String nombre) {
+        String v = req.getParameter(nombre);
+        if (v == null || v.isBlank()) return null;
+        try {
+            return Integer.valueOf(v.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(nombre + " debe ser un entero.");
+        }
+    }
+
+    private static void error(HttpServletResponse resp, int status, String mensaje) throws IOException {
+        resp.setStatus(status);
+        PrintWriter out = resp.getWriter();
+        out.write("{\"error\":");
+        Json.cadena(out, mensaje);
+        out.write('}');
+    }
+}
@@ -0,0 +1,306 @@
+package com.inventario.controller;
+
+import com.inventario.facade.CambiosNoDisponiblesException;
+import com.inventario.facade.ProductoFacade;
+import com.inventario.formato.Json;
+import com.inventario.model.Cambio;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Feed de cambios para sincronizar sistemas externos (ERP, tienda) sin releer
+ * el catálogo: cada consumidor guarda la última secuencia que procesó y pide
+ * lo posterior.
+ *
+ *   GET /api/cambios?desde=N&max=500&esperaMs=25000
+ *       long-poll: responde en cuanto hay cambios posteriores a N (o vacío al
+ *       agotar esperaMs) con {"cambios": [...], "siguiente": n}
+ *   GET /api/cambios?desde=N   con Accept: text/event-stream
+ *       SSE: un evento "cambios" por tanda, con id = última secuencia; al
+ *       reconectar, Last-Event-ID reemplaza a desde
+ *
+ * Sin desde se empieza por el final (solo cambios nuevos). Si desde ya salió
+ * de la retención responde 410 con la primera secuencia disponible: el
+ * consumidor debe hacer una lectura completa y seguir desde ahí. La espera no
+ * ocupa un hilo del contenedor (startAsync + suscripción al feed).
+ */
+@WebServlet(name = "CambiosApiServlet", urlPatterns = {"/api/cambios"}, asyncSupported = true)
+public class CambiosApiServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    private static final int MAX_DEFECTO = 500;
+    private static final int MAX_MAXIMO = 5_000;
+    private static final long ESPERA_DEFECTO_MS = 25_000;
+    private static final long ESPERA_MAXIMA_MS = 60_000;
+    /** Vida de una conexión SSE; al cerrarse, EventSource reconecta con Last-Event-ID. */
+    private static final long DURACION_SSE_MS = 300_000;
+
+    private ProductoFacade facade;
+
+    @Override
+    public void init() throws ServletException {
+        this.facade = (ProductoFacade) getServletContext().getAttribute(ProductoFacade.ATRIBUTO);
+        if (facade == null) {
+            throw new ServletException("La fachada no está disponible. Revisa el arranque de InventarioListener.");
+        }
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setCharacterEncoding("UTF-8");
+        resp.setHeader("Cache-Control", "no-store");
+
+        boolean sse = aceptaSse(req);
+        long desde;
+        int max;
+        long esperaMs;
+        List<Cambio> lote;
+        try {
+            String ultimoId = req.getHeader("Last-Event-ID");
+            desde = largo(sse && ultimoId != null ? ultimoId : req.getParameter("desde"), "desde", -1);
+            if (desde < 0) desde = facade.ultimoCambio();
+            max = (int) Math.max(1, Math.min(MAX_MAXIMO, largo(req.getParameter("max"), "max", MAX_DEFECTO)));
+            esperaMs = Math.max(0, Math.min(ESPERA_MAXIMA_MS,
+                    largo(req.getParameter("esperaMs"), "esperaMs", ESPERA_DEFECTO_MS)));
+            lote = facade.cambiosDesde(desde, max);
+        } catch (IllegalArgumentException e) {
+            error(resp, HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        } catch (CambiosNoDisponiblesException e) {
+            resp.setStatus(HttpServletResponse.SC_GONE);
+            resp.setContentType("application/json; charset=UTF-8");
+            PrintWriter out = resp.getWriter();
+            out.write("{\"error\":");
+            Json.cadena(out, e.getMessage());
+            out.write(",\"primeraDisponible\":" + e.getPrimeraDisponible() + "}");
+            return;
+        } catch (Exception e) {
+            log("[Cambios] " + e.getMessage(), e);
+            error(resp, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "El feed de cambios no está disponible.");
+            return;
+        }
+
+        if (sse) {
+            resp.setContentType("text/event-stream");
+            resp.setHeader("X-Accel-Buffering", "no");
+            new FlujoSse(req.startAsync(), desde, max).iniciar(lote);
+        } else if (!lote.isEmpty() || esperaMs == 0) {
+            resp.setContentType("application/json; charset=UTF-8");
+            escribirLote(resp.getWriter(), lote, desde);
+        } else {
+            resp.setContentType("application/json; charset=UTF-8");
+            new Espera(req.startAsync(), desde, max).iniciar(esperaMs);
+        }
+    }
+
+    /* Long-poll: la primera tanda posterior a 'desde' (o ninguna al vencer el plazo) completa la respuesta */
+    private final class Espera implements AsyncListener {
+        private final AsyncContext async;
+        private final long desde;
+        private final int max;
+        private final AtomicBoolean respondida = new AtomicBoolean();
+        private volatile Runnable baja;
+
+        Espera(AsyncContext async, long desde, int max) {
+            this.async = async;
+            this.desde = desde;
+            this.max = max;
+        }
+
+        void iniciar(long esperaMs) {
+            async.setTimeout(esperaMs);
+            async.addListener(this);
+            try {
+                baja = facade.suscribirCambios(cambios -> despachar());
+                // Lo publicado entre la primera lectura y la suscripción no llegaría como aviso
+                if (facade.ultimoCambio() > desde) despachar();
+            } catch (Exception e) {
+                terminar(List.of());
+            }
+        }
+
+        private void despachar() {
+            if (respondida.get()) return;
+            try {
+                async.start(this::responder);
+            } catch (IllegalStateException completado) {
+                // venció el plazo mientras tanto
+            }
+        }
+
+        private void responder() {
+            if (respondida.get()) return;
+            try {
+                List<Cambio> lote = facade.cambiosDesde(desde, max);
+                if (!lote.isEmpty()) terminar(lote);
+            } catch (Exception e) {
+                log("[Cambios] " + e.getMessage(), e);
+                terminar(List.of());
+            }
+        }
+
+        private void terminar(List<Cambio> lote) {
+            if (!respondida.compareAndSet(false, true)) return;
+            if (baja != null) baja.run();
+            try {
+                escribirLote(async.getResponse().getWriter(), lote, desde);
+            } catch (IOException | IllegalStateException e) {
+                // el cliente se fue
+            }
+            async.complete();
+        }
+
+        @Override public void onTimeout(AsyncEvent e) { terminar(List.of()); }
+        @Override public void onError(AsyncEvent e) { if (baja != null) baja.run(); }
+        @Override public void onComplete(AsyncEvent e) { if (baja != null) baja.run(); }
+        @Override public void onStartAsync(AsyncEvent e) { }
+    }
+
+    /* SSE: envía lo pendiente y luego cada tanda nueva, siempre desde la última secuencia enviada */
+    private final class FlujoSse implements AsyncListener {
+        private final AsyncContext async;
+        private final int max;
+        private final AtomicBoolean pendiente = new AtomicBoolean();
+        private long enviada;                 // guardado por this
+        private volatile boolean cerrado;
+        private volatile Runnable baja;
+
+        FlujoSse(AsyncContext async, long desde, int max) {
+            this.async = async;
+            this.enviada = desde;
+            this.max = max;
+        }
+
+        void iniciar(List<Cambio> primera) {
+            async.setTimeout(DURACION_SSE_MS);
+            async.addListener(this);
+            try {
+                baja = facade.suscribirCambios(cambios -> avisar());
+                synchronized (this) {
+                    PrintWriter out = async.getResponse().getWriter();
+                    out.write("retry: 2000\n\n");
+                    enviar(out, primera);
+                }
+                avisar();
+            } catch (Exception e) {
+                cerrar();
+            }
+        }
+
+        /* Coalesce los avisos: un solo ponerseAlDia en cola a la vez */
+        private void avisar() {
+            if (cerrado || !pendiente.compareAndSet(false, true)) return;
+            try {
+                async.start(this::ponerseAlDia);
+            } catch (IllegalStateException completado) {
+                pendiente.set(false);
+            }
+        }
+
+        private void ponerseAlDia() {
+            pendiente.set(false);
+            synchronized (this) {
+                if (cerrado) return;
+                try {
+                    PrintWriter out = async.getResponse().getWriter();
+                    List<Cambio> lote;
+                    do {
+                        lote = facade.cambiosDesde(enviada, max);
+                        enviar(out, lote);
+                    } while (lote.size() == max);
+                } catch (Exception e) {
+                    cerrar();
+                }
+            }
+        }
+
+        /* Con el lock tomado */
+        private void enviar(PrintWriter out, List<Cambio> lote) throws IOException {
+            if (!lote.isEmpty()) {
+                long ultima = lote.get(lote.size() - 1).secuencia();
+                out.write("id: " + ultima + "\nevent: cambios\ndata: ");
+                escribirCambios(out, lote);
+                out.write("\n\n");
+                enviada = ultima;
+            }
+            out.flush();
+            if (out.checkError()) throw new IOException("El cliente cerró la conexión");
+        }
+
+        private void cerrar() {
+            synchronized (this) {
+                if (cerrado) return;
+                cerrado = true;
+            }
+            if (baja != null) baja.run();
+            try {
+                async.complete();
+            } catch (IllegalStateException yaCompletado) {
+                // el contenedor ya lo cerró
+            }
+        }
+
+        @Override public void onTimeout(AsyncEvent e) { cerrar(); }
+        @Override public void onError(AsyncEvent e) { cerrar(); }
+        @Override public void onComplete(AsyncEvent e) { if (baja != null) baja.run(); }
+        @Override public void onStartAsync(AsyncEvent e) { }
+    }
+
+    private static boolean aceptaSse(HttpServletRequest req) {
+        String accept = req.getHeader("Accept");
+        return (accept != null && accept.contains("text/event-stream")) || "sse".equals(req.getParameter("formato"));
+    }
+
+    private static void escribirLote(PrintWriter out, List<Cambio> lote, long desde) throws IOException {
+        out.write("{\"cambios\":");
+        escribirCambios(out, lote);
+        out.write(",\"siguiente\":");
+        out.write(Long.toString(lote.isEmpty() ? desde : lote.get(lote.size() - 1).secuencia()));
+        out.write('}');
+        out.flush();
+    }
+
+    private static void escribirCambios(PrintWriter out, List<Cambio> lote) throws IOException {
+        out.write('[');
+        boolean primero = true;
+        for (Cambio c : lote) {
+            if (!primero) out.write(',');
+            primero = false;
+            out.write("{\"secuencia\":" + c.secuencia() + ",\"tipo\":");
+            Json.cadena(out, c.tipo());
+            out.write(",\"id\":" + c.productoId() + ",\"codigo\":");
+            Json.cadena(out, c.codigo());
+            out.write(",\"stock\":" + c.stock() + ",\"registradoEn\":" + c.registradoEnMillis() + '}');
+        }
+        out.write(']');
+    }
+
+    private static long largo(String v, String nombre, long defecto) {
+        if (v == null || v.isBlank()) return defecto;
+        try {
+            return Long.parseLong(v.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(nombre + " debe ser un entero.");
+        }
+    }
+
+    private static void error(HttpServletResponse resp, int status, String mensaje) throws IOException {
+        resp.setStatus(status);
+        resp.setContentType("application/json; charset=UTF-8");
+        PrintWriter out = resp.getWriter();
+        out.write("{\"error\":");
+        Json.cadena(out, mensaje);
+        out.write('}');
+    }
+}
@@ -0,0 +1,123 @@
+package com.inventario.controller;
+
+import com.inventario.metricas.MetricasJdbc;
+import com.inventario.persistence.EnrutadorLecturas;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ejecuta el trabajo de las peticiones asíncronas en hilos virtuales (uno por
+ * tarea), así el hilo del contenedor vuelve al pool mientras se espera a MySQL.
+ * Las tareas que usan la base (enviar) pasan antes por un semáforo con tantos
+ * permisos como conexiones se le quieran dar, para no desbordar el pool: si
+ * no consiguen permiso en esperaPermisoMs se rechazan con
+ * RejectedExecutionException (el servlet responde 503).
+ *
+ * En Java 21 un hilo virtual dentro de un bloque synchronized del driver queda
+ * fijado a su portador; el semáforo también acota cuántos portadores puede
+ * ocupar la base a la vez.
+ */
+public class EjecutorPeticiones implements AutoCloseable {
+
+    /** Atributo de ServletContext donde InventarioListener lo publica (ausente = modo síncrono). */
+    public static final String ATRIBUTO = "ejecutorPeticiones";
+
+    private final ExecutorService hilos =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("inventario-peticion-", 0).factory());
+    private final Semaphore permisos;
+    private final int totalPermisos;
+    private final long esperaPermisoMs;
+    private final long timeoutMs;
+
+    private final LongAdder tareas = new LongAdder();
+    private final LongAdder rechazadas = new LongAdder();
+
+    /**
+     * @param permisos        tareas con acceso a la base simultáneas (<= conexiones del pool)
+     * @param esperaPermisoMs espera máxima por un permiso antes de rechazar
+     * @param timeoutMs       timeout del AsyncContext
+     */
+    public EjecutorPeticiones(int permisos, long esperaPermisoMs, long timeoutMs) {
+        if (permisos <= 0) throw new IllegalArgumentException("permisos debe ser > 0");
+        this.permisos = new Semaphore(permisos, true);
+        this.totalPermisos = permisos;
+        this.esperaPermisoMs = esperaPermisoMs;
+        this.timeoutMs = timeoutMs;
+    }
+
+    public long timeoutMs() { return timeoutMs; }
+
+    /** Orquestación de una petición (sin permiso: no debe tocar la base directamente). */
+    public void ejecutar(Runnable tarea) {
+        MetricasJdbc.Ambito ambito = MetricasJdbc.ambitoActual();
+        EnrutadorLecturas.Marca marca = EnrutadorLecturas.marcaActual();
+        hilos.execute(() -> {
+            MetricasJdbc.asociar(ambito);
+            EnrutadorLecturas.asociar(marca);
+            try {
+                tarea.run();
+            } finally {
+                MetricasJdbc.asociar(null);
+                EnrutadorLecturas.asociar(null);
+            }
+        });
+    }
+
+    /** Tarea que usa la base: se ejecuta en su propio hilo virtual con un permiso del semáforo. */
+    public <T> Future<T> enviar(Callable<T> tarea) {
+        MetricasJdbc.Ambito ambito = MetricasJdbc.ambitoActual();
+        EnrutadorLecturas.Marca marca = EnrutadorLecturas.marcaActual();
+        tareas.increment();
+        return hilos.submit(() -> {
+            if (!permisos.tryAcquire(esperaPermisoMs, TimeUnit.MILLISECONDS)) {
+                rechazadas.increment();
+                throw new RejectedExecutionException("No hay conexiones libres para atender la petición.");
+            }
+            MetricasJdbc.asociar(ambito);
+            EnrutadorLecturas.asociar(marca);
+            try {
+                return tarea.call();
+            } finally {
+                MetricasJdbc.asociar(null);
+                EnrutadorLecturas.asociar(null);
+                permisos.release();
+            }
+        });
+    }
+
+    /** Espera el resultado y relanza la causa original de la tarea. */
+    public static <T> T obtener(Future<T> f) throws Exception {
+        try {
+            return f.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception causa) throw causa;
+            throw e;
+        }
+    }
+
+    /** Contadores para /metricas. */
+    public Map<String, Long> estadisticas() {
+        Map<String, Long> m = new LinkedHashMap<>();
+        m.put("tareas", tareas.sum());
+        m.put("rechazadas", rechazadas.sum());
+        m.put("permisos_en_uso", (long) (totalPermisos - permisos.availablePermits()));
+        m.put("esperando_permiso", (long) permisos.getQueueLength());
+        m.put("permisos", (long) totalPermisos);
+        return m;
+    }
+
+    @Override
+    public void close() {
+        hilos.shutdownNow();
+    }
+}
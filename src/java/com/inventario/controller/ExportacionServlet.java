@@ -0,0 +1,122 @@
+package com.inventario.controller;
+
+import com.inventario.facade.ProductoFacade;
+import com.inventario.formato.Csv;
+import com.inventario.formato.Json;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exportación completa del inventario en streaming.
+ *
+ *   GET /productos/exportar?formato=csv|jsonl&categoria=...&activo=true|false&gzip=true|false
+ *
+ * Las filas pasan del ResultSet a la respuesta sin crear Producto ni listas,
+ * así el heap no crece con el tamaño de la tabla. Sin parámetro gzip se
+ * comprime si el cliente envía Accept-Encoding: gzip.
+ */
+@WebServlet(name = "ExportacionServlet", urlPatterns = {"/productos/exportar"})
+public class ExportacionServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    private ProductoFacade facade;
+
+    @Override
+    public void init() throws ServletException {
+        this.facade = (ProductoFacade) getServletContext().getAttribute(ProductoFacade.ATRIBUTO);
+        if (facade == null) {
+            throw new ServletException("La fachada no está disponible. Revisa el arranque de InventarioListener.");
+        }
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+            throws ServletException, IOException {
+
+        boolean jsonl = "jsonl".equalsIgnoreCase(req.getParameter("formato"));
+        String categoria = req.getParameter("categoria");
+        if (categoria != null && categoria.isBlank()) categoria = null;
+        String activoStr = req.getParameter("activo");
+        Boolean activo = (activoStr == null || activoStr.isBlank()) ? null : Boolean.valueOf(activoStr);
+
+        String gzipStr = req.getParameter("gzip");
+        String acepta = req.getHeader("Accept-Encoding");
+        boolean gzip = gzipStr != null
+                ? Boolean.parseBoolean(gzipStr)
+                : acepta != null && acepta.contains("gzip");
+
+        resp.setCharacterEncoding("UTF-8");
+        resp.setContentType(jsonl ? "application/x-ndjson; charset=UTF-8" : "text/csv; charset=UTF-8");
+        resp.setHeader("Content-Disposition",
+                "attachment; filename=\"productos." + (jsonl ? "jsonl" : "csv") + (gzip && gzipStr != null ? ".gz\"" : "\""));
+        if (gzip && gzipStr == null) resp.setHeader("Content-Encoding", "gzip");
+        resp.setHeader("Cache-Control", "no-store");
+
+        OutputStream os = resp.getOutputStream();
+        if (gzip) os = new GZIPOutputStream(os, 8192, true);
+        Writer out = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8), 16 * 1024);
+
+        try {
+            if (!jsonl) {
+                out.write("id,codigo,nombre,categoria,precio,stock,activo\n");
+            }
+            // Los primeros bytes salen ya, antes de que la consulta devuelva filas
+            out.flush();
+            resp.flushBuffer();
+
+            facade.exportar(categoria, activo, rs -> {
+                try {
+                    if (jsonl) {
+                        out.write("{\"id\":");
+                        out.write(rs.getString(1));
+                        out.write(",\"codigo\":");
+                        Json.cadena(out, rs.getString(2));
+                        out.write(",\"nombre\":");
+                        Json.cadena(out, rs.getString(3));
+                        out.write(",\"categoria\":");
+                        Json.cadena(out, rs.getString(4));
+                        out.write(",\"precio\":");
+                        out.write(rs.getString(5));
+                        out.write(",\"stock\":");
+                        out.write(rs.getString(6));
+                        out.write(rs.getBoolean(7) ? ",\"activo\":true}\n" : ",\"activo\":false}\n");
+                    } else {
+                        out.write(rs.getString(1));
+                        out.write(',');
+                        Csv.campo(out, rs.getString(2), ',');
+                        out.write(',');
+                        Csv.campo(out, rs.getString(3), ',');
+                        out.write(',');
+                        Csv.campo(out, rs.getString(4), ',');
+                        out.write(',');
+                        out.write(rs.getString(5));
+                        out.write(',');
+                        out.write(rs.getString(6));
+                        out.write(rs.getBoolean(7) ? ",true\n" : ",false\n");
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            out.close(); // cierra también el GZIP (escribe el trailer)
+        } catch (UncheckedIOException e) {
+            throw e.getCause(); // cliente desconectado
+        } catch (Exception e) {
+            // La respuesta ya empezó: solo queda registrar y cortar
+            log("[Exportación] Interrumpida: " + e.getMessage(), e);
+            throw new ServletException("No se pudo exportar: " + e.getMessage(), e);
+        }
+    }
+}
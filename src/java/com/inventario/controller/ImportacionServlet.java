@@ -0,0 +1,136 @@
+package com.inventario.controller;
+
+import com.inventario.facade.ProductoFacade;
+import com.inventario.formato.FuenteProductos;
+import com.inventario.formato.FuenteProductosCsv;
+import com.inventario.formato.FuenteProductosJsonl;
+import com.inventario.formato.Json;
+import com.inventario.model.ResumenImportacion;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.MultipartConfig;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.Part;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Importación masiva de productos (CSV o JSON Lines).
+ *
+ *   POST /productos/importar?formato=csv|jsonl&duplicados=actualizar|ignorar
+ *
+ * El archivo llega como parte "archivo" de un multipart o como cuerpo crudo
+ * (text/csv, application/x-ndjson). La respuesta es JSON Lines: una línea
+ * por fila rechazada, escrita a medida que se detecta, y al final el resumen.
+ */
+@WebServlet(name = "ImportacionServlet", urlPatterns = {"/productos/importar"})
+@MultipartConfig(fileSizeThreshold = 1024 * 1024) // el contenedor pasa a disco por encima de 1 MB
+public class ImportacionServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    private ProductoFacade facade;
+
+    @Override
+    public void init() throws ServletException {
+        this.facade = (ProductoFacade) getServletContext().getAttribute(ProductoFacade.ATRIBUTO);
+        if (facade == null) {
+            throw new ServletException("La fachada no está disponible. Revisa el arranque de InventarioListener.");
+        }
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp)
+            throws ServletException, IOException {
+
+        String contentType = req.getContentType() == null ? "" : req.getContentType().toLowerCase(Locale.ROOT);
+        InputStream in;
+        String nombreArchivo = null;
+        if (contentType.startsWith("multipart/")) {
+            Part parte = req.getPart("archivo");
+            if (parte == null) {
+                resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Falta la parte 'archivo'.");
+                return;
+            }
+            in = parte.getInputStream();
+            nombreArchivo = parte.getSubmittedFileName();
+        } else {
+            in = req.getInputStream();
+        }
+
+        String formato = formato(req.getParameter("formato"), contentType, nombreArchivo);
+        if (formato == null) {
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Indica formato=csv o formato=jsonl.");
+            return;
+        }
+        boolean actualizar = !"ignorar".equalsIgnoreCase(req.getParameter("duplicados"));
+
+        resp.setCharacterEncoding("UTF-8");
+        resp.setContentType("application/x-ndjson; charset=UTF-8");
+        PrintWriter out = resp.getWriter();
+
+        Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+        try (FuenteProductos fuente = "csv".equals(formato)
+                ? new FuenteProductosCsv(reader, separador(req.getParameter("separador")))
+                : new FuenteProductosJsonl(reader)) {
+
+            ResumenImportacion r = facade.importar(fuente, actualizar, e -> {
+                try {
+                    out.append("{\"fila\":").append(Integer.toString(e.fila())).append(",\"codigo\":");
+                    Json.cadena(out, e.codigo());
+                    out.append(",\"error\":");
+                    Json.cadena(out, e.mensaje());
+                    out.append("}\n");
+                } catch (IOException io) {
+                    throw new UncheckedIOException(io);
+                }
+            });
+
+            out.append("{\"resumen\":{\"leidas\":").append(Long.toString(r.getLeidas()))
+               .append(",\"guardadas\":").append(Long.toString(r.getGuardadas()))
+               .append(",\"omitidas\":").append(Long.toString(r.getOmitidas()))
+               .append(",\"rechazadas\":").append(Long.toString(r.getRechazadas()))
+               .append(",\"filasAfectadas\":").append(Long.toString(r.getFilasAfectadas()))
+               .append(",\"transacciones\":").append(Long.toString(r.getTransacciones()))
+               .append(",\"ms\":").append(Long.toString(r.getMillis()))
+               .append("}}\n");
+        } catch (Exception e) {
+            if (!resp.isCommitted()) resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            out.append("{\"error\":");
+            Json.cadena(out, "No se pudo importar: " + e.getMessage());
+            out.append("}\n");
+        }
+        out.flush();
+    }
+
+    private static String formato(String param, String contentType, String nombreArchivo) {
+        String f = param != null ? param.toLowerCase(Locale.ROOT) : "";
+        if (f.isEmpty() && nombreArchivo != null) {
+            String n = nombreArchivo.toLowerCase(Locale.ROOT);
+            if (n.endsWith(".csv")) f = "csv";
+            else if (n.endsWith(".jsonl") || n.endsWith(".ndjson")) f = "jsonl";
+        }
+        if (f.isEmpty()) {
+            if (contentType.startsWith("text/csv")) f = "csv";
+            else if (contentType.contains("ndjson") || contentType.contains("jsonl")) f = "jsonl";
+        }
+        return switch (f) {
+            case "csv" -> "csv";
+            case "jsonl", "ndjson" -> "jsonl";
+            default -> null;
+        };
+    }
+
+    private static char separador(String param) {
+        if (param == null || param.isEmpty()) return ',';
+        return "tab".equalsIgnoreCase(param) ? '\t' : param.charAt(0);
+    }
+}
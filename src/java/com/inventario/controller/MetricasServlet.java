@@ -0,0 +1,221 @@
+package com.inventario.controller;
+
+import com.inventario.cache.CacheLectura;
+import com.inventario.facade.ProductoFacade;
+import com.inventario.filter.CachePaginasFilter;
+import com.inventario.metricas.EscritorPrometheus;
+import com.inventario.metricas.MetricasHttp;
+import com.inventario.metricas.MetricasJdbc;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+
+import static com.inventario.metricas.EscritorPrometheus.etiquetas;
+
+/**
+ * Endpoint de métricas en formato de texto de Prometheus.
+ */
+@WebServlet(name = "MetricasServlet", urlPatterns = {"/metricas"})
+public class MetricasServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    private ProductoFacade facade;
+
+    @Override
+    public void init() throws ServletException {
+        this.facade = (ProductoFacade) getServletContext().getAttribute(ProductoFacade.ATRIBUTO);
+        if (facade == null) {
+            throw new ServletException("La fachada no está disponible. Revisa el arranque de InventarioListener.");
+        }
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+            throws ServletException, IOException {
+
+        resp.setContentType(EscritorPrometheus.CONTENT_TYPE);
+        resp.setHeader("Cache-Control", "no-store");
+
+        PrintWriter out = resp.getWriter();
+        EscritorPrometheus w = new EscritorPrometheus(out);
+        if (getServletContext().getAttribute(MetricasHttp.ATRIBUTO) instanceof MetricasHttp http) {
+            http.escribir(w);
+        }
+        if (getServletContext().getAttribute(MetricasJdbc.ATRIBUTO) instanceof MetricasJdbc jdbc) {
+            jdbc.escribir(w);
+        }
+        escribirCache(w, facade.estadisticasCache());
+        escribirStockDiferido(w, facade.estadisticasStockDiferido());
+        escribirAnalitica(w, facade.estadisticasAnalitica());
+        escribirPurga(w, facade.estadisticasPurga());
+        escribirCambios(w, facade.estadisticasCambios());
+        escribirLecturas(w, facade.estadisticasLecturas());
+        escribirInvalidacion(w, facade.estadisticasInvalidacion());
+        if (getServletContext().getAttribute(EjecutorPeticiones.ATRIBUTO) instanceof EjecutorPeticiones ejecutor) {
+            escribirAsincrono(w, ejecutor.estadisticas());
+        }
+        if (getServletContext().getAttribute(CachePaginasFilter.ATRIBUTO) instanceof CachePaginasFilter paginas) {
+            escribirCachePaginas(w, paginas.estadisticas());
+        }
+        out.flush();
+    }
+
+    private void escribirCambios(EscritorPrometheus w, Map<String, Long> stats) {
+        if (stats.isEmpty()) return;
+        w.familia("inventario_cambios_ultima_secuencia", "gauge", "Última secuencia publicada del feed de cambios");
+        w.muestra("inventario_cambios_ultima_secuencia", stats.get("ultima"));
+        w.familia("inventario_cambios_publicados_total", "counter", "Cambios publicados a los suscriptores");
+        w.muestra("inventario_cambios_publicados_total", stats.get("publicados"));
+        w.familia("inventario_cambios_huecos_total", "counter", "Huecos de secuencia saltados tras la gracia");
+        w.muestra("inventario_cambios_huecos_total", stats.get("huecosSaltados"));
+        w.familia("inventario_cambios_huecos_pendientes", "gauge", "Huecos saltados que se siguen releyendo por si confirman tarde");
+        w.muestra("inventario_cambios_huecos_pendientes", stats.get("huecosPendientes"));
+        w.familia("inventario_cambios_huecos_vencidos_total", "counter", "Huecos que se dejaron de revisar (revisionMs o tope)");
+        w.muestra("inventario_cambios_huecos_vencidos_total", stats.get("huecosVencidos"));
+        w.familia("inventario_cambios_reemitidos_total", "counter", "Cambios confirmados tarde reemitidos con secuencia nueva");
+        w.muestra("inventario_cambios_reemitidos_total", stats.get("reemitidos"));
+        w.familia("inventario_cambios_lecturas_base_total", "counter", "Lecturas de consumidores más atrasados que el anillo en memoria");
+        w.muestra("inventario_cambios_lecturas_base_total", stats.get("lecturasBase"));
+        w.familia("inventario_cambios_borrados_total", "counter", "Cambios borrados por la retención");
+        w.muestra("inventario_cambios_borrados_total", stats.get("borrados"));
+        w.familia("inventario_cambios_suscriptores", "gauge", "Suscriptores conectados (long-poll y SSE)");
+        w.muestra("inventario_cambios_suscriptores", stats.get("suscriptores"));
+        w.familia("inventario_cambios_errores_total", "counter", "Sondeos del feed fallidos");
+        w.muestra("inventario_cambios_errores_total", stats.get("errores"));
+    }
+
+    private void escribirLecturas(EscritorPrometheus w, Map<String, Long> stats) {
+        w.familia("inventario_replicas", "gauge", "Réplicas de lectura configuradas");
+        w.muestra("inventario_replicas", stats.get("replicas"));
+        if (stats.get("replicas") == 0) return;
+        w.familia("inventario_replicas_disponibles", "gauge", "Réplicas no castigadas por un fallo reciente");
+        w.muestra("inventario_replicas_disponibles", stats.get("disponibles"));
+        w.familia("inventario_lecturas_total", "counter", "Lecturas de consulta por destino");
+        w.muestra("inventario_lecturas_total", etiquetas("destino", "replica"), stats.get("lecturasReplica"));
+        w.muestra("inventario_lecturas_total", etiquetas("destino", "primaria"), stats.get("lecturasPrimaria"));
+        w.familia("inventario_lecturas_primaria_motivo_total", "counter", "Lecturas enviadas a la primaria por una escritura reciente");
+        w.muestra("inventario_lecturas_primaria_motivo_total", etiquetas("motivo", "sesion"), stats.get("porSesion"));
+        w.muestra("inventario_lecturas_primaria_motivo_total", etiquetas("motivo", "codigo"), stats.get("porCodigo"));
+        w.familia("inventario_replicas_fallos_total", "counter", "Conexiones a réplica fallidas");
+        w.muestra("inventario_replicas_fallos_total", stats.get("fallosReplica"));
+        w.familia("inventario_replicas_codigos_recientes", "gauge", "Códigos escritos dentro de la ventana que se leen de la primaria");
+        w.muestra("inventario_replicas_codigos_recientes", stats.get("codigosRecientes"));
+    }
+
+    private void escribirInvalidacion(EscritorPrometheus w, Map<String, Long> stats) {
+        if (stats.isEmpty()) return;
+        w.familia("inventario_invalidacion_publicadas_total", "counter", "Avisos de invalidación publicados en el bus");
+        w.muestra("inventario_invalidacion_publicadas_total", stats.get("publicadas"));
+        w.familia("inventario_invalidacion_recibidas_total", "counter", "Avisos de otras instancias aplicados a las caches");
+        w.muestra("inventario_invalidacion_recibidas_total", stats.get("recibidas"));
+        w.familia("inventario_invalidacion_errores_total", "counter", "Avisos que no se pudieron publicar");
+        w.muestra("inventario_invalidacion_errores_total", stats.get("errores"));
+    }
+
+    private void escribirPurga(EscritorPrometheus w, Map<String, Long> stats) {
+        w.familia("inventario_purga_archivadas_total", "counter", "Lápidas movidas a productos_archivo");
+        w.muestra("inventario_purga_archivadas_total", stats.get("archivadas"));
+        w.familia("inventario_purga_lotes_total", "counter", "Lotes (transacciones) de purga confirmados");
+        w.muestra("inventario_purga_lotes_total", stats.get("lotes"));
+        w.familia("inventario_purga_aplazadas_total", "counter", "Ciclos de purga cortados por carga alta");
+        w.muestra("inventario_purga_aplazadas_total", stats.get("ciclosAplazados"));
+        w.familia("inventario_purga_errores_total", "counter", "Ciclos de purga fallidos");
+        w.muestra("inventario_purga_errores_total", stats.get("errores"));
+    }
+
+    private void escribirCachePaginas(EscritorPrometheus w, Map<String, Long> stats) {
+        w.familia("inventario_cache_paginas_total", "counter", "Peticiones del listado HTML por resultado en la cache de páginas");
+        w.muestra("inventario_cache_paginas_total", etiquetas("resultado", "acierto"), stats.get("aciertos"));
+        w.muestra("inventario_cache_paginas_total", etiquetas("resultado", "no_modificada"), stats.get("no_modificadas"));
+        w.muestra("inventario_cache_paginas_total", etiquetas("resultado", "fallo"), stats.get("fallos"));
+        w.muestra("inventario_cache_paginas_total", etiquetas("resultado", "omitida"), stats.get("omitidas"));
+        w.familia("inventario_cache_paginas_entradas", "gauge", "Páginas renderizadas en la cache");
+        w.muestra("inventario_cache_paginas_entradas", stats.get("entradas"));
+    }
+
+    private void escribirAsincrono(EscritorPrometheus w, Map<String, Long> stats) {
+        w.familia("inventario_async_tareas_total", "counter", "Tareas con acceso a la base lanzadas en hilos virtuales");
+        w.muestra("inventario_async_tareas_total", stats.get("tareas"));
+        w.familia("inventario_async_rechazadas_total", "counter", "Tareas rechazadas por falta de permiso (503)");
+        w.muestra("inventario_async_rechazadas_total", stats.get("rechazadas"));
+        w.familia("inventario_async_permisos", "gauge", "Permisos del semáforo delante del pool");
+        w.muestra("inventario_async_permisos", stats.get("permisos"));
+        w.familia("inventario_async_permisos_en_uso", "gauge", "Permisos ocupados");
+        w.muestra("inventario_async_permisos_en_uso", stats.get("permisos_en_uso"));
+        w.familia("inventario_async_esperando_permiso", "gauge", "Tareas esperando permiso");
+        w.muestra("inventario_async_esperando_permiso", stats.get("esperando_permiso"));
+    }
+
+    private void escribirAnalitica(EscritorPrometheus w, Map<String, Long> stats) {
+        if (stats.isEmpty()) return;
+        w.familia("inventario_analitica_filas", "gauge", "Filas de la instantánea columnar vigente");
+        w.muestra("inventario_analitica_filas", stats.get("filas"));
+        w.familia("inventario_analitica_edad_segundos", "gauge", "Antigüedad de la instantánea vigente (-1 = sin construir)");
+        long edad = stats.get("edadMs");
+        w.muestra("inventario_analitica_edad_segundos", edad < 0 ? -1 : edad / 1000.0);
+        w.familia("inventario_analitica_refrescos_total", "counter", "Refrescos de la instantánea por tipo");
+        w.muestra("inventario_analitica_refrescos_total", etiquetas("tipo", "incremental"), stats.get("refrescosIncrementales"));
+        w.muestra("inventario_analitica_refrescos_total", etiquetas("tipo", "completo"), stats.get("reconstrucciones"));
+        w.familia("inventario_analitica_errores_total", "counter", "Refrescos fallidos");
+        w.muestra("inventario_analitica_errores_total", stats.get("errores"));
+        w.familia("inventario_analitica_filas_leidas_total", "counter", "Filas leídas de la base para refrescar");
+        w.muestra("inventario_analitica_filas_leidas_total", stats.get("filasLeidas"));
+        w.familia("inventario_analitica_ultimo_refresco_segundos", "gauge", "Duración del último refresco");
+        w.muestra("inventario_analitica_ultimo_refresco_segundos", stats.get("duracionUltimoMs") / 1000.0);
+    }
+
+    private void escribirStockDiferido(EscritorPrometheus w, Map<String, Long> stats) {
+        if (stats.isEmpty()) return;
+        // Primero todo el counter y después el gauge: sku_pendientes va en medio del mapa
+        w.familia("inventario_stock_diferido_total", "counter", "Escritura diferida de stock por evento");
+        stats.forEach((evento, n) -> {
+            if (!"sku_pendientes".equals(evento)) {
+                w.muestra("inventario_stock_diferido_total", etiquetas("evento", evento), n);
+            }
+        });
+        Long pendientes = stats.get("sku_pendientes");
+        if (pendientes != null) {
+            w.familia("inventario_stock_diferido_sku_pendientes", "gauge", "SKU con delta pendiente de vaciar");
+            w.muestra("inventario_stock_diferido_sku_pendientes", pendientes);
+        }
+    }
+
+    private void escribirCache(EscritorPrometheus w, Map<String, CacheLectura.Estadisticas> caches) {
+        w.familia("inventario_cache_aciertos_total", "counter", "Aciertos de cache (incluye ausencias cacheadas)");
+        caches.forEach((nombre, e) -> {
+            w.muestra("inventario_cache_aciertos_total", etiquetas("cache", nombre, "tipo", "valor"), e.aciertos());
+            w.muestra("inventario_cache_aciertos_total", etiquetas("cache", nombre, "tipo", "ausencia"), e.aciertosNegativos());
+        });
+        familiaCache(w, caches, "inventario_cache_fallos_total", "counter", "Fallos de cache",
+                CacheLectura.Estadisticas::fallos);
+        familiaCache(w, caches, "inventario_cache_desalojos_total", "counter", "Entradas desalojadas por capacidad",
+                CacheLectura.Estadisticas::desalojos);
+        familiaCache(w, caches, "inventario_cache_expirados_total", "counter", "Entradas descartadas por TTL",
+                CacheLectura.Estadisticas::expirados);
+        familiaCache(w, caches, "inventario_cache_cargas_total", "counter", "Cargas contra la base",
+                CacheLectura.Estadisticas::cargas);
+        familiaCache(w, caches, "inventario_cache_errores_carga_total", "counter", "Cargas que terminaron en error",
+                CacheLectura.Estadisticas::erroresCarga);
+        familiaCache(w, caches, "inventario_cache_carga_segundos_total", "counter", "Tiempo acumulado de carga",
+                e -> e.nanosCarga() / 1e9);
+        familiaCache(w, caches, "inventario_cache_entradas", "gauge", "Entradas actuales",
+                CacheLectura.Estadisticas::tamano);
+        familiaCache(w, caches, "inventario_cache_capacidad", "gauge", "Capacidad máxima",
+                CacheLectura.Estadisticas::capacidad);
+    }
+
+    /* Una familia con la muestra de cada cache, todas seguidas */
+    private static void familiaCache(EscritorPrometheus w, Map<String, CacheLectura.Estadisticas> caches,
+                                     String familia, String tipo, String ayuda,
+                                     ToDoubleFunction<CacheLectura.Estadisticas> valor) {
+        w.familia(familia, tipo, ayuda);
+        caches.forEach((nombre, e) -> w.muestra(familia, etiquetas("cache", nombre), valor.applyAsDouble(e)));
+    }
+}
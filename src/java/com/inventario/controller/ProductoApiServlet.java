@@ -0,0 +1,392 @@
+package com.inventario.controller;
+
+import com.inventario.facade.ProductoDuplicadoException;
+import com.inventario.facade.ProductoFacade;
+import com.inventario.facade.ProductoNoEncontradoException;
+import com.inventario.facade.StockInsuficienteException;
+import com.inventario.formato.FuenteProductosJsonl;
+import com.inventario.formato.Json;
+import com.inventario.model.BusquedaPorCodigos;
+import com.inventario.model.Pagina;
+import com.inventario.model.Producto;
+import com.inventario.model.ProductoVista;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonException;
+import jakarta.json.JsonNumber;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonReader;
+import jakarta.json.JsonString;
+import jakarta.json.JsonValue;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * API JSON de productos, sin sesión HTTP y escribiendo directo en la respuesta.
+ *
+ *   GET    /api/productos?cursor=&limit=      página por cursor (items, siguiente, anterior)
+ *   POST   /api/productos                     crea (cuerpo JSON con las claves del CSV) -> 201
+ *   GET    /api/productos/{codigo}            | GET    /api/productos/id/{id}
+ *   DELETE /api/productos/{codigo}            | DELETE /api/productos/id/{id}     -> 204
+ *   POST   /api/productos/{codigo}/stock      {"delta": n} -> stock resultante; 409 si quedaría negativo
+ *   POST   /api/productos/lote                {"codigos": [...]} -> {"items": [...], "faltantes": [...]}
+ *
+ * Los GET llevan ETag débil (SHA-256 de los datos); con If-None-Match igual se responde 304.
+ */
+@WebServlet(name = "ProductoApiServlet", urlPatterns = {"/api/productos", "/api/productos/*"})
+public class ProductoApiServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    private static final String JSON = "application/json; charset=UTF-8";
+    private static final int LIMITE_DEFECTO = 20;
+    private static final int LIMITE_MAXIMO = 100;
+    private static final int MAX_CODIGOS_LOTE = 1_000;
+
+    private ProductoFacade facade;
+
+    @Override
+    public void init() throws ServletException {
+        this.facade = (ProductoFacade) getServletContext().getAttribute(ProductoFacade.ATRIBUTO);
+        if (facade == null) {
+            throw new ServletException("La fachada no está disponible. Revisa el arranque de InventarioListener.");
+        }
+    }
+
+    /* ================================== GET ================================== */
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        if (!aceptaJson(req, resp)) return;
+        String[] ruta = ruta(req);
+        try {
+            if (ruta.length == 0) {
+                listar(req, resp);
+            } else if (ruta.length == 1) {
+                responderProducto(req, resp, facade.buscarPorCodigo(ruta[0]));
+            } else if (ruta.length == 2 && "id".equals(ruta[0])) {
+                responderProducto(req, resp, facade.buscarPorId(entero(ruta[1])));
+            } else {
+                error(resp, HttpServletResponse.SC_NOT_FOUND, "Recurso no encontrado.");
+            }
+        } catch (NumberFormatException e) {
+            error(resp, HttpServletResponse.SC_BAD_REQUEST, "ID inválido.");
+        } catch (Exception e) {
+            fallo(resp, e);
+        }
+    }
+
+    private void listar(HttpServletRequest req, HttpServletResponse resp) throws Exception {
+        int limit = LIMITE_DEFECTO;
+        String l = req.getParameter("limit");
+        if (l != null && !l.isBlank()) {
+            try {
+                limit = Math.max(1, Math.min(LIMITE_MAXIMO, Integer.parseInt(l.trim())));
+            } catch (NumberFormatException e) {
+                error(resp, HttpServletResponse.SC_BAD_REQUEST, "limit debe ser un entero.");
+                return;
+            }
+        }
+        Pagina<ProductoVista> pagina;
+        try {
+            pagina = facade.listarPorCursor(req.getParameter("cursor"), limit);
+        } catch (IllegalArgumentException e) {
+            error(resp, HttpServletResponse.SC_BAD_REQUEST, "Cursor inválido.");
+            return;
+        }
+
+        Huella h = new Huella();
+        for (ProductoVista p : pagina.getItems()) h.producto(p);
+        h.texto(pagina.getSiguiente());
+        h.texto(pagina.getAnterior());
+        if (noModificado(req, resp, h)) return;
+
+        PrintWriter out = resp.getWriter();
+        out.write("{\"items\":[");
+        boolean primero = true;
+        for (ProductoVista p : pagina.getItems()) {
+            if (!primero) out.write(',');
+            primero = false;
+            Json.producto(out, p);
+        }
+        out.write("],\"siguiente\":");
+        Json.cadena(out, pagina.getSiguiente());
+        out.write(",\"anterior\":");
+        Json.cadena(out, pagina.getAnterior());
+        out.write('}');
+    }
+
+    private void responderProducto(HttpServletRequest req, HttpServletResponse resp, Optional<Producto> p)
+            throws IOException {
+        if (p.isEmpty()) {
+            error(resp, HttpServletResponse.SC_NOT_FOUND, "Producto no encontrado.");
+            return;
+        }
+        Huella h = new Huella();
+        h.producto(p.get());
+        if (noModificado(req, resp, h)) return;
+        Json.producto(resp.getWriter(), p.get());
+    }
+
+    /* ================================= POST ================================== */
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        if (!aceptaJson(req, resp)) return;
+        String[] ruta = ruta(req);
+        boolean alta = ruta.length == 0;
+        boolean lote = ruta.length == 1 && "lote".equals(ruta[0]);
+        boolean stock = ruta.length == 2 && "stock".equals(ruta[1]);
+        if (!alta && !lote && !stock) {
+            // Sin leer el cuerpo: una ruta que no existe no debe costar el parseo
+            error(resp, HttpServletResponse.SC_NOT_FOUND, "Recurso no encontrado.");
+            return;
+        }
+        JsonObject cuerpo;
+        try (JsonReader r = jakarta.json.Json.createReader(req.getReader())) {
+            cuerpo = r.readObject();
+        } catch (JsonException | IllegalStateException e) {
+            error(resp, HttpServletResponse.SC_BAD_REQUEST, "JSON inválido: " + e.getMessage());
+            return;
+        }
+
+        try {
+            if (alta) {
+                Producto p = FuenteProductosJsonl.producto(cuerpo);
+                facade.crear(p);
+                resp.setStatus(HttpServletResponse.SC_CREATED);
+                resp.setHeader("Location", req.getContextPath() + "/api/productos/id/" + p.getId());
+                resp.setContentType(JSON);
+                Json.producto(resp.getWriter(), p);
+            } else if (lote) {
+                buscarLote(cuerpo, resp);
+            } else {
+                JsonValue delta = cuerpo.get("delta");
+                if (!(delta instanceof JsonNumber n) || !n.isIntegral()) {
+                    error(resp, HttpServletResponse.SC_BAD_REQUEST, "delta debe ser un entero.");
+                    return;
+                }
+                int resultante = facade.ajustarStock(ruta[0], n.intValueExact());
+                PrintWriter out = resp.getWriter();
+                out.write("{\"codigo\":");
+                Json.cadena(out, ruta[0]);
+                out.write(",\"stock\":");
+                out.write(Integer.toString(resultante));
+                out.write('}');
+            }
+        } catch (IllegalArgumentException e) {
+            // Campos mal formados (precio, stock)
+            error(resp, HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+        } catch (ArithmeticException e) {
+            error(resp, HttpServletResponse.SC_BAD_REQUEST, "delta fuera de rango.");
+        } catch (Exception e) {
+            fallo(resp, e);
+        }
+    }
+
+    private void buscarLote(JsonObject cuerpo, HttpServletResponse resp) throws Exception {
+        JsonValue v = cuerpo.get("codigos");
+        if (!(v instanceof JsonArray arreglo)) {
+            error(resp, HttpServletResponse.SC_BAD_REQUEST, "Falta el arreglo 'codigos'.");
+            return;
+        }
+        if (arreglo.size() > MAX_CODIGOS_LOTE) {
+            error(resp, HttpServletResponse.SC_BAD_REQUEST, "Máximo " + MAX_CODIGOS_LOTE + " códigos por petición.");
+            return;
+        }
+        List<String> codigos = new ArrayList<>(arreglo.size());
+        for (JsonValue c : arreglo) {
+            if (!(c instanceof JsonString js)) {
+                error(resp, HttpServletResponse.SC_BAD_REQUEST, "Los códigos deben ser cadenas.");
+                return;
+            }
+            codigos.add(js.getString());
+        }
+
+        BusquedaPorCodigos r = facade.buscarPorCodigos(codigos);
+        PrintWriter out = resp.getWriter();
+        out.write("{\"items\":[");
+        for (int i = 0; i < r.encontrados().size(); i++) {
+            if (i > 0) out.write(',');
+            Json.producto(out, r.encontrados().get(i));
+        }
+        out.write("],\"faltantes\":[");
+        for (int i = 0; i < r.faltantes().size(); i++) {
+            if (i > 0) out.write(',');
+            Json.cadena(out, r.faltantes().get(i));
+        }
+        out.write("]}");
+    }
+
+    /* ================================ DELETE ================================= */
+
+    @Override
+    protected void doDelete(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        String[] ruta = ruta(req);
+        try {
+            Optional<Producto> p;
+            if (ruta.length == 1) p = facade.buscarPorCodigo(ruta[0]);
+            else if (ruta.length == 2 && "id".equals(ruta[0])) p = facade.buscarPorId(entero(ruta[1]));
+            else {
+                error(resp, HttpServletResponse.SC_NOT_FOUND, "Recurso no encontrado.");
+                return;
+            }
+            if (p.isEmpty()) {
+                error(resp, HttpServletResponse.SC_NOT_FOUND, "Producto no encontrado.");
+                return;
+            }
+            facade.eliminar(p.get().getId());
+            resp.setStatus(HttpServletResponse.SC_NO_CONTENT);
+        } catch (NumberFormatException e) {
+            error(resp, HttpServletResponse.SC_BAD_REQUEST, "ID inválido.");
+        } catch (Exception e) {
+            fallo(resp, e);
+        }
+    }
+
+    /* ================================ Apoyo ================================== */
+
+    private static String[] ruta(HttpServletRequest req) {
+        String info = req.getPathInfo();
+        if (info == null || info.equals("/")) return new String[0];
+        String limpio = info.startsWith("/") ? info.substring(1) : info;
+        if (limpio.endsWith("/")) limpio = limpio.substring(0, limpio.length() - 1);
+        return limpio.split("/");
+    }
+
+    private static int entero(String s) {
+        return Integer.parseInt(s.trim());
+    }
+
+    /* Solo se sirve JSON: sin Accept o con un rango que lo incluya; si no, 406 */
+    private static boolean aceptaJson(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setCharacterEncoding("UTF-8");
+        resp.setContentType(JSON);
+        resp.setHeader("Vary", "Accept");
+        String accept = req.getHeader("Accept");
+        if (accept == null || accept.isBlank() || accept.contains("application/json")
+                || accept.contains("*/*") || accept.contains("application/*")) {
+            return true;
+        }
+        error(resp, HttpServletResponse.SC_NOT_ACCEPTABLE, "Solo se sirve application/json.");
+        return false;
+    }
+
+    /* Fija ETag y Cache-Control; true (y 304) si el cliente ya tiene esta versión */
+    private static boolean noModificado(HttpServletRequest req, HttpServletResponse resp, Huella huella) {
+        String etag = "W/\"" + huella.valor() + "\"";
+        resp.setHeader("ETag", etag);
+        resp.setHeader("Cache-Control", "no-cache");
+        String inm = req.getHeader("If-None-Match");
+        if (inm == null) return false;
+        for (String candidato : inm.split(",")) {
+            String c = candidato.trim();
+            if (c.equals("*") || c.equals(etag) || c.equals(etag.substring(2))) {
+                resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * SHA-256 de los campos que se sirven, con su longitud delante para que
+     * ("ab", "c") y ("a", "bc") no coincidan. Se usan 128 bits en el ETag.
+     */
+    private static final class Huella {
+        private final MessageDigest md;
+        private final ByteBuffer numero = ByteBuffer.allocate(Long.BYTES);
+
+        Huella() {
+            try {
+                md = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e); // todo JRE trae SHA-256
+            }
+        }
+
+        void producto(Producto p) {
+            entero(p.getId() == null ? 0 : p.getId());
+            texto(p.getCodigo());
+            texto(p.getNombre());
+            texto(p.getCategoria());
+            texto(p.getPrecio() == null ? null : p.getPrecio().toPlainString());
+            entero(p.getStock() == null ? -1 : p.getStock());
+            entero(Boolean.TRUE.equals(p.getActivo()) ? 1 : 0);
+        }
+
+        void producto(ProductoVista p) {
+            entero(p.id());
+            texto(p.codigo());
+            texto(p.nombre());
+            texto(p.categoria());
+            entero(p.centavos());
+            entero(p.stock());
+            entero(p.activo() ? 1 : 0);
+        }
+
+        void texto(String s) {
+            if (s == null) {
+                entero(-1);
+                return;
+            }
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            entero(b.length);
+            md.update(b);
+        }
+
+        void entero(long v) {
+            md.update(numero.clear().putLong(v).array());
+        }
+
+        String valor() {
+            return HexFormat.of().formatHex(md.digest(), 0, 16);
+        }
+    }
+
+    private void fallo(HttpServletResponse resp, Exception e) throws IOException {
+        if (e instanceof ProductoNoEncontradoException) {
+            error(resp, HttpServletResponse.SC_NOT_FOUND, e.getMessage());
+        } else if (e instanceof StockInsuficienteException || e instanceof ProductoDuplicadoException) {
+            error(resp, HttpServletResponse.SC_CONFLICT, e.getMessage());
+        } else if (e instanceof SQLIntegrityConstraintViolationException) {
+            // Alta concurrente con el mismo código: la clave única gana la carrera al chequeo previo
+            error(resp, HttpServletResponse.SC_CONFLICT, "Ya existe un producto con ese código.");
+        } else if (e instanceof SQLException) {
+            log("[API] Error de base de datos: " + e.getMessage(), e);
+            error(resp, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error de base de datos.");
+        } else if (e instanceof RuntimeException) {
+            // Un fallo nuestro, no del cliente
+            log("[API] Error inesperado: " + e, e);
+            error(resp, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Error interno.");
+        } else {
+            // Reglas de negocio de ProductoFacade.validar
+            error(resp, HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    private static void error(HttpServletResponse resp, int status, String mensaje) throws IOException {
+        if (resp.isCommitted()) return;
+        resp.resetBuffer();
+        resp.setStatus(status);
+        resp.setContentType(JSON);
+        PrintWriter out = resp.getWriter();
+        out.write("{\"error\":");
+        Json.cadena(out, mensaje);
+        out.write('}');
+    }
+}
@@ -1,32 +1,47 @@
 package com.inventario.controller;
 
 import com.inventario.facade.ProductoFacade;
+import com.inventario.model.Pagina;
 import com.inventario.model.Producto;
-import jakarta.annotation.Resource;
+import com.inventario.model.ProductoVista;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.*;
 
-import javax.sql.DataSource;
 import java.io.IOException;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
-
-@WebServlet(name = "ProductoServlet", urlPatterns = {"/productos"})
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+import static com.inventario.controller.EjecutorPeticiones.obtener;
+
+@WebServlet(name = "ProductoServlet", urlPatterns = {"/productos"}, asyncSupported = true)
 public class ProductoServlet extends HttpServlet {
     private static final long serialVersionUID = 1L;
 
-    @Resource(lookup = "jdbc/inventarioPool")
-    private DataSource ds;
-
     private ProductoFacade facade;
+    private EjecutorPeticiones ejecutor;    // null = list/search en el hilo del contenedor
 
     @Override
     public void init() throws ServletException {
-        if (ds == null) {
-            throw new ServletException("No se pudo inyectar el DataSource jdbc/inventarioPool. Verifica GlassFish y el web.xml.");
+        this.facade = (ProductoFacade) getServletContext().getAttribute(ProductoFacade.ATRIBUTO);
+        if (facade == null) {
+            throw new ServletException("La fachada no está disponible. Revisa el arranque de InventarioListener.");
         }
-        this.facade = new ProductoFacade(ds);
+        this.ejecutor = (EjecutorPeticiones) getServletContext().getAttribute(EjecutorPeticiones.ATRIBUTO);
     }
 
     @Override
@@ -43,11 +58,18 @@ public class ProductoServlet extends HttpServlet {
         // --- parámetros de paginación ---
         int limit = 10; // ajustable
         int page = 1;
+        // ?page= se mantiene como modo heredado (LIMIT/OFFSET); sin él se usa el cursor
+        String p = req.getParameter("page");
+        boolean usarOffset = p != null && !p.isBlank()
+                && (req.getParameter("cursor") == null || req.getParameter("cursor").isBlank());
         try {
-            String p = req.getParameter("page");
             if (p != null) page = Math.max(1, Integer.parseInt(p));
         } catch (NumberFormatException ignore) { page = 1; }
-        int offset = (page - 1) * limit;
+
+        if (ejecutor != null && req.isAsyncSupported() && !"new".equals(action) && !"delete".equals(action)) {
+            atenderAsincrono(req, resp, "search".equals(action), limit, page, usarOffset);
+            return;
+        }
 
         try {
             switch (action) {
@@ -88,49 +110,197 @@ public class ProductoServlet extends HttpServlet {
                         req.setAttribute("error", "Ingresa un código para buscar.");
                     }
 
-                    int total = facade.contar();
-                    int totalPages = Math.max(1, (int)Math.ceil(total / (double)limit));
-                    if (page > totalPages) { page = totalPages; offset = (page - 1) * limit; }
-
-                    List<Producto> productos = facade.listar(limit, offset);
-                    req.setAttribute("productos", productos);
-                    req.setAttribute("page", page);
-                    req.setAttribute("totalPages", totalPages);
-                    req.setAttribute("total", total);
-                    req.setAttribute("limit", limit);
+                    cargarListado(req, limit, page, usarOffset);
 
                     req.getRequestDispatcher("/productos.jsp").forward(req, resp);
                     break;
                 }
 
                 default: { // list
-                    int total = facade.contar();
-                    int totalPages = Math.max(1, (int)Math.ceil(total / (double)limit));
-                    if (page > totalPages) { page = totalPages; offset = (page - 1) * limit; }
-
-                    List<Producto> productos = facade.listar(limit, offset);
-
-                    req.setAttribute("productos", productos);
-                    req.setAttribute("page", page);
-                    req.setAttribute("totalPages", totalPages);
-                    req.setAttribute("total", total);
-                    req.setAttribute("limit", limit);
+                    cargarListado(req, limit, page, usarOffset);
 
                     req.getRequestDispatcher("/productos.jsp").forward(req, resp);
                     break;
                 }
             }
         } catch (Exception e) {
-            req.setAttribute("error", "Error al cargar productos: " + e.getMessage());
-            req.setAttribute("productos", Collections.emptyList());
-            req.setAttribute("page", 1);
-            req.setAttribute("totalPages", 1);
-            req.setAttribute("total", 0);
-            req.setAttribute("limit", limit);
+            errorListado(req::setAttribute, limit, "Error al cargar productos: " + e.getMessage());
             req.getRequestDispatcher("/productos.jsp").forward(req, resp);
         }
     }
 
+    /*
+     * list / search con inventario.async.habilitado: el hilo del contenedor vuelve
+     * al pool y un hilo virtual pide en paralelo página y búsqueda por código
+     * (el conteo sale de memoria); al terminar hace dispatch al JSP (503 si no
+     * hubo conexión a tiempo). El hilo virtual no toca req/resp hasta ganar
+     * 'resuelta': si antes vence el timeout, responde onTimeout y las tareas
+     * pendientes se cancelan para soltar sus permisos.
+     */
+    private void atenderAsincrono(HttpServletRequest req, HttpServletResponse resp, boolean buscar,
+                                  int limit, int page, boolean usarOffset) throws IOException {
+        String codigo = req.getParameter("codigo");
+        String cursor = req.getParameter("cursor");
+        AsyncContext async = req.startAsync();
+        async.setTimeout(ejecutor.timeoutMs());
+        AtomicBoolean resuelta = new AtomicBoolean();
+        Pendientes pendientes = new Pendientes(ejecutor);
+        async.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent e) throws IOException {
+                if (!resuelta.compareAndSet(false, true)) return;
+                pendientes.cancelar();
+                resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Tiempo de espera agotado.");
+                async.complete();
+            }
+
+            @Override public void onComplete(AsyncEvent e) { }
+            @Override public void onError(AsyncEvent e) { pendientes.cancelar(); }
+            @Override public void onStartAsync(AsyncEvent e) { }
+        });
+
+        try {
+            ejecutor.ejecutar(() -> {
+                Map<String, Object> atributos = new LinkedHashMap<>();
+                boolean ocupado = false;
+                try {
+                    Future<Optional<Producto>> porCodigo = null;
+                    if (buscar) {
+                        atributos.put("codigoBusqueda", codigo);
+                        if (codigo != null && !codigo.isBlank()) {
+                            porCodigo = pendientes.enviar(() -> facade.buscarPorCodigo(codigo));
+                        } else {
+                            atributos.put("error", "Ingresa un código para buscar.");
+                        }
+                    }
+
+                    cargarListadoConcurrente(pendientes, atributos::put, cursor, limit, page, usarOffset);
+
+                    if (porCodigo != null) {
+                        Optional<Producto> opt = obtener(porCodigo);
+                        if (opt.isPresent()) {
+                            atributos.put("resultado", opt.get());
+                        } else {
+                            atributos.put("error", "No se encontró producto con código: " + codigo.trim());
+                        }
+                    }
+                } catch (RejectedExecutionException exOcupado) {
+                    ocupado = true;
+                    errorListado(atributos::put, limit, "Servidor ocupado, intenta de nuevo en unos segundos.");
+                } catch (Exception e) {
+                    errorListado(atributos::put, limit, "Error al cargar productos: " + e.getMessage());
+                }
+                // Si ya respondió onTimeout, req/resp pueden estar reciclados: no se tocan
+                if (!resuelta.compareAndSet(false, true)) return;
+                atributos.forEach(req::setAttribute);
+                if (ocupado) {
+                    resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                    resp.setHeader("Retry-After", "1");
+                }
+                async.dispatch("/productos.jsp");
+            });
+        } catch (RejectedExecutionException exApagado) {
+            // El ejecutor ya se cerró (la aplicación se está parando)
+            if (!resuelta.compareAndSet(false, true)) return;
+            resp.setHeader("Retry-After", "1");
+            resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Servidor ocupado, intenta de nuevo en unos segundos.");
+            async.complete();
+        }
+    }
+
+    /* Tareas con permiso de una petición asíncrona; cancelar() interrumpe las que esperan o corren */
+    private static final class Pendientes {
+        private final EjecutorPeticiones ejecutor;
+        private final Queue<Future<?>> futuros = new ConcurrentLinkedQueue<>();
+        private volatile boolean cancelada;
+
+        Pendientes(EjecutorPeticiones ejecutor) {
+            this.ejecutor = ejecutor;
+        }
+
+        <T> Future<T> enviar(Callable<T> tarea) {
+            if (cancelada) throw new CancellationException("Petición vencida.");
+            Future<T> f = ejecutor.enviar(tarea);
+            futuros.add(f);
+            // cancelar() pudo recorrer la cola antes del add
+            if (cancelada) f.cancel(true);
+            return f;
+        }
+
+        void cancelar() {
+            cancelada = true;
+            for (Future<?> f : futuros) f.cancel(true);
+        }
+    }
+
+    /* Carga productos + datos del paginador en el request para productos.jsp */
+    private void cargarListado(HttpServletRequest req, int limit, int page, boolean usarOffset) throws Exception {
+        int total = facade.contar();
+        req.setAttribute("total", total);
+        req.setAttribute("limit", limit);
+
+        if (usarOffset) {
+            int totalPages = totalPaginas(total, limit);
+            if (page > totalPages) page = totalPages;
+            publicarPagina(req::setAttribute, facade.listar(limit, (page - 1) * limit), page, totalPages);
+            return;
+        }
+        publicarCursor(req::setAttribute, paginaPorCursor(req.getParameter("cursor"), limit));
+    }
+
+    /* Como cargarListado, pero la página va en su propia tarea (con permiso) mientras se busca el código */
+    private void cargarListadoConcurrente(Pendientes pendientes, BiConsumer<String, Object> atributo, String cursor,
+                                          int limit, int page, boolean usarOffset) throws Exception {
+        // contar() sale del contador en memoria: no necesita permiso de la base
+        int total = facade.contar();
+        atributo.accept("total", total);
+        atributo.accept("limit", limit);
+
+        if (usarOffset) {
+            int totalPages = totalPaginas(total, limit);
+            int pagina = Math.min(page, totalPages);
+            publicarPagina(atributo, obtener(pendientes.enviar(() -> facade.listar(limit, (pagina - 1) * limit))),
+                    pagina, totalPages);
+            return;
+        }
+        publicarCursor(atributo, obtener(pendientes.enviar(() -> paginaPorCursor(cursor, limit))));
+    }
+
+    private Pagina<ProductoVista> paginaPorCursor(String cursor, int limit) throws Exception {
+        try {
+            return facade.listarPorCursor(cursor, limit);
+        } catch (IllegalArgumentException exCursor) {
+            return facade.listarPorCursor(null, limit);
+        }
+    }
+
+    private static int totalPaginas(int total, int limit) {
+        return Math.max(1, (int)Math.ceil(total / (double)limit));
+    }
+
+    private static void publicarPagina(BiConsumer<String, Object> atributo, List<ProductoVista> productos,
+                                       int page, int totalPages) {
+        atributo.accept("productos", productos);
+        atributo.accept("page", page);
+        atributo.accept("totalPages", totalPages);
+    }
+
+    private static void publicarCursor(BiConsumer<String, Object> atributo, Pagina<ProductoVista> pagina) {
+        atributo.accept("productos", pagina.getItems());
+        atributo.accept("modoCursor", true);
+        atributo.accept("cursorSiguiente", pagina.getSiguiente());
+        atributo.accept("cursorAnterior", pagina.getAnterior());
+    }
+
+    private static void errorListado(BiConsumer<String, Object> atributo, int limit, String mensaje) {
+        atributo.accept("error", mensaje);
+        atributo.accept("productos", Collections.emptyList());
+        atributo.accept("page", 1);
+        atributo.accept("totalPages", 1);
+        atributo.accept("total", 0);
+        atributo.accept("limit", limit);
+    }
+
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp)
             throws ServletException, IOException {
@@ -0,0 +1,54 @@
+package com.inventario.facade;
+
+import com.inventario.cache.BusInvalidacion;
+import com.inventario.cache.Invalidacion;
+import com.inventario.model.Cambio;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Bus sobre el feed de cambios: cada escritura ya deja su fila en
+ * productos_cambios dentro de su transacción y el FeedCambios de cada
+ * instancia sondea esa tabla, así que la fila es el mensaje y publicar no hace
+ * nada. No hay un broker más que operar ni avisos que se pierdan si uno cae;
+ * a cambio llega con el intervalo del sondeo (inventario.cambios.intervaloMs).
+ *
+ * El feed no sabe qué instancia escribió: cada una recibe también sus propios
+ * cambios y los invalida otra vez (un fallo de cache de más).
+ *
+ * Hereda las garantías del feed: una transacción que confirma después de
+ * inventario.cambios.graciaMs llega reemitida en la siguiente revisión de
+ * huecos, y una que tarda más que inventario.cambios.revisionMs no invalida
+ * nada (queda el TTL de las caches).
+ */
+class BusInvalidacionFeed implements BusInvalidacion {
+
+    private final FeedCambios feed;
+
+    BusInvalidacionFeed(FeedCambios feed) {
+        this.feed = feed;
+    }
+
+    @Override
+    public void publicar(Invalidacion invalidacion) {
+        // la fila de productos_cambios ya es el aviso
+    }
+
+    @Override
+    public Runnable suscribir(Consumer<Invalidacion> receptor) {
+        return feed.suscribir(cambios -> receptor.accept(aInvalidacion(cambios)));
+    }
+
+    private static Invalidacion aInvalidacion(List<Cambio> cambios) {
+        Set<String> codigos = new HashSet<>();
+        Set<Integer> ids = new HashSet<>();
+        for (Cambio c : cambios) {
+            codigos.add(c.codigo());
+            if (Cambio.BAJA.equals(c.tipo())) ids.add(c.productoId());
+        }
+        return new Invalidacion(null, codigos, ids, false);
+    }
+}
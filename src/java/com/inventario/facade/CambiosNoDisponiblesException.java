@@ -0,0 +1,18 @@
+package com.inventario.facade;
+
+/**
+ * Se pidieron cambios posteriores a una secuencia que ya salió de la retención
+ * del feed: el consumidor debe volver a leer el catálogo completo.
+ */
+public class CambiosNoDisponiblesException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    private final long primeraDisponible;
+
+    public CambiosNoDisponiblesException(long desde, long primeraDisponible) {
+        super("Los cambios posteriores a " + desde + " ya no están disponibles; el primero es " + primeraDisponible);
+        this.primeraDisponible = primeraDisponible;
+    }
+
+    public long getPrimeraDisponible() { return primeraDisponible; }
+}
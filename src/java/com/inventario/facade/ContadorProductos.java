@@ -0,0 +1,165 @@
+package com.inventario.facade;
+
+import com.inventario.persistence.ProductoDAO;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Conteo de productos en memoria (total y por categoría).
+ * La fachada lo ajusta en cada crear/eliminar y un hilo de fondo lo
+ * resincroniza con la base cada cierto tiempo, así el paginador no
+ * ejecuta COUNT(*) por petición.
+ *
+ * Modo estimado (opt-in): en cada resincronización el total se toma de las
+ * estadísticas de InnoDB (information_schema.TABLES.TABLE_ROWS) sin recorrer
+ * la tabla. El GROUP BY por categoría (sobre idx_vivos_categoria) solo corre
+ * al arrancar y luego como mucho cada categoriasCadaMs; entre medias los
+ * conteos por categoría se mantienen con los ajustes de la fachada. Por eso en
+ * este modo la suma de las categorías no coincide con el total: el total es
+ * una estimación (TABLE_ROWS puede desviarse un 10-40 %) y cuenta también las
+ * lápidas aún no purgadas; las categorías son exactas a la última pasada.
+ */
+public class ContadorProductos implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(ContadorProductos.class.getName());
+
+    /* Clave para productos sin categoría (ConcurrentHashMap no admite null) */
+    private static final String SIN_CATEGORIA = "";
+
+    private final DataSource ds;
+    private final ProductoDAO dao;
+    private final boolean estimado;
+    private final long categoriasCadaMs;
+    private long categoriasEnMillis;      // última pasada del GROUP BY (guardado por this)
+
+    private final AtomicLong total = new AtomicLong();
+    private final ConcurrentHashMap<String, AtomicLong> porCategoria = new ConcurrentHashMap<>();
+    private volatile boolean sincronizado;
+
+    private ScheduledExecutorService planificador;
+
+    public ContadorProductos(DataSource ds, ProductoDAO dao, boolean estimado) {
+        this(ds, dao, estimado, 0);
+    }
+
+    /**
+     * @param categoriasCadaMs en modo estimado, intervalo mínimo entre dos
+     *                         GROUP BY por categoría (0 = en cada resincronización)
+     */
+    public ContadorProductos(DataSource ds, ProductoDAO dao, boolean estimado, long categoriasCadaMs) {
+        this.ds = ds;
+        this.dao = dao;
+        this.estimado = estimado;
+        this.categoriasCadaMs = Math.max(0, categoriasCadaMs);
+    }
+
+    /** Arranca la resincronización periódica (segundos <= 0 la desactiva). */
+    public synchronized void iniciar(long segundos) {
+        if (segundos <= 0 || planificador != null) return;
+        planificador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "inventario-conteo");
+            t.setDaemon(true);
+            return t;
+        });
+        planificador.scheduleWithFixedDelay(() -> {
+            try {
+                resincronizar();
+            } catch (Exception e) {
+                LOG.log(Level.WARNING, "[Conteo] No se pudo resincronizar", e);
+            }
+        }, 0, segundos, TimeUnit.SECONDS);
+    }
+
+    public long total() throws SQLException {
+        asegurarSincronizado();
+        return Math.max(0, total.get());
+    }
+
+    public long porCategoria(String categoria) throws SQLException {
+        asegurarSincronizado();
+        AtomicLong n = porCategoria.get(clave(categoria));
+        return n == null ? 0 : Math.max(0, n.get());
+    }
+
+    /** Copia ordenada de los conteos por categoría. */
+    public Map<String, Long> categorias() throws SQLException {
+        asegurarSincronizado();
+        Map<String, Long> out = new TreeMap<>();
+        porCategoria.forEach((k, v) -> out.put(k, Math.max(0, v.get())));
+        return out;
+    }
+
+    public void incrementar(String categoria) {
+        ajustar(categoria, 1);
+    }
+
+    public void decrementar(String categoria) {
+        ajustar(categoria, -1);
+    }
+
+    public void ajustar(String categoria, long delta) {
+        total.addAndGet(delta);
+        porCategoria.computeIfAbsent(clave(categoria), k -> new AtomicLong()).addAndGet(delta);
+    }
+
+    /**
+     * Reemplaza los contadores con los valores de la base.
+     * Los ajustes que ocurran mientras corre la consulta pueden perderse;
+     * la siguiente resincronización los corrige.
+     */
+    public synchronized void resincronizar() throws SQLException {
+        long ahora = System.currentTimeMillis();
+        boolean categorias = !estimado || !sincronizado || ahora - categoriasEnMillis >= categoriasCadaMs;
+        Map<String, Long> conteos = null;
+        long nuevoTotal;
+        try (Connection con = ds.getConnection()) {
+            if (categorias) conteos = dao.contarPorCategoria(con);
+            nuevoTotal = estimado
+                    ? dao.estimarTotal(con)
+                    : conteos.values().stream().mapToLong(Long::longValue).sum();
+        }
+        if (!categorias) {
+            total.set(nuevoTotal);
+            return;
+        }
+        categoriasEnMillis = ahora;
+
+        Map<String, Long> normalizados = new HashMap<>();
+        conteos.forEach((k, v) -> normalizados.merge(clave(k), v, Long::sum));
+        normalizados.forEach((k, v) -> porCategoria.computeIfAbsent(k, x -> new AtomicLong()).set(v));
+        porCategoria.keySet().retainAll(normalizados.keySet());
+        total.set(nuevoTotal);
+        sincronizado = true;
+    }
+
+    private void asegurarSincronizado() throws SQLException {
+        if (sincronizado) return;
+        synchronized (this) {
+            if (!sincronizado) resincronizar();
+        }
+    }
+
+    private static String clave(String categoria) {
+        return categoria == null ? SIN_CATEGORIA : categoria;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (planificador != null) {
+            planificador.shutdownNow();
+            planificador = null;
+        }
+    }
+}
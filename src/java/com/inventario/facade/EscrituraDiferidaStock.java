@@ -0,0 +1,507 @@
+package com.inventario.facade;
+
+import com.inventario.model.Cambio;
+import com.inventario.persistence.ProductoDAO;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Escritura diferida (write-behind) de movimientos de stock.
+ *
+ * Los movimientos se suman en acumuladores por SKU (LongAdder) sin bloquear
+ * al que registra; cada intervalo un hilo de fondo intercambia la "época"
+ * actual por una vacía y aplica el neto de cada SKU con un único UPDATE
+ * condicional por SKU, todos en un lote y una transacción.
+ *
+ * Con journal habilitado cada movimiento se anexa también al segmento de
+ * su época, en grupo: el primero que llega escribe y hace flush de todas las
+ * líneas encoladas mientras tanto. El segmento se borra cuando su
+ * transacción hace commit (que además lo registra en stock_journal_aplicado,
+ * de donde se quita en el vaciado siguiente), y al arrancar se reaplican los
+ * segmentos que hayan quedado en disco y no figuren como aplicados, de modo
+ * que un caída no pierde ni duplica deltas.
+ *
+ * Cada vaciado lee el stock resultante de sus SKU; durante VIGENCIA_SALDO_MS
+ * registrar rechaza en el acto un SKU que no existe o un movimiento que
+ * dejaría el stock negativo contando lo pendiente. Es aproximado (dos
+ * movimientos simultáneos pueden pasar a la vez): lo que aun así no se puede
+ * aplicar lo frena el UPDATE condicional, y se descarta con un evento
+ * stock_descartado en el feed de cambios (si el producto existe), además del
+ * log y /metricas. Un SKU
+ * cuyo UPDATE falla se aísla con un savepoint para no bloquear al resto.
+ */
+class EscrituraDiferidaStock implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(EscrituraDiferidaStock.class.getName());
+    private static final String PREFIJO = "movimientos-";
+    private static final String SUFIJO = ".log";
+
+    /** Tiempo durante el que se confía en el stock leído en un vaciado. */
+    private static final long VIGENCIA_SALDO_MS = 1000;
+
+    /* Línea del journal a la espera de su flush; campos guardados por Epoca.escritura */
+    private static final class Linea {
+        final String texto;
+        boolean escrita;
+        IOException error;
+
+        Linea(String texto) {
+            this.texto = texto;
+        }
+    }
+
+    /**
+     * Stock leído en el último vaciado del SKU (leidoEn = 0 si no se conoce o
+     * se olvidó) y suma de los netos ya sacados de su época y aún sin commit.
+     */
+    private record Saldo(boolean existe, long stock, long leidoEn, long enVuelo) {
+        boolean vigente(long ahora) {
+            return ahora - leidoEn < VIGENCIA_SALDO_MS;
+        }
+    }
+
+    /**
+     * Conjunto de acumuladores que se vacía de una vez, con su segmento de
+     * journal (el archivo se crea con el primer movimiento de la época).
+     */
+    private static final class Epoca {
+        final ConcurrentHashMap<String, LongAdder> pendientes = new ConcurrentHashMap<>();
+        final LongAdder escritores = new LongAdder(); // registros en curso sobre esta época
+        final String segmento = System.currentTimeMillis() + "-" + UUID.randomUUID();
+        final Path archivo;
+        final ConcurrentLinkedQueue<Linea> porEscribir = new ConcurrentLinkedQueue<>();
+        final ReentrantLock escritura = new ReentrantLock();
+        BufferedWriter journal; // guardado por escritura
+
+        Epoca(Path dir) {
+            this.archivo = dir == null ? null : dir.resolve(PREFIJO + segmento + SUFIJO);
+        }
+
+        /*
+         * Commit en grupo: cada uno encola su línea y espera el candado; quien
+         * lo toma y aún no tiene la suya escrita escribe todas las encoladas con
+         * un solo flush, y los demás encuentran la suya ya hecha.
+         */
+        void anotar(String codigo, int delta) throws IOException {
+            Linea mia = new Linea(codigo + '\t' + delta + '\n');
+            porEscribir.add(mia);
+            escritura.lock();
+            try {
+                if (!mia.escrita && mia.error == null) {
+                    List<Linea> grupo = new ArrayList<>();
+                    for (Linea l; (l = porEscribir.poll()) != null; ) grupo.add(l);
+                    try {
+                        if (journal == null) {
+                            journal = Files.newBufferedWriter(archivo, StandardCharsets.UTF_8,
+                                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                        }
+                        for (Linea l : grupo) journal.write(l.texto);
+                        journal.flush(); // al sistema operativo: sobrevive a la caída del proceso
+                        for (Linea l : grupo) l.escrita = true;
+                    } catch (IOException ex) {
+                        for (Linea l : grupo) l.error = ex;
+                    }
+                }
+                if (mia.error != null) throw mia.error;
+            } finally {
+                escritura.unlock();
+            }
+        }
+
+        /* Cierra el segmento y lo fuerza a disco; devuelve el archivo o null si no se escribió */
+        Path cerrarJournal() throws IOException {
+            escritura.lock();
+            try {
+                if (journal == null) return null;
+                journal.close();
+                journal = null;
+                try (FileChannel ch = FileChannel.open(archivo, StandardOpenOption.WRITE)) {
+                    ch.force(true);
+                }
+                return archivo;
+            } finally {
+                escritura.unlock();
+            }
+        }
+    }
+
+    /** Netos pendientes de aplicar junto con el segmento que los respalda. */
+    private record Lote(String segmento, Path archivo, TreeMap<String, Integer> netos) { }
+
+    private final DataSource ds;
+    private final ProductoDAO dao;
+    private final Consumer<Set<String>> alAplicar;
+    private final boolean registrarCambios;
+    private final long intervaloMs;
+    private final int capacidad;
+    private final long esperaMaxNanos;
+    private final Path dirJournal;
+
+    private volatile Epoca actual;
+    private final Deque<Lote> reintentos = new ArrayDeque<>();
+    private final ConcurrentHashMap<String, Saldo> saldos = new ConcurrentHashMap<>();
+    private final List<String> segmentosBorrados = new ArrayList<>(); // guardado por synchronized (this)
+    private volatile ScheduledExecutorService planificador;
+
+    private final LongAdder aceptados = new LongAdder();
+    private final LongAdder rechazadosPorCola = new LongAdder();
+    private final LongAdder rechazadosPorSaldo = new LongAdder();
+    private final LongAdder descartados = new LongAdder();
+    private final LongAdder fallidos = new LongAdder();
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder vaciados = new LongAdder();
+    private final LongAdder errores = new LongAdder();
+
+    /**
+     * @param alAplicar        recibe los códigos actualizados en cada vaciado (invalidación de caches)
+     * @param registrarCambios anotar los códigos aplicados en productos_cambios (feed de cambios)
+     * @param dirJournal       directorio del journal, o null para no usarlo
+     */
+    EscrituraDiferidaStock(DataSource ds, ProductoDAO dao, Consumer<Set<String>> alAplicar, boolean registrarCambios,
+                           long intervaloMs, int capacidad, long esperaMaxMs, Path dirJournal) {
+        this.ds = ds;
+        this.dao = dao;
+        this.alAplicar = alAplicar;
+        this.registrarCambios = registrarCambios;
+        this.intervaloMs = Math.max(1, intervaloMs);
+        this.capacidad = Math.max(1, capacidad);
+        this.esperaMaxNanos = Math.max(0, esperaMaxMs) * 1_000_000L;
+        this.dirJournal = dirJournal;
+    }
+
+    /** Reaplica el journal pendiente y arranca el vaciado periódico. */
+    synchronized void iniciar() throws IOException, SQLException {
+        if (dirJournal != null) {
+            Files.createDirectories(dirJournal);
+            reaplicarJournal();
+        }
+        actual = new Epoca(dirJournal);
+        planificador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "inventario-stock-diferido");
+            t.setDaemon(true);
+            return t;
+        });
+        planificador.scheduleWithFixedDelay(this::vaciarSeguro, intervaloMs, intervaloMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Acepta un movimiento. Solo espera si la época actual ya tiene
+     * "capacidad" SKU distintos pendientes; pasado esperaMaxMs lanza excepción.
+     * También la lanza si el último vaciado dice que el SKU no existe o que el
+     * stock quedaría negativo.
+     */
+    void registrar(String codigo, int delta) throws Exception {
+        if (delta == 0) return;
+        if (codigo.indexOf('\t') >= 0 || codigo.indexOf('\n') >= 0) {
+            throw new IllegalArgumentException("Código inválido.");
+        }
+        long limite = 0;
+        while (true) {
+            Epoca e = actual;
+            if (e == null) throw new IllegalStateException("La escritura diferida de stock no está iniciada.");
+            e.escritores.increment();
+            try {
+                if (e != actual) continue; // se intercambió entre medio: reintentar en la nueva
+
+                LongAdder acumulador = e.pendientes.get(codigo);
+                comprobarSaldo(codigo, delta, acumulador);
+                if (acumulador == null && e.pendientes.size() >= capacidad) {
+                    // Cola llena: se pide un vaciado inmediato y se espera un poco
+                    if (limite == 0) {
+                        limite = System.nanoTime() + esperaMaxNanos;
+                        ScheduledExecutorService p = planificador;
+                        if (p != null) {
+                            try {
+                                p.execute(this::vaciarSeguro);
+                            } catch (RejectedExecutionException ignore) { } // cerrando
+                        }
+                    }
+                    if (System.nanoTime() - limite >= 0) {
+                        rechazadosPorCola.increment();
+                        throw new Exception("Cola de movimientos de stock llena; reintenta más tarde.");
+                    }
+                } else {
+                    if (acumulador == null) acumulador = e.pendientes.computeIfAbsent(codigo, k -> new LongAdder());
+                    if (e.archivo != null) e.anotar(codigo, delta);
+                    acumulador.add(delta);
+                    aceptados.increment();
+                    return;
+                }
+            } finally {
+                e.escritores.decrement();
+            }
+            LockSupport.parkNanos(200_000L);
+        }
+    }
+
+    private void comprobarSaldo(String codigo, int delta, LongAdder acumulador) throws Exception {
+        Saldo s = saldos.get(clave(codigo));
+        if (s == null || !s.vigente(System.currentTimeMillis())) return;
+        if (!s.existe()) {
+            rechazadosPorSaldo.increment();
+            throw new Exception("El producto " + codigo + " no existe.");
+        }
+        if (delta > 0) return;
+        long pendiente = acumulador == null ? 0 : acumulador.sum();
+        if (s.stock() + s.enVuelo() + pendiente + delta < 0) {
+            rechazadosPorSaldo.increment();
+            throw new Exception("Stock insuficiente para " + codigo + ".");
+        }
+    }
+
+    /**
+     * Olvida el stock leído de estos códigos, o de todos con todo=true (lo
+     * llama la fachada cuando otra escritura los cambia).
+     */
+    void olvidarSaldos(Collection<String> codigos, boolean todo) {
+        if (todo) {
+            saldos.replaceAll((k, s) -> new Saldo(false, 0, 0, s.enVuelo()));
+            return;
+        }
+        for (String c : codigos) {
+            saldos.computeIfPresent(clave(c), (k, s) -> s.enVuelo() == 0 ? null : new Saldo(false, 0, 0, s.enVuelo()));
+        }
+    }
+
+    /* Clave de saldos: MySQL compara los códigos sin distinguir mayúsculas */
+    private static String clave(String codigo) {
+        return codigo.toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Vacía de inmediato (también lo usa el cierre). Si un lote anterior sigue
+     * fallando no se abre época nueva: la cola llena frena a los que registran
+     * en vez de acumular lotes en memoria mientras la base no responde.
+     */
+    synchronized void vaciar() throws IOException, SQLException {
+        if (actual == null) return; // ya cerrado
+        // Primero lo que falló antes, en su orden
+        while (!reintentos.isEmpty()) {
+            aplicar(reintentos.peekFirst());
+            reintentos.removeFirst();
+        }
+
+        Epoca vieja = actual;
+        actual = new Epoca(dirJournal);
+        while (vieja.escritores.sum() != 0) Thread.onSpinWait();
+
+        Path archivo = vieja.cerrarJournal();
+
+        TreeMap<String, Integer> netos = new TreeMap<>();
+        vieja.pendientes.forEach((codigo, acumulador) -> {
+            long neto = acumulador.sum();
+            if (neto != 0) netos.put(codigo, (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, neto)));
+        });
+        Lote lote = new Lote(vieja.segmento, archivo, netos);
+        netos.forEach((codigo, neto) -> saldos.merge(clave(codigo), new Saldo(false, 0, 0, neto),
+                (s, n) -> new Saldo(s.existe(), s.stock(), s.leidoEn(), s.enVuelo() + n.enVuelo())));
+        try {
+            aplicar(lote);
+        } catch (IOException | SQLException ex) {
+            reintentos.addLast(lote);
+            throw ex;
+        }
+    }
+
+    private void vaciarSeguro() {
+        try {
+            vaciar();
+        } catch (Exception e) {
+            errores.increment();
+            LOG.log(Level.WARNING, "[Stock diferido] No se pudo vaciar; se reintentará", e);
+        }
+    }
+
+    /* Aplica el lote en una transacción que además registra su segmento */
+    private void aplicar(Lote lote) throws IOException, SQLException {
+        if (!lote.netos().isEmpty()) {
+            Map<String, Integer> stocks = null;
+            List<String> descartes = new ArrayList<>();
+            try (Connection con = ds.getConnection()) {
+                boolean autoCommit = con.getAutoCommit();
+                con.setAutoCommit(false);
+                try {
+                    if (lote.archivo() != null && dao.segmentoAplicado(con, lote.segmento())) {
+                        con.rollback();
+                    } else {
+                        int[] r = ajustar(con, lote.netos());
+                        List<String> aplicados = new ArrayList<>(r.length);
+                        int i = 0;
+                        for (Map.Entry<String, Integer> e : lote.netos().entrySet()) {
+                            int n = r[i++];
+                            if (n == Statement.EXECUTE_FAILED) {
+                                fallidos.increment();
+                                descartes.add(e.getKey());
+                            } else if (n != 0) {
+                                aplicados.add(e.getKey());
+                            } else {
+                                descartados.increment();
+                                descartes.add(e.getKey());
+                                LOG.warning("[Stock diferido] Movimiento descartado (no existe o quedaría negativo): "
+                                        + e.getKey() + " " + e.getValue());
+                            }
+                        }
+                        if (registrarCambios) {
+                            dao.registrarCambios(con, Cambio.STOCK, aplicados);
+                            dao.registrarCambios(con, Cambio.STOCK_DESCARTADO, descartes);
+                        }
+                        if (lote.archivo() != null) dao.registrarSegmento(con, lote.segmento());
+                        if (!segmentosBorrados.isEmpty()) dao.olvidarSegmentos(con, segmentosBorrados);
+                        stocks = dao.leerStocks(con, lote.netos().keySet());
+                        con.commit();
+                        segmentosBorrados.clear();
+                        updates.add(lote.netos().size());
+                    }
+                } catch (SQLException ex) {
+                    con.rollback();
+                    throw ex;
+                } finally {
+                    con.setAutoCommit(autoCommit);
+                }
+            }
+            alAplicar.accept(lote.netos().keySet());
+            // Después de alAplicar, que pasa por olvidarSaldos
+            long ahora = System.currentTimeMillis();
+            Map<String, Integer> leidos = new HashMap<>();
+            if (stocks != null) stocks.forEach((codigo, stock) -> leidos.put(clave(codigo), stock));
+            boolean leyo = stocks != null;
+            lote.netos().forEach((codigo, neto) -> saldos.compute(clave(codigo), (k, s) -> {
+                long enVuelo = s == null ? 0 : s.enVuelo() - neto;
+                if (!leyo) return enVuelo == 0 ? null : new Saldo(false, 0, 0, enVuelo);
+                Integer stock = leidos.get(k);
+                return new Saldo(stock != null, stock == null ? 0 : stock, ahora, enVuelo);
+            }));
+            if (saldos.size() > capacidad) saldos.values().removeIf(s -> s.enVuelo() == 0 && !s.vigente(ahora));
+        }
+        vaciados.increment();
+        if (lote.archivo() != null && Files.deleteIfExists(lote.archivo())) segmentosBorrados.add(lote.segmento());
+    }
+
+    /*
+     * Los ajustes en un lote JDBC; si el lote falla se repiten uno a uno con un
+     * savepoint cada uno, y los que vuelven a fallar quedan como EXECUTE_FAILED.
+     */
+    private int[] ajustar(Connection con, TreeMap<String, Integer> netos) throws SQLException {
+        Savepoint antes = con.setSavepoint();
+        try {
+            return dao.ajustarStocks(con, netos);
+        } catch (SQLException ex) {
+            con.rollback(antes);
+        }
+        int[] r = new int[netos.size()];
+        int i = 0;
+        for (Map.Entry<String, Integer> e : netos.entrySet()) {
+            Savepoint sp = con.setSavepoint();
+            try {
+                r[i] = dao.ajustarStock(con, e.getKey(), e.getValue()) ? 1 : 0;
+                con.releaseSavepoint(sp);
+            } catch (SQLException ex) {
+                con.rollback(sp);
+                r[i] = Statement.EXECUTE_FAILED;
+                LOG.log(Level.SEVERE, "[Stock diferido] Movimiento descartado por error: " + e.getKey() + " " + e.getValue(), ex);
+            }
+            i++;
+        }
+        return r;
+    }
+
+    /* Segmentos que sobrevivieron a una caída: se suman y se aplican (una sola vez) */
+    private void reaplicarJournal() throws IOException, SQLException {
+        List<Path> archivos = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dirJournal, PREFIJO + "*" + SUFIJO)) {
+            ds.forEach(archivos::add);
+        }
+        archivos.sort(null);
+        for (Path archivo : archivos) {
+            String nombre = archivo.getFileName().toString();
+            String segmento = nombre.substring(PREFIJO.length(), nombre.length() - SUFIJO.length());
+            TreeMap<String, Integer> netos = new TreeMap<>();
+            for (String linea : Files.readAllLines(archivo, StandardCharsets.UTF_8)) {
+                int tab = linea.indexOf('\t');
+                if (tab <= 0) continue; // línea incompleta por la caída
+                try {
+                    netos.merge(linea.substring(0, tab), Integer.parseInt(linea.substring(tab + 1)), Integer::sum);
+                } catch (NumberFormatException ignore) { }
+            }
+            netos.values().removeIf(v -> v == 0);
+            LOG.info(() -> "[Stock diferido] Reaplicando journal " + nombre + " (" + netos.size() + " SKU)");
+            aplicar(new Lote(segmento, archivo, netos));
+        }
+    }
+
+    /** Foto de contadores para /metricas. */
+    Map<String, Long> estadisticas() {
+        Epoca e = actual;
+        Map<String, Long> out = new TreeMap<>();
+        out.put("aceptados", aceptados.sum());
+        out.put("rechazados_cola_llena", rechazadosPorCola.sum());
+        out.put("rechazados_saldo", rechazadosPorSaldo.sum());
+        out.put("descartados", descartados.sum());
+        out.put("fallidos", fallidos.sum());
+        out.put("updates", updates.sum());
+        out.put("vaciados", vaciados.sum());
+        out.put("errores", errores.sum());
+        out.put("sku_pendientes", e == null ? 0L : e.pendientes.size());
+        return out;
+    }
+
+    /** Detiene el hilo de fondo y vacía lo pendiente de forma síncrona. */
+    @Override
+    public void close() {
+        ScheduledExecutorService p;
+        synchronized (this) {
+            p = planificador;
+            planificador = null;
+        }
+        if (p == null) return;
+        p.shutdown();
+        try {
+            // Sin el monitor tomado: los vaciados ya encolados pueden terminar
+            p.awaitTermination(5, TimeUnit.SECONDS);
+            synchronized (this) {
+                vaciar();
+                Path vacio = actual.cerrarJournal();
+                if (vacio != null) Files.deleteIfExists(vacio);
+                actual = null;
+            }
+        } catch (Exception e) {
+            LOG.log(Level.SEVERE, "[Stock diferido] Vaciado final incompleto"
+                    + (dirJournal != null ? "; el journal se reaplicará al arrancar" : ""), e);
+        }
+    }
+}
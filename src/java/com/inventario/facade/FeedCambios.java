@@ -0,0 +1,326 @@
+package com.inventario.facade;
+
+import com.inventario.model.Cambio;
+import com.inventario.persistence.ProductoDAO;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Publica en proceso los cambios que las escrituras dejan en productos_cambios.
+ * Un solo hilo lee la tabla por secuencia, guarda los últimos en un anillo en
+ * memoria y avisa a los suscriptores; los consumidores que vienen de más atrás
+ * leen de la base.
+ *
+ * La secuencia es AUTO_INCREMENT: se asigna al insertar, pero las transacciones
+ * pueden confirmar en otro orden. Ante un hueco el feed espera hasta graciaMs a
+ * que aparezca (una transacción aún abierta); pasado ese plazo sigue adelante,
+ * pero anota el hueco y lo vuelve a leer durante revisionMs. Si aparece un
+ * cambio (commit tardío) lo reemite: lo copia con una secuencia nueva
+ * (reemite_de = la original) que se publica en orden a todos, también a los
+ * consumidores de /api/cambios que ya habían pasado la original. Un consumidor
+ * que aún no la había pasado puede recibir el cambio dos veces. Lo que
+ * confirma después de revisionMs se pierde (huecosVencidos).
+ */
+public class FeedCambios implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(FeedCambios.class.getName());
+
+    /** Filas leídas por consulta al sondear. */
+    private static final int LOTE = 1000;
+    /** Cada cuánto se borran los cambios fuera de la retención. */
+    private static final long LIMPIEZA_MS = 60_000;
+    /** Huecos pendientes de revisar como mucho; pasado esto se olvidan los más viejos. */
+    private static final int MAX_HUECOS = 1000;
+    /** Rangos por consulta al revisar los huecos. */
+    private static final int RANGOS_POR_CONSULTA = 100;
+
+    /** Recibe cada tanda publicada, en orden, desde el hilo del feed; no debe bloquear. */
+    @FunctionalInterface
+    public interface Suscriptor {
+        void recibir(List<Cambio> cambios);
+    }
+
+    private final DataSource ds;
+    private final ProductoDAO dao;
+    private final long graciaMs;
+    private final long retencionMs;
+    private final long revisionMs;
+
+    /* Anillo con los últimos cambios publicados (contiguos salvo huecos definitivos) */
+    private final Cambio[] anillo;
+    private int inicio, tamano;
+
+    private volatile long confirmada = -1;     // última secuencia publicada; -1 = sin leer aún
+    private volatile long purgadaHasta;        // las secuencias <= esta pueden haberse borrado
+    private long huecoEn, huecoDesdeMs;
+    private long ultimaLimpiezaMs, ultimaRevisionMs;
+    /* Huecos saltados aún en revisión: desde -> {hasta, saltado en ms} (solo el hilo del feed) */
+    private final TreeMap<Long, long[]> huecos = new TreeMap<>();
+    private volatile int huecosPendientes;
+
+    private final CopyOnWriteArrayList<Suscriptor> suscriptores = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean avisoPendiente = new AtomicBoolean();
+
+    private final AtomicLong publicados = new AtomicLong();
+    private final AtomicLong huecosSaltados = new AtomicLong();
+    private final AtomicLong huecosVencidos = new AtomicLong();
+    private final AtomicLong reemitidos = new AtomicLong();
+    private final AtomicLong lecturasBase = new AtomicLong();
+    private final AtomicLong borrados = new AtomicLong();
+    private final AtomicLong errores = new AtomicLong();
+
+    private ScheduledExecutorService planificador;
+
+    public FeedCambios(DataSource ds, ProductoDAO dao, int capacidad, long graciaMs, long revisionMs,
+                       long retencionHoras) {
+        this.ds = ds;
+        this.dao = dao;
+        this.anillo = new Cambio[Math.max(1, capacidad)];
+        this.graciaMs = Math.max(0, graciaMs);
+        this.revisionMs = Math.max(0, revisionMs);
+        this.retencionMs = TimeUnit.HOURS.toMillis(Math.max(0, retencionHoras));
+    }
+
+    /** Arranca el sondeo cada intervaloMs (además de cada aviso). */
+    public synchronized void iniciar(long intervaloMs) {
+        if (planificador != null) return;
+        planificador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "inventario-cambios");
+            t.setDaemon(true);
+            return t;
+        });
+        planificador.scheduleWithFixedDelay(this::sondearSeguro, 0, Math.max(10, intervaloMs), TimeUnit.MILLISECONDS);
+    }
+
+    /** Una escritura hizo commit: sondea ya en lugar de esperar al intervalo. */
+    public void avisar() {
+        ScheduledExecutorService p = planificador;
+        if (p != null && avisoPendiente.compareAndSet(false, true)) {
+            try {
+                p.execute(this::sondearSeguro);
+            } catch (RuntimeException cerrado) {
+                avisoPendiente.set(false);
+            }
+        }
+    }
+
+    private void sondearSeguro() {
+        avisoPendiente.set(false);
+        try {
+            sondear();
+            if (retencionMs > 0 && System.currentTimeMillis() - ultimaLimpiezaMs >= LIMPIEZA_MS) limpiar();
+        } catch (Exception e) {
+            errores.incrementAndGet();
+            LOG.log(Level.WARNING, "[Cambios] No se pudo leer el feed", e);
+        }
+    }
+
+    /* Solo desde el hilo del feed */
+    private void sondear() throws SQLException {
+        if (confirmada < 0) {
+            try (Connection con = ds.getConnection()) {
+                long[] rango = dao.rangoCambios(con);
+                purgadaHasta = rango[0] > 0 ? rango[0] - 1 : rango[1];
+                confirmada = rango[1];
+            }
+            return;
+        }
+        // Primero los commits tardíos: sus copias salen en esta misma vuelta
+        long ahoraMs = System.currentTimeMillis();
+        if (!huecos.isEmpty() && ahoraMs - ultimaRevisionMs >= Math.max(1000, graciaMs)) {
+            ultimaRevisionMs = ahoraMs;
+            revisarHuecos(ahoraMs);
+        }
+        while (true) {
+            List<Cambio> leidos;
+            try (Connection con = ds.getConnection()) {
+                leidos = dao.leerCambios(con, confirmada, Long.MAX_VALUE, LOTE);
+            }
+            List<Cambio> nuevos = new ArrayList<>(leidos.size());
+            long esperada = confirmada + 1;
+            for (Cambio c : leidos) {
+                if (c.secuencia() != esperada) {
+                    long ahora = System.currentTimeMillis();
+                    if (huecoEn != esperada) {
+                        huecoEn = esperada;
+                        huecoDesdeMs = ahora;
+                    }
+                    if (ahora - huecoDesdeMs < graciaMs) break;
+                    huecosSaltados.incrementAndGet();
+                    anotarHueco(esperada, c.secuencia() - 1, ahora);
+                }
+                nuevos.add(c);
+                esperada = c.secuencia() + 1;
+            }
+            if (!nuevos.isEmpty()) publicar(nuevos);
+            if (leidos.size() < LOTE || nuevos.size() < leidos.size()) return;
+        }
+    }
+
+    private void anotarHueco(long desde, long hasta, long ahora) {
+        if (revisionMs == 0) return;
+        huecos.put(desde, new long[] { hasta, ahora });
+        while (huecos.size() > MAX_HUECOS) {
+            huecos.pollFirstEntry();
+            huecosVencidos.incrementAndGet();
+        }
+        huecosPendientes = huecos.size();
+    }
+
+    /* Relee los huecos en revisión; cada cambio que aparece se reemite con secuencia nueva */
+    private void revisarHuecos(long ahora) throws SQLException {
+        int antes = huecos.size();
+        huecos.values().removeIf(h -> ahora - h[1] >= revisionMs);
+        huecosVencidos.addAndGet(antes - huecos.size());
+        List<long[]> rangos = new ArrayList<>(RANGOS_POR_CONSULTA);
+        try (Connection con = ds.getConnection()) {
+            for (Map.Entry<Long, long[]> e : List.copyOf(huecos.entrySet())) {
+                rangos.add(new long[] { e.getKey(), e.getValue()[0] });
+                if (rangos.size() == RANGOS_POR_CONSULTA) {
+                    reemitir(con, rangos);
+                    rangos.clear();
+                }
+            }
+            reemitir(con, rangos);
+        }
+        huecosPendientes = huecos.size();
+    }
+
+    private void reemitir(Connection con, List<long[]> rangos) throws SQLException {
+        for (Cambio tardio : dao.leerCambiosEnRangos(con, rangos, LOTE)) {
+            // false = otra instancia ya lo reemitió; igual deja de estar pendiente
+            if (dao.reemitirCambio(con, tardio.secuencia())) reemitidos.incrementAndGet();
+            quitarDeHueco(tardio.secuencia());
+        }
+    }
+
+    private void quitarDeHueco(long secuencia) {
+        Map.Entry<Long, long[]> e = huecos.floorEntry(secuencia);
+        if (e == null || e.getValue()[0] < secuencia) return;
+        long desde = e.getKey(), hasta = e.getValue()[0], saltado = e.getValue()[1];
+        huecos.remove(desde);
+        if (desde < secuencia) huecos.put(desde, new long[] { secuencia - 1, saltado });
+        if (secuencia < hasta) huecos.put(secuencia + 1, new long[] { hasta, saltado });
+    }
+
+    private void publicar(List<Cambio> nuevos) {
+        synchronized (anillo) {
+            for (Cambio c : nuevos) {
+                if (tamano == anillo.length) {
+                    anillo[inicio] = null;
+                    inicio = (inicio + 1) % anillo.length;
+                    tamano--;
+                }
+                anillo[(inicio + tamano) % anillo.length] = c;
+                tamano++;
+            }
+            confirmada = nuevos.get(nuevos.size() - 1).secuencia();
+        }
+        publicados.addAndGet(nuevos.size());
+        List<Cambio> inmutables = List.copyOf(nuevos);
+        for (Suscriptor s : suscriptores) {
+            try {
+                s.recibir(inmutables);
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "[Cambios] Un suscriptor falló", e);
+            }
+        }
+    }
+
+    /* Borra lo que salió de la retención en rangos cortos de secuencia */
+    private void limpiar() throws SQLException {
+        ultimaLimpiezaMs = System.currentTimeMillis();
+        Timestamp antes = new Timestamp(ultimaLimpiezaMs - retencionMs);
+        try (Connection con = ds.getConnection()) {
+            for (int i = 0; i < 100; i++) {
+                long primera = dao.rangoCambios(con)[0];
+                if (primera == 0) return;
+                int n = dao.borrarCambios(con, primera + LOTE, antes);
+                if (n == 0) return;
+                borrados.addAndGet(n);
+                long siguiente = dao.rangoCambios(con)[0];
+                purgadaHasta = Math.max(purgadaHasta, siguiente > 0 ? siguiente - 1 : confirmada);
+            }
+        }
+    }
+
+    /** Última secuencia publicada (0 si todavía no hay cambios o no se leyó la tabla). */
+    public long ultima() {
+        return Math.max(0, confirmada);
+    }
+
+    /**
+     * Hasta 'max' cambios con secuencia > desde, ya publicados, en orden. Del
+     * anillo si lo cubre; si no, de la base (sin pasar de lo publicado).
+     */
+    public List<Cambio> leer(long desde, int max) throws SQLException, CambiosNoDisponiblesException {
+        long hasta = confirmada;
+        if (desde < purgadaHasta) throw new CambiosNoDisponiblesException(desde, purgadaHasta + 1);
+        if (hasta < 0 || desde >= hasta) return List.of();
+        synchronized (anillo) {
+            if (tamano > 0 && anillo[inicio].secuencia() <= desde + 1) {
+                int lo = 0, hi = tamano;            // primera posición con secuencia > desde
+                while (lo < hi) {
+                    int m = (lo + hi) >>> 1;
+                    if (anillo[(inicio + m) % anillo.length].secuencia() <= desde) lo = m + 1;
+                    else hi = m;
+                }
+                int n = Math.min(max, tamano - lo);
+                List<Cambio> out = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) out.add(anillo[(inicio + lo + i) % anillo.length]);
+                return out;
+            }
+        }
+        lecturasBase.incrementAndGet();
+        try (Connection con = ds.getConnection()) {
+            return dao.leerCambios(con, desde, hasta, max);
+        }
+    }
+
+    /** Registra un suscriptor a los cambios que se publiquen desde ahora; devuelve la baja. */
+    public Runnable suscribir(Suscriptor s) {
+        suscriptores.add(s);
+        return () -> suscriptores.remove(s);
+    }
+
+    /** Contadores para /metricas. */
+    public Map<String, Long> estadisticas() {
+        Map<String, Long> m = new LinkedHashMap<>();
+        m.put("ultima", ultima());
+        m.put("publicados", publicados.get());
+        m.put("huecosSaltados", huecosSaltados.get());
+        m.put("huecosPendientes", (long) huecosPendientes);
+        m.put("huecosVencidos", huecosVencidos.get());
+        m.put("reemitidos", reemitidos.get());
+        m.put("lecturasBase", lecturasBase.get());
+        m.put("borrados", borrados.get());
+        m.put("suscriptores", (long) suscriptores.size());
+        m.put("errores", errores.get());
+        return m;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (planificador != null) {
+            planificador.shutdownNow();
+            planificador = null;
+        }
+        suscriptores.clear();
+    }
+}
@@ -0,0 +1,190 @@
+package com.inventario.facade;
+
+import com.inventario.formato.FilaProducto;
+import com.inventario.formato.FuenteProductos;
+import com.inventario.model.Cambio;
+import com.inventario.model.ErrorImportacion;
+import com.inventario.model.Producto;
+import com.inventario.model.ResumenImportacion;
+import com.inventario.persistence.ProductoDAO;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Importación masiva: lee la fuente fila a fila, valida cada producto y
+ * escribe con INSERT multi-fila en transacciones de varios lotes.
+ * Solo retiene en memoria la transacción en curso, sea cual sea el tamaño del
+ * archivo, para poder repetirla fila a fila si un lote falla.
+ */
+class ImportadorProductos {
+
+    @FunctionalInterface
+    interface Validador {
+        void validar(Producto p) throws Exception;
+    }
+
+    private final ProductoDAO dao;
+    private final Validador validador;
+    private final int filasPorLote;
+    private final int lotesPorTransaccion;
+    private final boolean registrarCambios;
+
+    ImportadorProductos(ProductoDAO dao, Validador validador, int filasPorLote, int lotesPorTransaccion,
+                        boolean registrarCambios) {
+        this.dao = dao;
+        this.validador = validador;
+        this.filasPorLote = Math.max(1, filasPorLote);
+        this.lotesPorTransaccion = Math.max(1, lotesPorTransaccion);
+        this.registrarCambios = registrarCambios;
+    }
+
+    ResumenImportacion importar(Connection con, FuenteProductos fuente, boolean actualizar,
+                                Consumer<ErrorImportacion> errores) throws Exception {
+        long inicio = System.nanoTime();
+        ResumenImportacion r = new ResumenImportacion();
+        List<FilaProducto> enTx = new ArrayList<>(filasPorLote * lotesPorTransaccion);
+        List<Producto> lote = new ArrayList<>(filasPorLote);
+
+        int lotesEnTx = 0;
+        long omitidasEnTx = 0;
+        long afectadasEnTx = 0;
+
+        boolean autoCommit = con.getAutoCommit();
+        con.setAutoCommit(false);
+        try {
+            FilaProducto f;
+            while (true) {
+                f = fuente.siguiente();
+                boolean fin = f == null;
+
+                if (!fin) {
+                    r.setLeidas(r.getLeidas() + 1);
+                    String error = f.error();
+                    if (error == null) {
+                        try {
+                            validador.validar(f.producto());
+                        } catch (Exception e) {
+                            error = e.getMessage();
+                        }
+                    }
+                    if (error != null) {
+                        r.setRechazadas(r.getRechazadas() + 1);
+                        errores.accept(new ErrorImportacion(f.numero(),
+                                f.producto() != null ? f.producto().getCodigo() : null, error));
+                        continue;
+                    }
+                    enTx.add(f);
+                    lote.add(f.producto());
+                }
+
+                try {
+                    if (lote.size() == filasPorLote || (fin && !lote.isEmpty())) {
+                        long afectadas = escribir(con, lote, actualizar);
+                        omitidasEnTx += omitidas(lote.size(), afectadas, actualizar);
+                        afectadasEnTx += afectadas;
+                        lote.clear();
+                        lotesEnTx++;
+                    }
+                    if (!enTx.isEmpty() && (lotesEnTx == lotesPorTransaccion || fin)) {
+                        con.commit();
+                        r.setTransacciones(r.getTransacciones() + 1);
+                        sumar(r, enTx.size(), omitidasEnTx, afectadasEnTx, 0);
+                        enTx.clear();
+                        lotesEnTx = 0;
+                        omitidasEnTx = 0;
+                        afectadasEnTx = 0;
+                    }
+                } catch (SQLException e) {
+                    // Una fila mala tumba el INSERT multi-fila: se deshace y se repite fila a fila
+                    con.rollback();
+                    filaAFila(con, enTx, actualizar, r, errores, e);
+                    enTx.clear();
+                    lote.clear();
+                    lotesEnTx = 0;
+                    omitidasEnTx = 0;
+                    afectadasEnTx = 0;
+                }
+
+                if (fin) break;
+            }
+        } catch (Exception e) {
+            // Fuente cortada (el cliente abortó la subida) o fallo inesperado: volver a
+            // autocommit confirmaría la transacción a medias, así que se deshace
+            con.rollback();
+            throw e;
+        } finally {
+            con.setAutoCommit(autoCommit);
+        }
+        r.setMillis((System.nanoTime() - inicio) / 1_000_000);
+        return r;
+    }
+
+    /*
+     * Repite la transacción fallida con un savepoint por fila: las que vuelven a
+     * fallar se informan una a una y el resto se guarda. Si falla lo propio de la
+     * transacción (commit, savepoint, conexión) se pierde entera y se informa el rango.
+     */
+    private void filaAFila(Connection con, List<FilaProducto> filas, boolean actualizar, ResumenImportacion r,
+                           Consumer<ErrorImportacion> errores, SQLException causa) throws SQLException {
+        if (filas.isEmpty()) return;
+        List<ErrorImportacion> malas = new ArrayList<>();
+        long omitidas = 0, afectadas = 0;
+        try {
+            for (FilaProducto f : filas) {
+                List<Producto> una = List.of(f.producto());
+                Savepoint sp = con.setSavepoint();
+                try {
+                    long n = escribir(con, una, actualizar);
+                    omitidas += omitidas(1, n, actualizar);
+                    afectadas += n;
+                    con.releaseSavepoint(sp);
+                } catch (SQLException e) {
+                    con.rollback(sp);
+                    malas.add(new ErrorImportacion(f.numero(), f.producto().getCodigo(), e.getMessage()));
+                }
+            }
+            con.commit();
+        } catch (SQLException e) {
+            con.rollback();
+            int primera = filas.get(0).numero(), ultima = filas.get(filas.size() - 1).numero();
+            r.setRechazadas(r.getRechazadas() + filas.size());
+            errores.accept(new ErrorImportacion(primera, null,
+                    "Filas " + primera + "-" + ultima + " no guardadas: " + causa.getMessage()));
+            return;
+        }
+        r.setTransacciones(r.getTransacciones() + 1);
+        sumar(r, filas.size(), omitidas, afectadas, malas.size());
+        malas.forEach(errores);
+    }
+
+    private long escribir(Connection con, List<Producto> lote, boolean actualizar) throws SQLException {
+        long afectadas = dao.insertarLote(con, lote, actualizar);
+        if (registrarCambios) {
+            dao.registrarCambios(con, Cambio.IMPORTACION, lote.stream().map(Producto::getCodigo).toList());
+        }
+        return afectadas;
+    }
+
+    /*
+     * Duplicados ignorados de un lote, a partir de las filas afectadas que
+     * informa MySQL (pool con useAffectedRows=true): 1 por fila insertada, 2 por
+     * una lápida revivida y 0 por un código vivo que se deja como estaba
+     * (también los repetidos dentro del lote). En un lote que mezcla lápidas y
+     * duplicados cada lápida compensa un omitido; fila a fila es exacto.
+     */
+    private static long omitidas(int filas, long afectadas, boolean actualizar) {
+        return actualizar ? 0 : Math.max(0, filas - afectadas);
+    }
+
+    private static void sumar(ResumenImportacion r, long filas, long omitidas, long afectadas, long malas) {
+        r.setGuardadas(r.getGuardadas() + filas - omitidas - malas);
+        r.setOmitidas(r.getOmitidas() + omitidas);
+        r.setRechazadas(r.getRechazadas() + malas);
+        r.setFilasAfectadas(r.getFilasAfectadas() + afectadas);
+    }
+}
@@ -0,0 +1,17 @@
+package com.inventario.facade;
+
+/**
+ * Ya existe un producto con el código indicado.
+ */
+public class ProductoDuplicadoException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    private final String codigo;
+
+    public ProductoDuplicadoException(String codigo) {
+        super("Ya existe un producto con ese código.");
+        this.codigo = codigo;
+    }
+
+    public String getCodigo() { return codigo; }
+}
@@ -1,25 +1,316 @@
 package com.inventario.facade;
 
+import com.inventario.analitica.AnaliticaInventario;
+import com.inventario.analitica.ProductoStockBajo;
+import com.inventario.analitica.ResumenCategoria;
+import com.inventario.cache.BusInvalidacion;
+import com.inventario.cache.CacheLectura;
+import com.inventario.cache.Invalidacion;
+import com.inventario.config.Configuracion;
+import com.inventario.formato.FuenteProductos;
+import com.inventario.model.BusquedaPorCodigos;
+import com.inventario.model.Cambio;
+import com.inventario.model.CriteriosBusqueda;
+import com.inventario.model.CursorProducto;
+import com.inventario.model.ErrorImportacion;
+import com.inventario.model.MovimientoStock;
+import com.inventario.model.Pagina;
 import com.inventario.model.Producto;
+import com.inventario.model.ProductoVista;
+import com.inventario.model.ResultadoBusqueda;
+import com.inventario.model.ResumenImportacion;
+import com.inventario.persistence.EnrutadorLecturas;
+import com.inventario.persistence.ProcesadorFila;
 import com.inventario.persistence.ProductoDAO;
 
 import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.nio.file.Path;
 import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Fachada de negocio para Producto.
- * Recibe el DataSource desde el contenedor (Servlet) y delega en el DAO.
+ * Recibe el DataSource desde el contenedor y delega en un único DAO stateless.
+ * Las lecturas de consulta pueden ir a réplicas (EnrutadorLecturas); escrituras,
+ * conteo, analítica, purga y feed usan siempre la primaria.
  */
 public class ProductoFacade {
 
+    /** Nombre del atributo de ServletContext donde InventarioListener publica la fachada. */
+    public static final String ATRIBUTO = "productoFacade";
+
+    private static final Logger LOG = Logger.getLogger(ProductoFacade.class.getName());
+
     private final DataSource ds;
+    private final ProductoDAO dao = new ProductoDAO();
+    private final ContadorProductos contador;
+
+    /* Cache por código; por id solo se guarda el código (nunca cambia) */
+    private final CacheLectura<String, Producto> cachePorCodigo;
+    private final CacheLectura<Integer, String> cacheCodigoPorId;
+
+    private final ImportadorProductos importador;
+    private final int fetchSizeExportacion;
+    private final EscrituraDiferidaStock stockDiferido; // null = movimientos síncronos
+    private final AnaliticaInventario analitica;          // null = deshabilitada
+    private final PurgadorEliminados purgador;
+    private final FeedCambios feed;                       // null = sin feed de cambios
+
+    /* Lecturas a réplicas y coherencia de las caches entre instancias */
+    private final EnrutadorLecturas lecturas;
+    private final String nodo = UUID.randomUUID().toString();
+    private final BusInvalidacion bus;                    // null = sin avisos entre instancias
+    private final Runnable bajaBus;
+    private final LongAdder invalidacionesPublicadas = new LongAdder();
+    private final LongAdder invalidacionesRecibidas = new LongAdder();
+    private final LongAdder erroresBus = new LongAdder();
+
+    private final AtomicLong version = new AtomicLong();
+    private volatile long modificadoEnMillis = System.currentTimeMillis();
 
     public ProductoFacade(DataSource ds) {
+        this(ds, Configuracion.vacia());
+    }
+
+    public ProductoFacade(DataSource ds, Configuracion cfg) {
+        this(ds, cfg, null);
+    }
+
+    /**
+     * @param carga peticiones en curso (MetricasHttp); la purga de lápidas se
+     *              aplaza mientras supere inventario.purga.maxPeticionesEnCurso.
+     *              null = purgar sin mirar la carga
+     */
+    public ProductoFacade(DataSource ds, Configuracion cfg, LongSupplier carga) {
+        this(ds, cfg, carga, List.of(), null);
+    }
+
+    /**
+     * @param replicas DataSources de solo lectura; vacío = todo a la primaria (ds)
+     * @param bus      avisos de invalidación entre instancias; null = el que diga
+     *                 inventario.invalidacion.bus (ninguno, feed o una clase)
+     */
+    public ProductoFacade(DataSource ds, Configuracion cfg, LongSupplier carga,
+                          List<DataSource> replicas, BusInvalidacion bus) {
         this.ds = Objects.requireNonNull(ds, "DataSource no puede ser null");
+        this.lecturas = new EnrutadorLecturas(ds, replicas,
+                cfg.largo("inventario.replicas.ventanaMs", 5000),
+                cfg.largo("inventario.replicas.castigoMs", 30_000));
+        boolean conFeed = cfg.booleano("inventario.cambios.habilitado", true);
+        this.contador = new ContadorProductos(ds, dao, cfg.booleano("inventario.conteo.estimado", false),
+                cfg.largo("inventario.conteo.categoriasMinutos", 60) * 60_000);
+
+        int capacidad = cfg.entero("inventario.cache.capacidad", 10_000);
+        long ttlMs = cfg.largo("inventario.cache.ttlSegundos", 60) * 1000;
+        long ttlNegativoMs = cfg.largo("inventario.cache.ttlNegativoSegundos", 5) * 1000;
+        this.cachePorCodigo = new CacheLectura<>(capacidad, ttlMs, ttlNegativoMs);
+        this.cacheCodigoPorId = new CacheLectura<>(capacidad, ttlMs, 0);
+
+        this.importador = new ImportadorProductos(dao, this::validar,
+                cfg.entero("inventario.importacion.filasPorLote", 500),
+                cfg.entero("inventario.importacion.lotesPorTransaccion", 10), conFeed);
+        this.fetchSizeExportacion = cfg.entero("inventario.exportacion.fetchSize", Integer.MIN_VALUE);
+
+        if (cfg.booleano("inventario.stock.diferido.habilitado", false)) {
+            String journal = cfg.texto("inventario.stock.diferido.journal", null);
+            this.stockDiferido = new EscrituraDiferidaStock(ds, dao,
+                    this::cambio,
+                    conFeed,
+                    cfg.largo("inventario.stock.diferido.intervaloMs", 50),
+                    cfg.entero("inventario.stock.diferido.capacidad", 10_000),
+                    cfg.largo("inventario.stock.diferido.esperaMaxMs", 100),
+                    journal == null ? null : Path.of(journal));
+        } else {
+            this.stockDiferido = null;
+        }
+
+        if (cfg.booleano("inventario.analitica.habilitada", false)) {
+            this.analitica = new AnaliticaInventario(ds, dao, fetchSizeExportacion,
+                    cfg.largo("inventario.analitica.reconstruccionMinutos", 60),
+                    cfg.largo("inventario.analitica.margenMs", 60_000));
+        } else {
+            this.analitica = null;
+        }
+
+        this.purgador = new PurgadorEliminados(ds, dao,
+                cfg.entero("inventario.purga.filasPorLote", 200),
+                cfg.entero("inventario.purga.lotesPorCiclo", 50),
+                cfg.largo("inventario.purga.pausaMs", 100),
+                carga, cfg.largo("inventario.purga.maxPeticionesEnCurso", 8));
+
+        if (conFeed) {
+            this.feed = new FeedCambios(ds, dao,
+                    cfg.entero("inventario.cambios.capacidad", 10_000),
+                    cfg.largo("inventario.cambios.graciaMs", 2000),
+                    cfg.largo("inventario.cambios.revisionMs", 600_000),
+                    cfg.largo("inventario.cambios.retencionHoras", 72));
+            if (analitica != null) feed.suscribir(analitica::cambiosRecibidos);
+        } else {
+            this.feed = null;
+        }
+
+        // Toda la configuración (también el bus) se resuelve antes de arrancar ningún hilo;
+        // si algo falla al arrancar se detiene lo ya iniciado para no dejar hilos huérfanos
+        this.bus = bus != null ? bus : busConfigurado(cfg.texto("inventario.invalidacion.bus", "ninguno"));
+        try {
+            contador.iniciar(cfg.largo("inventario.conteo.resyncSegundos", 300));
+            if (stockDiferido != null) {
+                try {
+                    stockDiferido.iniciar();
+                } catch (Exception e) {
+                    throw new IllegalStateException("No se pudo iniciar la escritura diferida de stock: " + e.getMessage(), e);
+                }
+            }
+            if (analitica != null) analitica.iniciar(cfg.largo("inventario.analitica.intervaloSegundos", 60));
+            purgador.iniciar(cfg.largo("inventario.purga.intervaloSegundos", 300));
+            if (feed != null) feed.iniciar(cfg.largo("inventario.cambios.intervaloMs", 200));
+            this.bajaBus = this.bus == null ? null : this.bus.suscribir(this::invalidacionRecibida);
+        } catch (RuntimeException e) {
+            cerrar();
+            throw e;
+        }
+    }
+
+    private BusInvalidacion busConfigurado(String nombre) {
+        switch (nombre.trim()) {
+            case "", "ninguno":
+                return null;
+            case "feed":
+                if (feed == null) {
+                    throw new IllegalStateException("inventario.invalidacion.bus=feed requiere inventario.cambios.habilitado=true");
+                }
+                return new BusInvalidacionFeed(feed);
+            default:
+                try {
+                    return (BusInvalidacion) Class.forName(nombre.trim()).getDeclaredConstructor().newInstance();
+                } catch (ReflectiveOperationException | ClassCastException e) {
+                    throw new IllegalStateException("No se pudo crear el bus de invalidación " + nombre + ": " + e, e);
+                }
+        }
+    }
+
+    /** Detiene los hilos de fondo (vaciando el stock diferido); lo llama InventarioListener al replegar. */
+    public void cerrar() {
+        if (bajaBus != null) bajaBus.run();
+        if (stockDiferido != null) stockDiferido.close();
+        if (analitica != null) analitica.close();
+        purgador.close();
+        if (feed != null) feed.close();
+        if (bus != null) {
+            try {
+                bus.close();
+            } catch (Exception e) {
+                LOG.log(Level.WARNING, "[Invalidación] Error al cerrar el bus", e);
+            }
+        }
+        contador.close();
+    }
+
+    /* =========================== Versión de los datos ========================= */
+
+    /**
+     * Cambia con cada escritura hecha a través de esta fachada; las caches de
+     * respuestas (CachePaginasFilter) lo comparan con el de lo que guardaron.
+     * Los cambios hechos por fuera de la aplicación no lo mueven.
+     */
+    public long version() {
+        return version.get();
+    }
+
+    /** Momento de la última escritura (o del arranque), para Last-Modified. */
+    public long modificadoEnMillis() {
+        return modificadoEnMillis;
+    }
+
+    private void cambio(Collection<String> codigos) {
+        cambio(new Invalidacion(nodo, Set.copyOf(codigos), Set.of(), false));
+    }
+
+    /*
+     * Tras el commit de una escritura de esta instancia. Los códigos se marcan
+     * como recientes antes de invalidar: una lectura que falle la cache entre
+     * medias ya va a la primaria y no vuelve a cachear la versión de una
+     * réplica atrasada.
+     */
+    private void cambio(Invalidacion inv) {
+        lecturas.escribio(inv.codigos(), inv.todo());
+        if (inv.todo()) {
+            cachePorCodigo.invalidarTodo();
+        } else {
+            inv.codigos().forEach(this::invalidarCodigo);
+        }
+        inv.ids().forEach(cacheCodigoPorId::invalidar);
+        modificadoEnMillis = System.currentTimeMillis();
+        version.incrementAndGet();
+        if (feed != null) feed.avisar();
+        if (stockDiferido != null) stockDiferido.olvidarSaldos(inv.codigos(), inv.todo());
+        if (bus != null) {
+            try {
+                bus.publicar(inv);
+                invalidacionesPublicadas.increment();
+            } catch (RuntimeException e) {
+                // Las demás instancias lo verán al vencer el TTL de sus caches
+                erroresBus.increment();
+                LOG.log(Level.WARNING, "[Invalidación] No se pudo publicar", e);
+            }
+        }
+    }
+
+    /* Escritura de otra instancia: lo cacheado de esos productos ya no vale */
+    private void invalidacionRecibida(Invalidacion inv) {
+        if (nodo.equals(inv.nodo())) return;
+        invalidacionesRecibidas.increment();
+        // Las réplicas pueden no tenerlo aún: esos códigos se releen de la primaria
+        // un rato, y se marcan antes de invalidar (ver cambio)
+        lecturas.escrituraRemota(inv.codigos(), inv.todo());
+        if (inv.todo()) {
+            cachePorCodigo.invalidarTodo();
+            cacheCodigoPorId.invalidarTodo();
+        } else {
+            inv.codigos().forEach(this::invalidarCodigo);
+            inv.ids().forEach(cacheCodigoPorId::invalidar);
+        }
+        if (stockDiferido != null) stockDiferido.olvidarSaldos(inv.codigos(), inv.todo());
+        modificadoEnMillis = System.currentTimeMillis();
+        version.incrementAndGet();
+    }
+
+    /*
+     * Clave de cachePorCodigo: MySQL compara los códigos sin distinguir
+     * mayúsculas, así que "abc" y "ABC" son el mismo producto y deben
+     * compartir entrada (y caer juntos al invalidar).
+     */
+    private static String clave(String codigo) {
+        return codigo.trim().toUpperCase(Locale.ROOT);
+    }
+
+    private void invalidarCodigo(String codigo) {
+        cachePorCodigo.invalidar(clave(codigo));
+    }
+
+    /* Anota el cambio en productos_cambios dentro de la transacción de la escritura */
+    private void registrarCambio(Connection con, String tipo, Collection<String> codigos) throws SQLException {
+        if (feed != null) dao.registrarCambios(con, tipo, codigos);
     }
 
     /* ===================== Reglas de negocio / validación ===================== */
@@ -27,7 +318,14 @@ public class ProductoFacade {
     private static final Set<String> CATEGORIAS =
             Set.of("Electronicos", "Accesorios", "Muebles", "Ropa");
 
-    private void validar(Producto p) throws Exception {
+    /** Mayor valor de la columna precio DECIMAL(12,2). */
+    private static final BigDecimal PRECIO_MAXIMO = new BigDecimal("9999999999.99");
+
+    /**
+     * Reglas de crear, actualizar e importar; no toca la base. Lanza Exception
+     * con el mensaje para el usuario en la primera que no se cumple.
+     */
+    public void validar(Producto p) throws Exception {
         if (p == null) throw new Exception("El producto es requerido.");
 
         String codigo = p.getCodigo() == null ? "" : p.getCodigo().trim();
@@ -35,13 +333,18 @@ public class ProductoFacade {
         String categoria = p.getCategoria() == null ? "" : p.getCategoria().trim();
 
         if (codigo.length() < 3) throw new Exception("El código debe tener al menos 3 caracteres.");
+        if (codigo.length() > 50) throw new Exception("El código no puede pasar de 50 caracteres.");
         if (nombre.length() < 5) throw new Exception("El nombre debe tener al menos 5 caracteres.");
+        if (nombre.length() > 120) throw new Exception("El nombre no puede pasar de 120 caracteres.");
         if (!CATEGORIAS.contains(categoria)) {
             throw new Exception("La categoría debe ser una de: " + CATEGORIAS);
         }
 
         if (p.getPrecio() == null) throw new Exception("El precio es obligatorio.");
         if (p.getPrecio().signum() <= 0) throw new Exception("El precio debe ser mayor a 0.");
+        if (p.getPrecio().compareTo(PRECIO_MAXIMO) > 0) {
+            throw new Exception("El precio no puede pasar de " + PRECIO_MAXIMO.toPlainString() + ".");
+        }
 
         if (p.getStock() == null) throw new Exception("El stock es obligatorio.");
         if (p.getStock() < 0) throw new Exception("El stock no puede ser negativo.");
@@ -50,47 +353,414 @@ public class ProductoFacade {
     /* =============================== Operaciones ============================== */
 
     /** Lista paginada */
-    public List<Producto> listar(int limit, int offset) throws Exception {
-        try (Connection con = ds.getConnection()) {
-            ProductoDAO dao = new ProductoDAO(con);
-            return dao.listar(limit, offset);
+    public List<ProductoVista> listar(int limit, int offset) throws Exception {
+        try (Connection con = lecturas.lectura()) {
+            return dao.listar(con, limit, offset, ProductoDAO.VISTA);
         }
     }
 
-    /** Total registros */
-    public int contar() throws Exception {
-        try (Connection con = ds.getConnection()) {
-            ProductoDAO dao = new ProductoDAO(con);
-            return dao.contar();
+    /**
+     * Lista por cursor (keyset). Con cursor null o vacío devuelve la primera página.
+     * Lanza IllegalArgumentException si el token no es válido.
+     */
+    public Pagina<ProductoVista> listarPorCursor(String cursor, int limit) throws Exception {
+        CursorProducto c = (cursor == null || cursor.isBlank()) ? null : CursorProducto.decodificar(cursor);
+        List<ProductoVista> filas;
+        try (Connection con = lecturas.lectura()) {
+            filas = dao.listarKeyset(con, c, limit + 1, ProductoDAO.VISTA);
+        }
+        boolean hayMas = filas.size() > limit;
+        if (hayMas) filas.remove(filas.size() - 1);
+
+        if (c == null) {
+            return new Pagina<>(filas, hayMas ? siguiente(filas) : null, null);
+        }
+        if (c.isSiguiente()) {
+            return new Pagina<>(filas, hayMas ? siguiente(filas) : null, anterior(filas));
+        }
+        if (!hayMas) {
+            // Se llegó al principio: se sirve la primera página completa
+            return listarPorCursor(null, limit);
         }
+        Collections.reverse(filas);
+        return new Pagina<>(filas, siguiente(filas), anterior(filas));
+    }
+
+    private static String siguiente(List<ProductoVista> filas) {
+        return filas.isEmpty() ? null : CursorProducto.despuesDe(filas.get(filas.size() - 1)).codificar();
+    }
+
+    private static String anterior(List<ProductoVista> filas) {
+        return filas.isEmpty() ? null : CursorProducto.antesDe(filas.get(0)).codificar();
+    }
+
+    /* ================================ Búsqueda ================================ */
+
+    /* Con más coincidencias las facetas se cuentan sobre una muestra */
+    private static final int MAX_FACETA = 10_000;
+
+    /* Se detecta en la primera búsqueda: hay FULLTEXT solo en MySQL */
+    private volatile Boolean textoCompleto;
+
+    /**
+     * Búsqueda facetada: filtros de texto, categoría, activo y rangos de precio y
+     * stock, paginada hacia adelante por cursor, con el conteo por categoría.
+     * Sin más filtros que la categoría las facetas salen del contador en memoria.
+     * Lanza IllegalArgumentException si el cursor no es válido.
+     */
+    public ResultadoBusqueda buscar(CriteriosBusqueda criterios, String cursor, int limit) throws Exception {
+        CursorProducto despues = (cursor == null || cursor.isBlank()) ? null : CursorProducto.decodificar(cursor);
+        if (despues != null && !despues.isSiguiente()) throw new IllegalArgumentException("Cursor inválido.");
+
+        List<ProductoVista> filas;
+        Map<String, Long> facetas;
+        boolean exactas = true;
+        try (Connection con = lecturas.lectura()) {
+            Boolean ft = textoCompleto;
+            if (ft == null) textoCompleto = ft = dao.soportaTextoCompleto(con);
+
+            filas = dao.buscar(con, criterios, ft, despues, limit + 1, ProductoDAO.VISTA);
+            if (criterios.filtraAdemasDeCategoria()) {
+                facetas = dao.facetasCategoria(con, criterios, ft, MAX_FACETA);
+                long total = facetas.values().stream().mapToLong(Long::longValue).sum();
+                exactas = total < MAX_FACETA;
+            } else {
+                facetas = contarPorCategorias();
+            }
+        }
+        boolean hayMas = filas.size() > limit;
+        if (hayMas) filas.remove(filas.size() - 1);
+        return new ResultadoBusqueda(new Pagina<>(filas, hayMas ? siguiente(filas) : null, null), facetas, exactas);
+    }
+
+    /** Total registros (contador en memoria, ver ContadorProductos) */
+    public int contar() throws Exception {
+        return (int) Math.min(Integer.MAX_VALUE, contador.total());
     }
 
-    /** Buscar por código */
+    /** Total de una categoría sin consultar la base */
+    public long contarPorCategoria(String categoria) throws Exception {
+        return contador.porCategoria(categoria);
+    }
+
+    /** Totales de todas las categorías */
+    public Map<String, Long> contarPorCategorias() throws Exception {
+        return contador.categorias();
+    }
+
+    /** Buscar por código (read-through sobre cachePorCodigo) */
     public Optional<Producto> buscarPorCodigo(String codigo) throws Exception {
         if (codigo == null || codigo.isBlank()) return Optional.empty();
-        try (Connection con = ds.getConnection()) {
-            ProductoDAO dao = new ProductoDAO(con);
-            return dao.buscarPorCodigo(codigo.trim());
+        String pedido = codigo.trim();
+        Producto p = cachePorCodigo.obtener(clave(pedido), c -> {
+            try (Connection con = lecturas.lectura(List.of(pedido))) {
+                return dao.buscarPorCodigo(con, pedido).orElse(null);
+            }
+        });
+        return p == null ? Optional.empty() : Optional.of(new Producto(p));
+    }
+
+    /**
+     * Busca varios códigos de una vez (p. ej. una cesta del TPV): lo cacheado
+     * sale de la cache y el resto con una consulta IN por cada 500 códigos.
+     * Códigos repetidos o vacíos se ignoran.
+     */
+    public BusquedaPorCodigos buscarPorCodigos(Collection<String> codigos) throws Exception {
+        // Por clave normalizada: "abc" y "ABC" son el mismo producto y se responden una vez,
+        // con la primera forma pedida
+        Map<String, String> pedidos = new LinkedHashMap<>();
+        for (String c : codigos) {
+            if (c != null && !c.isBlank()) pedidos.putIfAbsent(clave(c), c.trim());
         }
+        if (pedidos.isEmpty()) return new BusquedaPorCodigos(List.of(), List.of());
+
+        Map<String, Producto> porClave = cachePorCodigo.obtenerTodos(pedidos.keySet(), faltan -> {
+            List<String> originales = new ArrayList<>(faltan.size());
+            for (String k : faltan) originales.add(pedidos.get(k));
+            Map<String, Producto> out = new HashMap<>();
+            try (Connection con = lecturas.lectura(originales)) {
+                for (Producto p : dao.buscarPorCodigos(con, originales).values()) out.put(clave(p.getCodigo()), p);
+            }
+            return out;
+        });
+
+        List<Producto> encontrados = new ArrayList<>(porClave.size());
+        List<String> faltantes = new ArrayList<>();
+        pedidos.forEach((k, original) -> {
+            Producto p = porClave.get(k);
+            if (p == null) faltantes.add(original);
+            else encontrados.add(new Producto(p));
+        });
+        return new BusquedaPorCodigos(encontrados, faltantes);
+    }
+
+    /** Buscar por id: resuelve el código (cacheado) y reutiliza la cache por código */
+    public Optional<Producto> buscarPorId(int id) throws Exception {
+        if (id <= 0) return Optional.empty();
+        String codigo = cacheCodigoPorId.obtener(id, k -> {
+            long marca = cachePorCodigo.marca();
+            try (Connection con = lecturas.lectura()) {
+                Optional<Producto> p = dao.buscarPorId(con, k);
+                // Si el código se escribió hace poco la réplica puede traerlo viejo: que lo lea buscarPorCodigo
+                p.filter(x -> !lecturas.escritoRecientemente(x.getCodigo()))
+                 .ifPresent(x -> cachePorCodigo.poner(clave(x.getCodigo()), x, marca));
+                return p.map(Producto::getCodigo).orElse(null);
+            }
+        });
+        return codigo == null ? Optional.empty() : buscarPorCodigo(codigo);
+    }
+
+    /** Estadísticas de las caches de lectura, por nombre */
+    public Map<String, CacheLectura.Estadisticas> estadisticasCache() {
+        Map<String, CacheLectura.Estadisticas> out = new LinkedHashMap<>();
+        out.put("productos_codigo", cachePorCodigo.estadisticas());
+        out.put("productos_id", cacheCodigoPorId.estadisticas());
+        return out;
+    }
+
+    /**
+     * true si una lectura ahora puede salir de una réplica que aún no tiene la
+     * última escritura de esta instancia; CachePaginasFilter no guarda esas páginas.
+     */
+    public boolean lecturaPuedeEstarAtrasada() {
+        return lecturas.puedeIrAtrasada(modificadoEnMillis);
+    }
+
+    /** Reparto de lecturas entre primaria y réplicas */
+    public Map<String, Long> estadisticasLecturas() {
+        return lecturas.estadisticas();
+    }
+
+    /** Avisos de invalidación entre instancias (vacío sin bus) */
+    public Map<String, Long> estadisticasInvalidacion() {
+        if (bus == null) return Map.of();
+        Map<String, Long> m = new LinkedHashMap<>();
+        m.put("publicadas", invalidacionesPublicadas.sum());
+        m.put("recibidas", invalidacionesRecibidas.sum());
+        m.put("errores", erroresBus.sum());
+        return m;
     }
 
     public void crear(Producto p) throws Exception {
         validar(p);
-        try (Connection con = ds.getConnection()) {
-            ProductoDAO dao = new ProductoDAO(con);
-            // Unicidad por código
-            if (dao.buscarPorCodigo(p.getCodigo().trim()).isPresent()) {
-                throw new Exception("Ya existe un producto con ese código.");
+        enTransaccion(con -> {
+            // Unicidad por código; una lápida con el mismo código se archiva ya
+            if (dao.buscarPorCodigo(con, p.getCodigo().trim()).isPresent()) {
+                throw new ProductoDuplicadoException(p.getCodigo().trim());
             }
-            dao.insertar(p);
-        }
+            dao.liberarCodigo(con, p.getCodigo().trim());
+            dao.insertar(con, p);
+            registrarCambio(con, Cambio.ALTA, List.of(p.getCodigo()));
+            return null;
+        });
+        contador.incrementar(p.getCategoria());
+        // También quita una posible ausencia cacheada de este código
+        cambio(List.of(p.getCodigo().trim()));
     }
 
+    /** Baja lógica: deja una lápida que PurgadorEliminados archiva después. */
     public void eliminar(int id) throws Exception {
         if (id <= 0) throw new Exception("ID inválido.");
+        Optional<Producto> eliminado = enTransaccion(con -> {
+            Optional<Producto> actual = dao.bloquearPorId(con, id);
+            if (actual.isPresent()) {
+                dao.eliminarPorId(con, id);
+                registrarCambio(con, Cambio.BAJA, List.of(actual.get().getCodigo()));
+            }
+            return actual;
+        });
+        if (eliminado.isEmpty()) {
+            cacheCodigoPorId.invalidar(id);
+            return;
+        }
+        contador.decrementar(eliminado.get().getCategoria());
+        cambio(new Invalidacion(nodo, Set.of(eliminado.get().getCodigo()), Set.of(id), false));
+    }
+
+    /* ================================== Stock ================================= */
+
+    /**
+     * Ajusta el stock de un producto con un UPDATE condicional (nunca baja de
+     * cero) y devuelve el valor resultante.
+     */
+    public int ajustarStock(String codigo, int delta) throws Exception {
+        if (codigo == null || codigo.isBlank()) throw new Exception("El código es obligatorio.");
+        String c = codigo.trim();
+        int nuevo = enTransaccion(con -> {
+            if (!dao.ajustarStock(con, c, delta)) {
+                if (dao.leerStock(con, c).isEmpty()) throw new ProductoNoEncontradoException(c);
+                throw new StockInsuficienteException(c);
+            }
+            registrarCambio(con, Cambio.STOCK, List.of(c));
+            // La fila sigue bloqueada por el UPDATE: el valor leído es el propio
+            return dao.leerStock(con, c).orElseThrow();
+        });
+        cambio(List.of(c));
+        return nuevo;
+    }
+
+    /**
+     * Aplica varios movimientos en una transacción y un solo lote: se netean por
+     * código y se actualizan en orden de código, de modo que dos lotes
+     * concurrentes bloquean filas en el mismo orden y no se interbloquean.
+     * Todo o nada: si algún SKU no existe o quedaría negativo, no se aplica ninguno.
+     * Devuelve el stock resultante por código.
+     */
+    public Map<String, Integer> aplicarMovimientos(Collection<MovimientoStock> movimientos) throws Exception {
+        TreeMap<String, Integer> netos = new TreeMap<>();
+        for (MovimientoStock m : movimientos) {
+            if (m.codigo() == null || m.codigo().isBlank()) throw new Exception("El código es obligatorio.");
+            netos.merge(m.codigo().trim(), m.cantidad(), Math::addExact);
+        }
+        if (netos.isEmpty()) return Map.of();
+
+        Map<String, Integer> resultado = enTransaccion(con -> {
+            int[] r = dao.ajustarStocks(con, netos);
+            int i = 0;
+            for (String c : netos.keySet()) {
+                if (r[i++] == 0) {
+                    if (dao.leerStock(con, c).isEmpty()) throw new ProductoNoEncontradoException(c);
+                    throw new StockInsuficienteException(c);
+                }
+            }
+            registrarCambio(con, Cambio.STOCK, netos.keySet());
+            return dao.leerStocks(con, netos.keySet());
+        });
+        cambio(netos.keySet());
+        return resultado;
+    }
+
+    /**
+     * Registra un movimiento de stock de alta frecuencia. Con escritura diferida
+     * habilitada se acumula en memoria y se aplica neteado en el siguiente
+     * vaciado (sin validar existencia ni saldo en este momento); si no, equivale
+     * a ajustarStock.
+     */
+    public void registrarMovimiento(String codigo, int delta) throws Exception {
+        if (stockDiferido == null) {
+            ajustarStock(codigo, delta);
+            return;
+        }
+        if (codigo == null || codigo.isBlank()) throw new Exception("El código es obligatorio.");
+        stockDiferido.registrar(codigo.trim(), delta);
+    }
+
+    /** Contadores de la escritura diferida de stock (vacío si está deshabilitada) */
+    public Map<String, Long> estadisticasStockDiferido() {
+        return stockDiferido == null ? Map.of() : stockDiferido.estadisticas();
+    }
+
+    /**
+     * Importación masiva en streaming (ver ImportadorProductos). Cada fila pasa por
+     * validar(); las rechazadas se informan a errores a medida que aparecen.
+     * Con actualizarExistentes=false los códigos ya registrados se dejan intactos.
+     */
+    public ResumenImportacion importar(FuenteProductos fuente, boolean actualizarExistentes,
+                                       Consumer<ErrorImportacion> errores) throws Exception {
+        ResumenImportacion r;
+        try (Connection con = ds.getConnection()) {
+            r = importador.importar(con, fuente, actualizarExistentes, errores);
+        } finally {
+            // Cualquier código pudo cambiar o aparecer: se descarta la cache y se recuentan
+            cambio(Invalidacion.total(nodo));
+            try {
+                contador.resincronizar();
+            } catch (SQLException e) {
+                LOG.log(Level.WARNING, "[Importación] No se pudo resincronizar el conteo", e);
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Exportación en streaming: cada fila va del ResultSet al procesador (ver
+     * ProductoDAO.recorrer para el orden de columnas). Filtros opcionales (null = todos).
+     */
+    public long exportar(String categoria, Boolean activo, ProcesadorFila procesador) throws Exception {
+        try (Connection con = lecturas.lectura()) {
+            return dao.recorrer(con, categoria, activo, fetchSizeExportacion, procesador);
+        }
+    }
+
+    /* ============================ Feed de cambios ============================= */
+
+    /**
+     * Hasta 'max' cambios posteriores a la secuencia 'desde', en orden.
+     * Lanza CambiosNoDisponiblesException si 'desde' ya salió de la retención.
+     */
+    public List<Cambio> cambiosDesde(long desde, int max) throws Exception {
+        return feed().leer(desde, max);
+    }
+
+    /** Última secuencia publicada del feed. */
+    public long ultimoCambio() throws Exception {
+        return feed().ultima();
+    }
+
+    /** Suscribe a las tandas de cambios que se publiquen desde ahora; devuelve la baja. */
+    public Runnable suscribirCambios(FeedCambios.Suscriptor s) throws Exception {
+        return feed().suscribir(s);
+    }
+
+    /** Contadores del feed de cambios (vacío si está deshabilitado) */
+    public Map<String, Long> estadisticasCambios() {
+        return feed == null ? Map.of() : feed.estadisticas();
+    }
+
+    private FeedCambios feed() throws Exception {
+        if (feed == null) throw new Exception("El feed de cambios está deshabilitado.");
+        return feed;
+    }
+
+    /* ================================ Analítica =============================== */
+
+    /** Agregados por categoría sobre la instantánea en memoria (puede ir un refresco por detrás). */
+    public List<ResumenCategoria> resumenPorCategoria() throws Exception {
+        return analitica().instantanea().resumenPorCategoria();
+    }
+
+    /** Productos activos con stock <= umbral, de menor a mayor stock, como mucho 'limite'. */
+    public List<ProductoStockBajo> stockBajo(int umbral, int limite) throws Exception {
+        return analitica().instantanea().stockBajo(umbral, limite);
+    }
+
+    /** Contadores del refresco de la analítica (vacío si está deshabilitada) */
+    public Map<String, Long> estadisticasAnalitica() {
+        return analitica == null ? Map.of() : analitica.estadisticas();
+    }
+
+    /** Contadores de la purga de lápidas */
+    public Map<String, Long> estadisticasPurga() {
+        return purgador.estadisticas();
+    }
+
+    private AnaliticaInventario analitica() throws Exception {
+        if (analitica == null) throw new Exception("La analítica está deshabilitada.");
+        return analitica;
+    }
+
+    /* ================================ Soporte ================================= */
+
+    @FunctionalInterface
+    private interface Trabajo<T> {
+        T ejecutar(Connection con) throws Exception;
+    }
+
+    /* Ejecuta el trabajo en una transacción: commit si termina, rollback si lanza */
+    private <T> T enTransaccion(Trabajo<T> trabajo) throws Exception {
         try (Connection con = ds.getConnection()) {
-            ProductoDAO dao = new ProductoDAO(con);
-            dao.eliminarPorId(id);
+            boolean autoCommit = con.getAutoCommit();
+            con.setAutoCommit(false);
+            try {
+                T r = trabajo.ejecutar(con);
+                con.commit();
+                return r;
+            } catch (Exception e) {
+                con.rollback();
+                throw e;
+            } finally {
+                con.setAutoCommit(autoCommit);
+            }
         }
     }
 }
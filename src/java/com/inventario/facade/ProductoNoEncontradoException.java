@@ -0,0 +1,17 @@
+package com.inventario.facade;
+
+/**
+ * La operación apunta a un producto que no existe.
+ */
+public class ProductoNoEncontradoException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    private final String codigo;
+
+    public ProductoNoEncontradoException(String codigo) {
+        super("No existe producto con código: " + codigo);
+        this.codigo = codigo;
+    }
+
+    public String getCodigo() { return codigo; }
+}
@@ -0,0 +1,141 @@
+package com.inventario.facade;
+
+import com.inventario.persistence.ProductoDAO;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Mueve las lápidas (productos con eliminado = 1) a productos_archivo en lotes
+ * pequeños, cada uno en su propia transacción corta, con una pausa entre lotes.
+ * Un ciclo se salta (o se corta a la mitad) si la carga supera el umbral:
+ * la baja en la petición es solo un UPDATE y la purga puede esperar.
+ */
+public class PurgadorEliminados implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(PurgadorEliminados.class.getName());
+
+    private final DataSource ds;
+    private final ProductoDAO dao;
+    private final int filasPorLote;
+    private final int lotesPorCiclo;
+    private final long pausaMs;
+    private final LongSupplier carga;       // peticiones en curso; null = sin control de carga
+    private final long cargaMaxima;
+
+    private final AtomicLong archivadas = new AtomicLong();
+    private final AtomicLong lotes = new AtomicLong();
+    private final AtomicLong ciclosAplazados = new AtomicLong();
+    private final AtomicLong errores = new AtomicLong();
+
+    private ScheduledExecutorService planificador;
+
+    public PurgadorEliminados(DataSource ds, ProductoDAO dao, int filasPorLote, int lotesPorCiclo, long pausaMs,
+                              LongSupplier carga, long cargaMaxima) {
+        this.ds = ds;
+        this.dao = dao;
+        this.filasPorLote = Math.max(1, filasPorLote);
+        this.lotesPorCiclo = Math.max(1, lotesPorCiclo);
+        this.pausaMs = Math.max(0, pausaMs);
+        this.carga = carga;
+        this.cargaMaxima = cargaMaxima;
+    }
+
+    /** Arranca la purga periódica (segundos <= 0 la desactiva: las lápidas se quedan). */
+    public synchronized void iniciar(long segundos) {
+        if (segundos <= 0 || planificador != null) return;
+        planificador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "inventario-purga");
+            t.setDaemon(true);
+            return t;
+        });
+        planificador.scheduleWithFixedDelay(() -> {
+            try {
+                purgar();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                errores.incrementAndGet();
+                LOG.log(Level.WARNING, "[Purga] No se pudieron archivar las lápidas", e);
+            }
+        }, segundos, segundos, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Un ciclo: hasta lotesPorCiclo lotes mientras queden lápidas y la carga lo
+     * permita. Devuelve las filas archivadas.
+     */
+    public long purgar() throws SQLException, InterruptedException {
+        long total = 0;
+        for (int i = 0; i < lotesPorCiclo; i++) {
+            if (ocupado()) {
+                ciclosAplazados.incrementAndGet();
+                break;
+            }
+            int n = lote();
+            total += n;
+            if (n < filasPorLote) break;
+            if (pausaMs > 0) TimeUnit.MILLISECONDS.sleep(pausaMs);
+        }
+        if (total > 0) {
+            long t = total;
+            LOG.fine(() -> "[Purga] " + t + " productos archivados");
+        }
+        return total;
+    }
+
+    private boolean ocupado() {
+        return carga != null && carga.getAsLong() > cargaMaxima;
+    }
+
+    private int lote() throws SQLException {
+        try (Connection con = ds.getConnection()) {
+            boolean autoCommit = con.getAutoCommit();
+            con.setAutoCommit(false);
+            try {
+                List<Integer> ids = dao.bloquearEliminados(con, filasPorLote);
+                int n = dao.archivar(con, ids);
+                con.commit();
+                if (n > 0) {
+                    archivadas.addAndGet(n);
+                    lotes.incrementAndGet();
+                }
+                return ids.size();
+            } catch (SQLException e) {
+                con.rollback();
+                throw e;
+            } finally {
+                con.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    /** Contadores para /metricas. */
+    public Map<String, Long> estadisticas() {
+        Map<String, Long> m = new LinkedHashMap<>();
+        m.put("archivadas", archivadas.get());
+        m.put("lotes", lotes.get());
+        m.put("ciclosAplazados", ciclosAplazados.get());
+        m.put("errores", errores.get());
+        return m;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (planificador != null) {
+            planificador.shutdownNow();
+            planificador = null;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.inventario.facade;
+
+/**
+ * El movimiento dejaría el stock por debajo de cero; no se aplicó nada.
+ */
+public class StockInsuficienteException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    private final String codigo;
+
+    public StockInsuficienteException(String codigo) {
+        super("Stock insuficiente para el producto " + codigo + ".");
+        this.codigo = codigo;
+    }
+
+    public String getCodigo() { return codigo; }
+}
@@ -0,0 +1,253 @@
+package com.inventario.filter;
+
+import com.inventario.config.Configuracion;
+import com.inventario.facade.ProductoFacade;
+import com.inventario.persistence.EnrutadorLecturas;
+import jakarta.servlet.*;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cache de la página HTML del listado (GET /productos, acción list) por página
+ * o cursor. Cada entrada guarda la versión de los datos con la que se renderizó
+ * ({@link ProductoFacade#version()}); crear, eliminar o mover stock desde la
+ * fachada sube la versión y la entrada deja de valer. Responde GET
+ * condicionales (ETag / Last-Modified → 304) y guarda la variante gzip al
+ * primer cliente que la acepte.
+ *
+ * No se cachea: otras acciones o parámetros, peticiones con mensajes flash en
+ * sesión, respuestas distintas de 200 o con error, páginas con el id de sesión
+ * en los enlaces, ni el listado del modo asíncrono (el dispatch escribe en la
+ * respuesta original; sus aciertos sí se sirven). Con réplicas, la sesión que
+ * acaba de escribir no usa la cache y no se guardan páginas leídas mientras
+ * las réplicas pueden no tener la última escritura. Configuración:
+ * inventario.cachePaginas.* en web.xml.
+ */
+public class CachePaginasFilter implements Filter {
+
+    public static final String ATRIBUTO = "cachePaginas";
+
+    private static final Set<String> PARAMETROS = Set.of("action", "page", "cursor");
+    private static final int MIN_GZIP = 1024;
+
+    private ProductoFacade facade;
+    private boolean habilitada;
+    private boolean gzip;
+    private long ttlMs;
+    private Map<String, Entrada> entradas;
+
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder noModificadas = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder omitidas = new LongAdder();
+
+    /* Página renderizada; la variante gzip se calcula la primera vez que se pide */
+    private static final class Entrada {
+        final long version;
+        final long creadaEnMillis;
+        final long modificadoEnMillis;   // redondeado a segundos (resolución de Last-Modified)
+        final String contentType;
+        final byte[] cuerpo;
+        final String etag;
+        volatile byte[] comprimido;
+
+        Entrada(long version, long modificado, String contentType, byte[] cuerpo) {
+            this.version = version;
+            this.creadaEnMillis = System.currentTimeMillis();
+            this.modificadoEnMillis = modificado / 1000 * 1000;
+            this.contentType = contentType;
+            this.cuerpo = cuerpo;
+            CRC32 crc = new CRC32();
+            crc.update(cuerpo);
+            // Débil: la misma entidad se sirve con y sin gzip
+            this.etag = "W/\"" + version + "-" + Long.toHexString(crc.getValue()) + "\"";
+        }
+
+        byte[] comprimido() {
+            byte[] c = comprimido;
+            if (c == null) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(cuerpo.length / 4);
+                try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+                    gz.write(cuerpo);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                comprimido = c = out.toByteArray();
+            }
+            return c;
+        }
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) {
+        ServletContext ctx = filterConfig.getServletContext();
+        facade = (ProductoFacade) ctx.getAttribute(ProductoFacade.ATRIBUTO);
+
+        Configuracion cfg = new Configuracion(ctx::getInitParameter);
+        habilitada = facade != null && cfg.booleano("inventario.cachePaginas.habilitada", true);
+        gzip = cfg.booleano("inventario.cachePaginas.gzip", true);
+        ttlMs = cfg.largo("inventario.cachePaginas.ttlSegundos", 60) * 1000;
+        int capacidad = Math.max(1, cfg.entero("inventario.cachePaginas.capacidad", 200));
+        entradas = new LinkedHashMap<>(capacidad * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entrada> e) {
+                return size() > capacidad;
+            }
+        };
+        if (habilitada) ctx.setAttribute(ATRIBUTO, this);
+        ctx.log("[Filtro] CachePaginasFilter inicializado (habilitada=" + habilitada + ", capacidad=" + capacidad + ")");
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+
+        if (!habilitada || !(request instanceof HttpServletRequest req) || !(response instanceof HttpServletResponse resp)
+                || !"GET".equals(req.getMethod())) {
+            chain.doFilter(request, response);
+            return;
+        }
+        String clave = clave(req);
+        if (clave == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        EnrutadorLecturas.Marca marca = EnrutadorLecturas.marcaActual();
+        if (conFlash(req) || (marca != null && marca.activa())) {
+            omitidas.increment();
+            chain.doFilter(request, response);
+            return;
+        }
+
+        long version = facade.version();
+        Entrada e;
+        synchronized (entradas) {
+            e = entradas.get(clave);
+        }
+        if (e != null && e.version == version
+                && (ttlMs <= 0 || System.currentTimeMillis() - e.creadaEnMillis < ttlMs)) {
+            aciertos.increment();
+            servir(req, resp, e);
+            return;
+        }
+
+        fallos.increment();
+        long modificado = facade.modificadoEnMillis();
+        boolean atrasada = facade.lecturaPuedeEstarAtrasada();
+        RespuestaCapturada captura = new RespuestaCapturada(resp);
+        chain.doFilter(req, captura);
+        if (req.isAsyncStarted()) return;    // el dispatch escribe directamente en la respuesta original
+
+        byte[] cuerpo = captura.cuerpo();
+        if (resp.isCommitted()) return;      // sendError / sendRedirect
+        if (resp.getStatus() != HttpServletResponse.SC_OK || req.getAttribute("error") != null
+                || captura.urlReescrita() || cuerpo.length == 0 || atrasada) {
+            resp.setContentLength(cuerpo.length);
+            resp.getOutputStream().write(cuerpo);
+            return;
+        }
+        e = new Entrada(version, modificado == 0 ? System.currentTimeMillis() : modificado, resp.getContentType(), cuerpo);
+        synchronized (entradas) {
+            entradas.put(clave, e);
+        }
+        servir(req, resp, e);
+    }
+
+    /* Página (o cursor) del listado; null si la petición no es cacheable */
+    private static String clave(HttpServletRequest req) {
+        for (String p : req.getParameterMap().keySet()) {
+            if (!PARAMETROS.contains(p)) return null;
+        }
+        String action = req.getParameter("action");
+        if (action != null && !"list".equals(action)) return null;
+        String cursor = req.getParameter("cursor");
+        if (cursor != null && !cursor.isBlank()) return "c:" + cursor.trim();
+        String page = req.getParameter("page");
+        return "p:" + (page == null ? "" : page.trim());
+    }
+
+    /* Los mensajes flash se muestran una vez y se borran de la sesión: la página no es compartible */
+    private static boolean conFlash(HttpServletRequest req) {
+        HttpSession s = req.getSession(false);
+        if (s == null) return false;
+        try {
+            return s.getAttribute("flashSuccess") != null || s.getAttribute("flashError") != null;
+        } catch (IllegalStateException invalidada) {
+            return false;
+        }
+    }
+
+    private void servir(HttpServletRequest req, HttpServletResponse resp, Entrada e) throws IOException {
+        resp.setHeader("ETag", e.etag);
+        resp.setDateHeader("Last-Modified", e.modificadoEnMillis);
+        resp.setHeader("Cache-Control", "private, no-cache");
+        resp.setHeader("Vary", "Accept-Encoding");
+        if (noModificada(req, e)) {
+            noModificadas.increment();
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        if (e.contentType != null) resp.setContentType(e.contentType);
+        byte[] cuerpo = e.cuerpo;
+        if (gzip && cuerpo.length >= MIN_GZIP && aceptaGzip(req)) {
+            cuerpo = e.comprimido();
+            resp.setHeader("Content-Encoding", "gzip");
+        }
+        resp.setContentLength(cuerpo.length);
+        resp.getOutputStream().write(cuerpo);
+    }
+
+    private static boolean noModificada(HttpServletRequest req, Entrada e) {
+        String inm = req.getHeader("If-None-Match");
+        if (inm != null) {
+            for (String etag : inm.split(",")) {
+                String t = etag.trim();
+                if (t.equals("*") || t.equals(e.etag) || ("W/" + t).equals(e.etag)) return true;
+            }
+            return false;
+        }
+        try {
+            long ims = req.getDateHeader("If-Modified-Since");
+            return ims >= 0 && e.modificadoEnMillis <= ims;
+        } catch (IllegalArgumentException fechaInvalida) {
+            return false;
+        }
+    }
+
+    private static boolean aceptaGzip(HttpServletRequest req) {
+        String ae = req.getHeader("Accept-Encoding");
+        return ae != null && ae.toLowerCase().contains("gzip");
+    }
+
+    /* Contadores para /metricas */
+
+    public Map<String, Long> estadisticas() {
+        Map<String, Long> m = new LinkedHashMap<>();
+        m.put("aciertos", aciertos.sum());
+        m.put("no_modificadas", noModificadas.sum());
+        m.put("fallos", fallos.sum());
+        m.put("omitidas", omitidas.sum());
+        synchronized (entradas) {
+            m.put("entradas", (long) entradas.size());
+        }
+        return m;
+    }
+
+    @Override
+    public void destroy() {
+        synchronized (entradas) {
+            entradas.clear();
+        }
+    }
+}
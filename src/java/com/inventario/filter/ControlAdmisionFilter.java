@@ -0,0 +1,319 @@
+package com.inventario.filter;
+
+import com.inventario.config.Configuracion;
+import com.inventario.formato.Json;
+import com.inventario.metricas.MetricasHttp;
+import jakarta.servlet.*;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Control de admisión: limita cada acción por cliente y en total con cubetas
+ * de tokens (CubetaTokens) para que una integración que martillea, p. ej.,
+ * ?action=search no se quede con las conexiones de jdbc/inventarioPool.
+ *
+ * La acción es el parámetro action en /productos (list por defecto) y la ruta
+ * sin la barra inicial en el resto (api/busqueda, productos/exportar...); solo
+ * se limitan las que aparecen en inventario.admision.porCliente / porAccion
+ * con el formato accion=tasa:rafaga (tokens por segundo : máximo seguidos).
+ * El cliente es la IP remota o, tras el balanceador, la última dirección de la
+ * cabecera inventario.admision.cabeceraCliente. Detrás de un balanceador hay
+ * que configurarla: sin ella todas las peticiones traen la IP del balanceador
+ * y el límite por cliente pasa a ser uno solo para todos (se avisa en el log
+ * la primera vez que llega un X-Forwarded-For). Se recuerdan como mucho
+ * inventario.admision.maxClientes cubetas por acción; al llegar a ese número
+ * se descarta la del cliente que lleva más tiempo sin pedir nada.
+ *
+ * Sin token se espera hasta inventario.admision.esperaMaxMs si hay sitio en la
+ * cola (colaMax); si no, 429 con Retry-After. La espera duerme el hilo del
+ * contenedor, así que colaMax debe quedar muy por debajo de los hilos HTTP
+ * del conector (maxThreads): la cola nunca pasa de colaMax y el resto de hilos
+ * sigue atendiendo lo que no está limitado. El límite por acción se reparte
+ * en franjas para que los hilos no compitan por un mismo CAS. Va después de
+ * CachePaginasFilter: las páginas servidas de la cache no gastan tokens. Las
+ * estadísticas van a MetricasHttp, con las latencias de TiempoRespuestaFilter.
+ */
+public class ControlAdmisionFilter implements Filter {
+
+    private static final int FRANJAS = Math.max(1, Integer.highestOneBit(Runtime.getRuntime().availableProcessors()));
+
+    /* Token reservado en una cubeta y la espera hasta poder usarlo */
+    private record Reserva(CubetaTokens cubeta, long espera) { }
+
+    /* Cubetas de los clientes más recientes; al pasar de la capacidad sale la menos usada */
+    private static final class Clientes extends LinkedHashMap<String, CubetaTokens> {
+        private static final long serialVersionUID = 1L;
+        final int capacidad;
+
+        Clientes(int capacidad) {
+            super(16, 0.75f, true);
+            this.capacidad = capacidad;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CubetaTokens> eldest) {
+            return size() > capacidad;
+        }
+    }
+
+    /* Límite de una acción: cubetas por cliente (repartidas en segmentos) y/o franjas del total */
+    private static final class Limite {
+        final double tasaCliente;
+        final int rafagaCliente;
+        final Clientes[] porCliente;           // null = sin límite por cliente
+        final CubetaTokens[] franjas;          // null = sin límite total
+
+        Limite(double tasaCliente, int rafagaCliente, double tasaTotal, int rafagaTotal, int maxClientes) {
+            this.tasaCliente = tasaCliente;
+            this.rafagaCliente = rafagaCliente;
+            if (tasaCliente > 0) {
+                int n = Integer.highestOneBit(Math.min(FRANJAS, maxClientes));
+                porCliente = new Clientes[n];
+                for (int i = 0; i < n; i++) porCliente[i] = new Clientes(maxClientes / n);
+            } else {
+                porCliente = null;
+            }
+            if (tasaTotal > 0) {
+                int n = Integer.highestOneBit(Math.min(FRANJAS, Math.max(1, rafagaTotal)));
+                franjas = new CubetaTokens[n];
+                for (int i = 0; i < n; i++) franjas[i] = new CubetaTokens(tasaTotal / n, (rafagaTotal + n - 1) / n);
+            } else {
+                franjas = null;
+            }
+        }
+    }
+
+    private MetricasHttp metricas;
+    private boolean habilitada;
+    private Map<String, Limite> limites;
+    private String cabeceraCliente;
+    private long maxEsperaNanos;
+    private int colaMax;
+    private final AtomicInteger enCola = new AtomicInteger();
+    private final AtomicBoolean avisoBalanceador = new AtomicBoolean();
+    private ServletContext ctx;
+
+    @Override
+    public void init(FilterConfig filterConfig) {
+        ctx = filterConfig.getServletContext();
+        metricas = (MetricasHttp) ctx.getAttribute(MetricasHttp.ATRIBUTO);
+        if (metricas == null) {
+            metricas = new MetricasHttp();
+            ctx.setAttribute(MetricasHttp.ATRIBUTO, metricas);
+        }
+
+        Configuracion cfg = new Configuracion(ctx::getInitParameter);
+        habilitada = cfg.booleano("inventario.admision.habilitada", true);
+        cabeceraCliente = cfg.texto("inventario.admision.cabeceraCliente", "").trim();
+        maxEsperaNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, cfg.largo("inventario.admision.esperaMaxMs", 200)));
+        colaMax = Math.max(0, cfg.entero("inventario.admision.colaMax", 8));
+        int maxClientes = Math.max(1, cfg.entero("inventario.admision.maxClientes", 100_000));
+
+        Map<String, double[]> cliente = leerLimites(cfg.texto("inventario.admision.porCliente", ""));
+        Map<String, double[]> total = leerLimites(cfg.texto("inventario.admision.porAccion", ""));
+        Map<String, Limite> m = new HashMap<>();
+        Set<String> acciones = new HashSet<>(cliente.keySet());
+        acciones.addAll(total.keySet());
+        for (String accion : acciones) {
+            double[] c = cliente.getOrDefault(accion, new double[] {0, 0});
+            double[] t = total.getOrDefault(accion, new double[] {0, 0});
+            m.put(accion, new Limite(c[0], (int) c[1], t[0], (int) t[1], maxClientes));
+        }
+        limites = Map.copyOf(m);
+        if (!cliente.isEmpty() && cabeceraCliente.isEmpty()) {
+            ctx.log("[Filtro] ControlAdmisionFilter: límites por cliente con la IP remota; detrás de un balanceador"
+                    + " configura inventario.admision.cabeceraCliente o serán un único límite para todos");
+        }
+        ctx.log("[Filtro] ControlAdmisionFilter inicializado (habilitada=" + habilitada + ", acciones=" + limites.keySet()
+                + ", colaMax=" + colaMax + ")");
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+
+        if (!habilitada || !(request instanceof HttpServletRequest req) || !(response instanceof HttpServletResponse resp)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        String accion = accion(req);
+        Limite limite = limites.get(accion);
+        if (limite == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        if (admitir(req, resp, accion, limite)) chain.doFilter(request, response);
+    }
+
+    /*
+     * Reserva los tokens y espera su turno; false si ya respondió 429. Primero
+     * se prueba sin esperar; solo si hace falta se toma un hueco de la cola, y
+     * con él se reserva admitiendo espera: nunca duermen más de colaMax hilos.
+     */
+    private boolean admitir(HttpServletRequest req, HttpServletResponse resp, String accion, Limite limite)
+            throws IOException {
+        long ahora = System.nanoTime();
+        CubetaTokens propia = limite.tasaCliente > 0 ? cubetaCliente(limite, cliente(req)) : null;
+        boolean hueco = false;
+        try {
+            long espera = 0;
+            if (propia != null) {
+                espera = propia.reservar(ahora, 0);
+                if (espera < 0) {
+                    hueco = tomarHueco();
+                    if (hueco) espera = propia.reservar(ahora, maxEsperaNanos);
+                }
+                if (espera < 0) {
+                    rechazar(req, resp, accion, "cliente", -espera);
+                    return false;
+                }
+            }
+            Reserva total = null;
+            if (limite.franjas != null) {
+                total = reservarTotal(limite.franjas, ahora, 0);
+                if (total.espera() < 0) {
+                    if (!hueco) hueco = tomarHueco();
+                    if (hueco) total = reservarTotal(limite.franjas, ahora, maxEsperaNanos);
+                }
+                if (total.espera() < 0) {
+                    if (propia != null) propia.devolver();
+                    rechazar(req, resp, accion, "accion", -total.espera());
+                    return false;
+                }
+                espera = Math.max(espera, total.espera());
+            }
+
+            if (espera == 0) {
+                metricas.admision(accion, "admitida", 0);
+                return true;
+            }
+            metricas.colaAdmision(1);
+            try {
+                TimeUnit.NANOSECONDS.sleep(espera);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                // Los tokens reservados no se van a usar
+                if (propia != null) propia.devolver();
+                if (total != null) total.cubeta().devolver();
+                rechazar(req, resp, accion, "cola", espera);
+                return false;
+            } finally {
+                metricas.colaAdmision(-1);
+            }
+            metricas.admision(accion, "espera", espera);
+            return true;
+        } finally {
+            if (hueco) enCola.decrementAndGet();
+        }
+    }
+
+    private boolean tomarHueco() {
+        if (maxEsperaNanos == 0) return false;
+        while (true) {
+            int n = enCola.get();
+            if (n >= colaMax) return false;
+            if (enCola.compareAndSet(n, n + 1)) return true;
+        }
+    }
+
+    /* Un cliente desalojado vuelve con la cubeta llena: solo pasa si han llegado más de maxClientes después */
+    private static CubetaTokens cubetaCliente(Limite limite, String cliente) {
+        Clientes seg = limite.porCliente[cliente.hashCode() & (limite.porCliente.length - 1)];
+        synchronized (seg) {
+            return seg.computeIfAbsent(cliente, k -> new CubetaTokens(limite.tasaCliente, limite.rafagaCliente));
+        }
+    }
+
+    /* Franja del hilo; si está agotada se prueba la siguiente antes de esperar */
+    private static Reserva reservarTotal(CubetaTokens[] franjas, long ahora, long maxEspera) {
+        int i = (int) (Thread.currentThread().threadId() & (franjas.length - 1));
+        if (franjas.length == 1) return new Reserva(franjas[0], franjas[0].reservar(ahora, maxEspera));
+        long r = franjas[i].reservar(ahora, 0);
+        if (r >= 0) return new Reserva(franjas[i], r);
+        CubetaTokens siguiente = franjas[(i + 1) & (franjas.length - 1)];
+        long r2 = siguiente.reservar(ahora, 0);
+        if (r2 >= 0) return new Reserva(siguiente, r2);
+        return new Reserva(franjas[i], franjas[i].reservar(ahora, maxEspera));
+    }
+
+    private void rechazar(HttpServletRequest req, HttpServletResponse resp, String accion, String motivo,
+                          long esperaNecesaria) throws IOException {
+        metricas.admision(accion, "rechazada_" + motivo, 0);
+        long segundos = Math.max(1, (esperaNecesaria + 999_999_999L) / 1_000_000_000L);
+        resp.setHeader("Retry-After", Long.toString(segundos));
+        String mensaje = "Demasiadas peticiones; reintenta en " + segundos + " s.";
+        if (!req.getServletPath().startsWith("/api/")) {
+            resp.sendError(429, mensaje);
+            return;
+        }
+        resp.setStatus(429);
+        resp.setContentType("application/json; charset=UTF-8");
+        PrintWriter out = resp.getWriter();
+        out.write("{\"error\":");
+        Json.cadena(out, mensaje);
+        out.write('}');
+    }
+
+    /* action en /productos (list si falta); en el resto, la ruta sin la barra inicial */
+    private static String accion(HttpServletRequest req) {
+        String ruta = req.getServletPath();
+        if ("/productos".equals(ruta)) {
+            String action = req.getParameter("action");
+            return action == null || action.isBlank() ? "list" : action;
+        }
+        return ruta.startsWith("/") ? ruta.substring(1) : ruta;
+    }
+
+    private String cliente(HttpServletRequest req) {
+        if (!cabeceraCliente.isEmpty()) {
+            String v = req.getHeader(cabeceraCliente);
+            if (v != null && !v.isBlank()) {
+                // La última la añade nuestro balanceador; las anteriores las pone el cliente
+                int coma = v.lastIndexOf(',');
+                return (coma < 0 ? v : v.substring(coma + 1)).trim();
+            }
+        } else if (req.getHeader("X-Forwarded-For") != null && avisoBalanceador.compareAndSet(false, true)) {
+            ctx.log("[Filtro] ControlAdmisionFilter: llegan peticiones con X-Forwarded-For pero"
+                    + " inventario.admision.cabeceraCliente está vacía; el límite por cliente se aplica a "
+                    + req.getRemoteAddr() + " (el balanceador) para todos");
+        }
+        return req.getRemoteAddr();
+    }
+
+    /* "search=10:20, api/busqueda=5:10" -> {accion: [tasa, rafaga]} */
+    private static Map<String, double[]> leerLimites(String texto) {
+        Map<String, double[]> m = new HashMap<>();
+        for (String parte : texto.split(",")) {
+            if (parte.isBlank()) continue;
+            int igual = parte.indexOf('=');
+            int dos = parte.indexOf(':', igual + 1);
+            try {
+                if (igual <= 0 || dos < 0) throw new NumberFormatException();
+                double tasa = Double.parseDouble(parte.substring(igual + 1, dos).trim());
+                int rafaga = Integer.parseInt(parte.substring(dos + 1).trim());
+                if (tasa <= 0 || rafaga < 1) throw new NumberFormatException();
+                m.put(parte.substring(0, igual).trim(), new double[] {tasa, rafaga});
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Límite de admisión inválido: '" + parte.trim()
+                        + "' (formato accion=tasa:rafaga, tasa > 0 y rafaga >= 1)");
+            }
+        }
+        return m;
+    }
+
+    @Override
+    public void destroy() {
+    }
+}
@@ -0,0 +1,41 @@
+package com.inventario.filter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cubeta de tokens sin candados (GCRA): todo el estado es el "tiempo teórico
+ * de llegada" en un AtomicLong y cada petición es un CAS. 'tasa' tokens por
+ * segundo y hasta 'rafaga' seguidos con la cubeta llena.
+ */
+final class CubetaTokens {
+
+    private final long intervaloNanos;
+    private final long toleranciaNanos;
+    private final AtomicLong tat;
+
+    CubetaTokens(double tasa, int rafaga) {
+        this.intervaloNanos = Math.max(1, (long) (1e9 / tasa));
+        this.toleranciaNanos = Math.max(1, rafaga) * intervaloNanos;
+        this.tat = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Toma un token. Devuelve la espera (nanos, 0 = ya) si es de hasta
+     * maxEsperaNanos, y el token queda reservado para entonces; si hace falta
+     * esperar más no reserva nada y devuelve la espera necesaria en negativo.
+     */
+    long reservar(long ahora, long maxEsperaNanos) {
+        while (true) {
+            long actual = tat.get();
+            long nuevo = Math.max(actual, ahora) + intervaloNanos;
+            long espera = nuevo - ahora - toleranciaNanos;
+            if (espera > maxEsperaNanos) return -espera;
+            if (tat.compareAndSet(actual, nuevo)) return Math.max(0, espera);
+        }
+    }
+
+    /** Devuelve un token reservado que al final no se usó. */
+    void devolver() {
+        tat.addAndGet(-intervaloNanos);
+    }
+}
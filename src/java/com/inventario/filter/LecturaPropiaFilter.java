@@ -0,0 +1,67 @@
+package com.inventario.filter;
+
+import com.inventario.persistence.EnrutadorLecturas;
+import jakarta.servlet.*;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+
+import java.io.IOException;
+
+/**
+ * Lee-lo-que-escribiste con réplicas: asocia al hilo la marca de la sesión
+ * (EnrutadorLecturas.Marca) para que, tras crear, eliminar o mover stock, las
+ * lecturas de esa sesión vayan a la primaria durante inventario.replicas.ventanaMs.
+ * La marca se guarda en la sesión solo si alguna escritura la activó; se vuelve
+ * a fijar el atributo para que la replicación de sesiones la propague a los
+ * otros nodos. Va antes de CachePaginasFilter (ver web.xml).
+ */
+public class LecturaPropiaFilter implements Filter {
+
+    @Override
+    public void init(FilterConfig filterConfig) {
+        filterConfig.getServletContext().log("[Filtro] LecturaPropiaFilter inicializado");
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+
+        if (!(request instanceof HttpServletRequest req) || !(response instanceof HttpServletResponse resp)) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        EnrutadorLecturas.Marca marca = marcaDeSesion(req);
+        EnrutadorLecturas.Marca previa = EnrutadorLecturas.asociar(marca);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            EnrutadorLecturas.asociar(previa);
+            if (marca.activa()) guardar(req, resp, marca);
+        }
+    }
+
+    private static EnrutadorLecturas.Marca marcaDeSesion(HttpServletRequest req) {
+        HttpSession s = req.getSession(false);
+        if (s != null) {
+            try {
+                if (s.getAttribute(EnrutadorLecturas.ATRIBUTO_SESION) instanceof EnrutadorLecturas.Marca m) return m;
+            } catch (IllegalStateException invalidada) {
+                // sesión invalidada: se empieza con una marca nueva
+            }
+        }
+        return new EnrutadorLecturas.Marca();
+    }
+
+    /* Sin sesión solo se crea si aún se puede enviar la cookie */
+    private static void guardar(HttpServletRequest req, HttpServletResponse resp, EnrutadorLecturas.Marca marca) {
+        try {
+            HttpSession s = req.getSession(false);
+            if (s == null && !resp.isCommitted()) s = req.getSession(true);
+            if (s != null) s.setAttribute(EnrutadorLecturas.ATRIBUTO_SESION, marca);
+        } catch (IllegalStateException e) {
+            // sesión invalidada o respuesta ya enviada: la sesión no queda marcada
+        }
+    }
+}
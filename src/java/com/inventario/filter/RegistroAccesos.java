@@ -0,0 +1,66 @@
+package com.inventario.filter;
+
+import jakarta.servlet.ServletContext;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Log de accesos muestreado y asíncrono: el hilo de la petición solo encola
+ * un registro (sin formatear) y un hilo demonio lo escribe en ServletContext.log.
+ * Si la cola está llena el registro se descarta y se cuenta.
+ */
+final class RegistroAccesos implements AutoCloseable {
+
+    private record Acceso(String metodo, String uri, String qs, int status, long nanos) {}
+
+    private final ServletContext ctx;
+    private final double muestreo;
+    private final BlockingQueue<Acceso> cola;
+    private final LongAdder descartados = new LongAdder();
+    private final Thread escritor;
+    private volatile boolean activo = true;
+
+    RegistroAccesos(ServletContext ctx, double muestreo, int capacidad) {
+        this.ctx = ctx;
+        this.muestreo = muestreo;
+        this.cola = new ArrayBlockingQueue<>(Math.max(1, capacidad));
+        this.escritor = new Thread(this::escribir, "registro-accesos");
+        this.escritor.setDaemon(true);
+        this.escritor.start();
+    }
+
+    void registrar(String metodo, String uri, String qs, int status, long nanos) {
+        if (muestreo < 1.0 && ThreadLocalRandom.current().nextDouble() >= muestreo) return;
+        if (!cola.offer(new Acceso(metodo, uri, qs, status, nanos))) descartados.increment();
+    }
+
+    private void escribir() {
+        try {
+            while (activo || !cola.isEmpty()) {
+                Acceso a = cola.poll(500, TimeUnit.MILLISECONDS);
+                if (a == null) continue;
+                String uri = (a.qs() == null || a.qs().isBlank()) ? a.uri() : a.uri() + "?" + a.qs();
+                ctx.log(String.format("[Filtro] %s %s -> %d (%.3f ms)",
+                        a.metodo(), uri, a.status(), a.nanos() / 1e6));
+                long n = descartados.sumThenReset();
+                if (n > 0) ctx.log("[Filtro] " + n + " accesos descartados por cola llena");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        activo = false;
+        try {
+            escritor.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
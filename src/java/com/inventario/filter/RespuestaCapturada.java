@@ -0,0 +1,110 @@
+package com.inventario.filter;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+
+/**
+ * Respuesta que guarda el cuerpo en memoria en lugar de enviarlo; las
+ * cabeceras y el status pasan a la respuesta real. Anota si algún enlace se
+ * reescribió con el id de sesión (encodeURL), porque esa página es de un
+ * solo usuario.
+ */
+final class RespuestaCapturada extends HttpServletResponseWrapper {
+
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(16 * 1024);
+    private ServletOutputStream salida;
+    private PrintWriter escritor;
+    private boolean urlReescrita;
+
+    RespuestaCapturada(HttpServletResponse resp) {
+        super(resp);
+    }
+
+    /** Cuerpo escrito hasta ahora (vacía el writer si se usó). */
+    byte[] cuerpo() {
+        if (escritor != null) escritor.flush();
+        return buffer.toByteArray();
+    }
+
+    boolean urlReescrita() { return urlReescrita; }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+        if (escritor != null) throw new IllegalStateException("getWriter() ya fue llamado");
+        if (salida == null) {
+            salida = new ServletOutputStream() {
+                @Override public void write(int b) { buffer.write(b); }
+                @Override public void write(byte[] b, int off, int len) { buffer.write(b, off, len); }
+                @Override public boolean isReady() { return true; }
+                @Override public void setWriteListener(WriteListener l) { throw new UnsupportedOperationException(); }
+            };
+        }
+        return salida;
+    }
+
+    @Override
+    public PrintWriter getWriter() {
+        if (salida != null) throw new IllegalStateException("getOutputStream() ya fue llamado");
+        if (escritor == null) {
+            escritor = new PrintWriter(new OutputStreamWriter(buffer, Charset.forName(getCharacterEncoding())));
+        }
+        return escritor;
+    }
+
+    @Override public void setContentLength(int len) { }
+    @Override public void setContentLengthLong(long len) { }
+    @Override public void flushBuffer() { if (escritor != null) escritor.flush(); }
+    @Override public boolean isCommitted() { return false; }
+
+    @Override
+    public void resetBuffer() {
+        if (escritor != null) escritor.flush();
+        buffer.reset();
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        resetBuffer();
+    }
+
+    @Override
+    public String encodeURL(String url) {
+        String r = super.encodeURL(url);
+        if (!r.equals(url)) urlReescrita = true;
+        return r;
+    }
+
+    @Override
+    public String encodeRedirectURL(String url) {
+        String r = super.encodeRedirectURL(url);
+        if (!r.equals(url)) urlReescrita = true;
+        return r;
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        resetBuffer();
+        super.sendError(sc, msg);
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        resetBuffer();
+        super.sendError(sc);
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+        resetBuffer();
+        super.sendRedirect(location);
+    }
+}
@@ -1,60 +1,150 @@
 package com.inventario.filter;
 
+import com.inventario.config.Configuracion;
+import com.inventario.metricas.MetricasHttp;
+import com.inventario.metricas.MetricasJdbc;
 import jakarta.servlet.*;
-import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.HttpServletMapping;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.Set;
 
-@WebFilter("/*") 
+/**
+ * Mide cada petición con System.nanoTime() y la registra en {@link MetricasHttp}
+ * (expuesto en /metricas). El log de accesos es opcional, muestreado y asíncrono:
+ * ver inventario.accesos.* en web.xml. Las peticiones asíncronas (startAsync) se
+ * registran al completarse, desde un AsyncListener. Se declara en web.xml para
+ * que vaya antes de CachePaginasFilter y mida también los aciertos de la cache.
+ */
 public class TiempoRespuestaFilter implements Filter {
 
+    private static final Set<String> ACCIONES = Set.of("list", "search", "new", "delete");
+    private static final Set<String> METODOS = Set.of("GET", "POST", "PUT", "DELETE", "HEAD", "OPTIONS", "PATCH");
+
+    private MetricasHttp metricas;
+    private MetricasJdbc jdbc;        // null si el DataSource no está instrumentado
+    private RegistroAccesos accesos;
+
     @Override
     public void init(FilterConfig filterConfig) {
-        filterConfig.getServletContext()
-                .log("[Filtro] TiempoRespuestaFilter inicializado");
+        ServletContext ctx = filterConfig.getServletContext();
+        metricas = (MetricasHttp) ctx.getAttribute(MetricasHttp.ATRIBUTO);
+        if (metricas == null) {
+            metricas = new MetricasHttp();
+            ctx.setAttribute(MetricasHttp.ATRIBUTO, metricas);
+        }
+        jdbc = (MetricasJdbc) ctx.getAttribute(MetricasJdbc.ATRIBUTO);
+
+        Configuracion cfg = new Configuracion(ctx::getInitParameter);
+        if (cfg.booleano("inventario.accesos.habilitado", true)) {
+            double muestreo = cfg.decimal("inventario.accesos.muestreo", 1.0);
+            if (!(muestreo >= 0 && muestreo <= 1)) {
+                throw new IllegalArgumentException("inventario.accesos.muestreo debe estar entre 0.0 y 1.0: " + muestreo);
+            }
+            accesos = new RegistroAccesos(ctx, muestreo, cfg.entero("inventario.accesos.capacidad", 10_000));
+        }
+        ctx.log("[Filtro] TiempoRespuestaFilter inicializado");
     }
 
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
             throws IOException, ServletException {
 
-        
-        if (request instanceof HttpServletRequest req) {
-            String uri = req.getRequestURI();
-            if (uri.endsWith(".css") || uri.endsWith(".js") || uri.endsWith(".png")
-             || uri.endsWith(".jpg") || uri.endsWith(".jpeg") || uri.endsWith(".gif")
-             || uri.endsWith(".ico") || uri.startsWith(req.getContextPath() + "/favicon")) {
-                chain.doFilter(request, response);
-                return;
-            }
+        if (!(request instanceof HttpServletRequest req) || !(response instanceof HttpServletResponse resp)) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        String uri = req.getRequestURI();
+        if (uri.endsWith(".css") || uri.endsWith(".js") || uri.endsWith(".png")
+         || uri.endsWith(".jpg") || uri.endsWith(".jpeg") || uri.endsWith(".gif")
+         || uri.endsWith(".ico") || uri.startsWith(req.getContextPath() + "/favicon")
+         // Long-poll / SSE: conexiones de minutos que falsearían latencias y peticiones en curso
+         || uri.startsWith(req.getContextPath() + "/api/cambios")) {
+            chain.doFilter(request, response);
+            return;
         }
 
-        long inicio = System.currentTimeMillis();
+        metricas.inicio();
+        if (jdbc != null) jdbc.abrirAmbito();
+        long inicio = System.nanoTime();
+        boolean error = true;
         try {
             chain.doFilter(request, response);
+            error = false;
         } finally {
-            long ms = System.currentTimeMillis() - inicio;
+            MetricasJdbc.Ambito ambito = jdbc == null ? null : MetricasJdbc.asociar(null);
+            if (!error && req.isAsyncStarted()) {
+                req.getAsyncContext().addListener(new FinAsincrono(req, uri, inicio, ambito));
+            } else {
+                int status = error ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : resp.getStatus();
+                terminar(ruta(req), accion(req), req, uri, status, System.nanoTime() - inicio, ambito);
+            }
+        }
+    }
 
-            String metodo = "-";
-            String uri = "-";
-            int status = -1;
+    private void terminar(String ruta, String accion, HttpServletRequest req, String uri,
+                          int status, long nanos, MetricasJdbc.Ambito ambito) {
+        metricas.fin(ruta, accion, status, nanos);
+        if (ambito != null) jdbc.cerrarAmbito(ambito);
+        if (accesos != null) {
+            accesos.registrar(req.getMethod(), uri, req.getQueryString(), status, nanos);
+        }
+    }
 
-            if (request instanceof HttpServletRequest req) {
-                metodo = req.getMethod();
-                uri = req.getRequestURI();
-                String qs = req.getQueryString();
-                if (qs != null && !qs.isBlank()) uri += "?" + qs;
-            }
-            if (response instanceof HttpServletResponse resp) {
-                status = resp.getStatus();
-            }
+    /* Registra la petición asíncrona al completarse (el dispatch posterior cambia el mapeo: ruta y acción se fijan antes) */
+    private final class FinAsincrono implements AsyncListener {
+        private final HttpServletRequest req;
+        private final String uri, ruta, accion;
+        private final long inicio;
+        private final MetricasJdbc.Ambito ambito;
+        private volatile int statusFallo;
 
-            request.getServletContext()
-                   .log(String.format("[Filtro] %s %s -> %d (%d ms)", metodo, uri, status, ms));
+        FinAsincrono(HttpServletRequest req, String uri, long inicio, MetricasJdbc.Ambito ambito) {
+            this.req = req;
+            this.uri = uri;
+            this.ruta = ruta(req);
+            this.accion = accion(req);
+            this.inicio = inicio;
+            this.ambito = ambito;
         }
+
+        @Override
+        public void onComplete(AsyncEvent e) {
+            int status = e.getSuppliedResponse() instanceof HttpServletResponse r ? r.getStatus() : 200;
+            if (statusFallo != 0 && status < 400) status = statusFallo;
+            terminar(ruta, accion, req, uri, status, System.nanoTime() - inicio, ambito);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent e) { statusFallo = HttpServletResponse.SC_SERVICE_UNAVAILABLE; }
+
+        @Override
+        public void onError(AsyncEvent e) { statusFallo = HttpServletResponse.SC_INTERNAL_SERVER_ERROR; }
+
+        @Override
+        public void onStartAsync(AsyncEvent e) { e.getAsyncContext().addListener(this); }
+    }
+
+    /* Patrón de mapeo del servlet (no la URI) para acotar la cardinalidad */
+    private static String ruta(HttpServletRequest req) {
+        HttpServletMapping m = req.getHttpServletMapping();
+        String patron = m == null ? null : m.getPattern();
+        return (patron == null || patron.isEmpty()) ? "/" : patron;
+    }
+
+    private static String accion(HttpServletRequest req) {
+        String metodo = req.getMethod();
+        if (!"GET".equals(metodo)) return METODOS.contains(metodo) ? metodo : "otro";
+        if (!"/productos".equals(req.getServletPath())) return "GET";
+        String action = req.getParameter("action");
+        if (action == null) return "list";
+        return ACCIONES.contains(action) ? action : "otro";
     }
 
     @Override
-    public void destroy() {}
+    public void destroy() {
+        if (accesos != null) accesos.close();
+    }
 }
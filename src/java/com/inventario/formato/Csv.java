@@ -0,0 +1,32 @@
+package com.inventario.formato;
+
+import java.io.IOException;
+
+/**
+ * Escritura de campos CSV (RFC 4180) directamente sobre el destino.
+ */
+public final class Csv {
+
+    private Csv() { }
+
+    /** Escribe el campo, entre comillas solo si contiene separador, comillas o saltos de línea. */
+    public static void campo(Appendable out, String s, char separador) throws IOException {
+        if (s == null) return;
+        boolean comillas = false;
+        for (int i = 0; i < s.length() && !comillas; i++) {
+            char c = s.charAt(i);
+            comillas = c == separador || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!comillas) { out.append(s); return; }
+
+        out.append('"');
+        int desde = 0;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == '"') {
+                out.append(s, desde, i + 1).append('"');
+                desde = i + 1;
+            }
+        }
+        out.append(s, desde, s.length()).append('"');
+    }
+}
@@ -0,0 +1,18 @@
+package com.inventario.formato;
+
+import com.inventario.model.Producto;
+
+/**
+ * Fila leída de un archivo de importación: el producto o el error de
+ * formato que impidió construirlo. numero es la línea en el archivo.
+ */
+public record FilaProducto(int numero, Producto producto, String error) {
+
+    public static FilaProducto valida(int numero, Producto p) {
+        return new FilaProducto(numero, p, null);
+    }
+
+    public static FilaProducto invalida(int numero, String error) {
+        return new FilaProducto(numero, null, error);
+    }
+}
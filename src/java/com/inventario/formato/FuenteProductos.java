@@ -0,0 +1,41 @@
+package com.inventario.formato;
+
+import com.inventario.model.Producto;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * Origen en streaming de filas a importar (CSV o JSON Lines).
+ */
+public interface FuenteProductos extends AutoCloseable {
+
+    /** Siguiente fila o null al terminar. */
+    FilaProducto siguiente() throws IOException;
+
+    @Override
+    void close() throws IOException;
+
+    /* Conversión común de los campos de texto a Producto; lanza IllegalArgumentException */
+    static Producto aProducto(String codigo, String nombre, String categoria,
+                              String precio, String stock, String activo) {
+        Producto p = new Producto();
+        p.setCodigo(codigo == null ? null : codigo.trim());
+        p.setNombre(nombre == null ? null : nombre.trim());
+        p.setCategoria(categoria == null ? null : categoria.trim());
+        try {
+            p.setPrecio(precio == null || precio.isBlank() ? null : new BigDecimal(precio.trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Precio inválido: " + precio);
+        }
+        try {
+            p.setStock(stock == null || stock.isBlank() ? null : Integer.valueOf(stock.trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Stock inválido: " + stock);
+        }
+        p.setActivo(activo == null || activo.isBlank()
+                || "1".equals(activo.trim()) || "true".equalsIgnoreCase(activo.trim())
+                || "si".equalsIgnoreCase(activo.trim()) || "sí".equalsIgnoreCase(activo.trim()));
+        return p;
+    }
+}
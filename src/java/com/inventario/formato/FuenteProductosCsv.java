@@ -0,0 +1,62 @@
+package com.inventario.formato;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Filas de un CSV con cabecera. Columnas reconocidas (en cualquier orden):
+ * codigo, nombre, categoria, precio, stock, activo.
+ */
+public class FuenteProductosCsv implements FuenteProductos {
+
+    private static final String[] COLUMNAS = {"codigo", "nombre", "categoria", "precio", "stock", "activo"};
+
+    private final Reader in;
+    private final LectorCsv lector;
+    private final int[] indices = new int[COLUMNAS.length];
+
+    public FuenteProductosCsv(Reader in, char separador) throws IOException {
+        this.in = in;
+        this.lector = new LectorCsv(in, separador);
+
+        List<String> cabecera = lector.siguiente();
+        if (cabecera == null) throw new IOException("El archivo CSV está vacío.");
+        for (int i = 0; i < COLUMNAS.length; i++) {
+            indices[i] = -1;
+            for (int j = 0; j < cabecera.size(); j++) {
+                String h = cabecera.get(j).trim().toLowerCase(Locale.ROOT);
+                if (j == 0 && !h.isEmpty() && h.charAt(0) == '\uFEFF') h = h.substring(1); // BOM
+                if (h.equals(COLUMNAS[i])) { indices[i] = j; break; }
+            }
+        }
+        if (indices[0] < 0 || indices[1] < 0) {
+            throw new IOException("La cabecera CSV debe incluir al menos 'codigo' y 'nombre'.");
+        }
+    }
+
+    @Override
+    public FilaProducto siguiente() throws IOException {
+        List<String> campos = lector.siguiente();
+        if (campos == null) return null;
+        int linea = lector.getLineaRegistro();
+        try {
+            return FilaProducto.valida(linea, FuenteProductos.aProducto(
+                    campo(campos, 0), campo(campos, 1), campo(campos, 2),
+                    campo(campos, 3), campo(campos, 4), campo(campos, 5)));
+        } catch (IllegalArgumentException e) {
+            return FilaProducto.invalida(linea, e.getMessage());
+        }
+    }
+
+    private String campo(List<String> campos, int columna) {
+        int i = indices[columna];
+        return (i < 0 || i >= campos.size()) ? null : campos.get(i);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
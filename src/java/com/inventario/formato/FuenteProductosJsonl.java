@@ -0,0 +1,69 @@
+package com.inventario.formato;
+
+import com.inventario.model.Producto;
+import jakarta.json.Json;
+import jakarta.json.JsonException;
+import jakarta.json.JsonNumber;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonReader;
+import jakarta.json.JsonString;
+import jakarta.json.JsonValue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+/**
+ * Filas JSON Lines: un objeto por línea con las mismas claves que el CSV.
+ * Solo se mantiene en memoria la línea actual.
+ */
+public class FuenteProductosJsonl implements FuenteProductos {
+
+    private final BufferedReader in;
+    private int linea;
+
+    public FuenteProductosJsonl(Reader in) {
+        this.in = in instanceof BufferedReader br ? br : new BufferedReader(in, 8192);
+    }
+
+    @Override
+    public FilaProducto siguiente() throws IOException {
+        String texto;
+        do {
+            texto = in.readLine();
+            if (texto == null) return null;
+            linea++;
+        } while (texto.isBlank());
+
+        try (JsonReader r = Json.createReader(new StringReader(texto))) {
+            return FilaProducto.valida(linea, producto(r.readObject()));
+        } catch (JsonException | IllegalStateException e) {
+            return FilaProducto.invalida(linea, "JSON inválido: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return FilaProducto.invalida(linea, e.getMessage());
+        }
+    }
+
+    /** Producto a partir de un objeto JSON con las claves del CSV; lanza IllegalArgumentException. */
+    public static Producto producto(JsonObject o) {
+        return FuenteProductos.aProducto(
+                texto(o, "codigo"), texto(o, "nombre"), texto(o, "categoria"),
+                texto(o, "precio"), texto(o, "stock"), texto(o, "activo"));
+    }
+
+    private static String texto(JsonObject o, String clave) {
+        JsonValue v = o.get(clave);
+        if (v == null || v == JsonValue.NULL) return null;
+        if (v instanceof JsonString s) return s.getString();
+        if (v instanceof JsonNumber n) return n.toString();
+        if (v == JsonValue.TRUE) return "true";
+        if (v == JsonValue.FALSE) return "false";
+        throw new IllegalArgumentException("Valor no admitido para '" + clave + "'.");
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,79 @@
+package com.inventario.formato;
+
+import com.inventario.model.Producto;
+import com.inventario.model.ProductoVista;
+
+import java.io.IOException;
+
+/**
+ * Escritura de cadenas JSON directamente sobre el destino, sin construir
+ * objetos intermedios (respuestas en streaming).
+ */
+public final class Json {
+
+    private Json() { }
+
+    /** Escribe s entre comillas y escapado; null se escribe como null. */
+    public static void cadena(Appendable out, String s) throws IOException {
+        if (s == null) { out.append("null"); return; }
+        out.append('"');
+        int desde = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            String esc = switch (c) {
+                case '"' -> "\\\"";
+                case '\\' -> "\\\\";
+                case '\n' -> "\\n";
+                case '\r' -> "\\r";
+                case '\t' -> "\\t";
+                default -> c < 0x20 ? String.format("\\u%04x", (int) c) : null;
+            };
+            if (esc != null) {
+                out.append(s, desde, i).append(esc);
+                desde = i + 1;
+            }
+        }
+        out.append(s, desde, s.length()).append('"');
+    }
+
+    /** Objeto JSON de un producto, con las mismas claves que la exportación JSON Lines. */
+    public static void producto(Appendable out, Producto p) throws IOException {
+        out.append("{\"id\":").append(String.valueOf(p.getId()));
+        out.append(",\"codigo\":");
+        cadena(out, p.getCodigo());
+        out.append(",\"nombre\":");
+        cadena(out, p.getNombre());
+        out.append(",\"categoria\":");
+        cadena(out, p.getCategoria());
+        out.append(",\"precio\":").append(p.getPrecio() == null ? "null" : p.getPrecio().toPlainString());
+        out.append(",\"stock\":").append(String.valueOf(p.getStock()));
+        out.append(",\"activo\":").append(String.valueOf(p.getActivo())).append('}');
+    }
+
+    /** Igual que producto(Producto); el precio se escribe desde los centavos, sin BigDecimal. */
+    public static void producto(Appendable out, ProductoVista p) throws IOException {
+        out.append("{\"id\":").append(Integer.toString(p.id()));
+        out.append(",\"codigo\":");
+        cadena(out, p.codigo());
+        out.append(",\"nombre\":");
+        cadena(out, p.nombre());
+        out.append(",\"categoria\":");
+        cadena(out, p.categoria());
+        out.append(",\"precio\":");
+        centavos(out, p.centavos());
+        out.append(",\"stock\":").append(Integer.toString(p.stock()));
+        out.append(",\"activo\":").append(p.activo() ? "true" : "false").append('}');
+    }
+
+    /** Importe en centavos como decimal de dos cifras: 1250 -> 12.50 */
+    public static void centavos(Appendable out, long centavos) throws IOException {
+        if (centavos < 0) {
+            out.append('-');
+            centavos = -centavos;
+        }
+        long resto = centavos % 100;
+        out.append(Long.toString(centavos / 100)).append('.');
+        if (resto < 10) out.append('0');
+        out.append(Long.toString(resto));
+    }
+}
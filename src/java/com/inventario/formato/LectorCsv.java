@@ -0,0 +1,80 @@
+package com.inventario.formato;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lector CSV en streaming (RFC 4180): comillas dobles, comillas escapadas
+ * ("") y saltos de línea dentro de campos. Solo retiene el registro actual.
+ */
+public class LectorCsv {
+
+    private final Reader in;
+    private final char separador;
+    private final char[] buf = new char[8192];
+    private int pos, len;
+    private int linea = 1;
+    private int lineaRegistro;
+
+    public LectorCsv(Reader in, char separador) {
+        this.in = in;
+        this.separador = separador;
+    }
+
+    /** Línea física donde empezó el último registro leído. */
+    public int getLineaRegistro() { return lineaRegistro; }
+
+    /** Siguiente registro o null al final del flujo. Las líneas vacías se omiten. */
+    public List<String> siguiente() throws IOException {
+        int c = leer();
+        while (c == '\n' || c == '\r') {
+            c = leer();
+        }
+        if (c < 0) return null;
+        lineaRegistro = linea;
+
+        List<String> campos = new ArrayList<>();
+        StringBuilder campo = new StringBuilder();
+        boolean entreComillas = false;
+        while (true) {
+            if (entreComillas) {
+                if (c < 0) throw new IOException("Comillas sin cerrar desde la línea " + lineaRegistro);
+                if (c == '"') {
+                    int n = leer();
+                    if (n == '"') { campo.append('"'); }
+                    else { entreComillas = false; c = n; continue; }
+                } else {
+                    campo.append((char) c);
+                }
+            } else if (c == '"' && campo.length() == 0) {
+                entreComillas = true;
+            } else if (c == separador) {
+                campos.add(campo.toString());
+                campo.setLength(0);
+            } else if (c == '\n' || c == '\r' || c < 0) {
+                if (c == '\r') {
+                    int n = leer();
+                    if (n != '\n' && n >= 0) pos--; // devolver el carácter
+                }
+                campos.add(campo.toString());
+                return campos;
+            } else {
+                campo.append((char) c);
+            }
+            c = leer();
+        }
+    }
+
+    private int leer() throws IOException {
+        if (pos >= len) {
+            len = in.read(buf, 0, buf.length);
+            pos = 0;
+            if (len <= 0) { len = 0; return -1; }
+        }
+        char c = buf[pos++];
+        if (c == '\n') linea++;
+        return c;
+    }
+}
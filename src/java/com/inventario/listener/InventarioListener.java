@@ -0,0 +1,99 @@
+package com.inventario.listener;
+
+import com.inventario.config.Configuracion;
+import com.inventario.controller.EjecutorPeticiones;
+import com.inventario.facade.ProductoFacade;
+import com.inventario.metricas.MetricasHttp;
+import com.inventario.metricas.MetricasJdbc;
+import com.inventario.persistence.DataSourceInstrumentado;
+import com.inventario.persistence.MigradorEsquema;
+import jakarta.annotation.Resource;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Arranque de la aplicación: migra el esquema una sola vez por despliegue
+ * y publica la fachada en el ServletContext para los servlets.
+ */
+@WebListener
+public class InventarioListener implements ServletContextListener {
+
+    @Resource(lookup = "jdbc/inventarioPool")
+    private DataSource ds;
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        ServletContext ctx = sce.getServletContext();
+        if (ds == null) {
+            throw new IllegalStateException("No se pudo inyectar el DataSource jdbc/inventarioPool. Verifica GlassFish y el web.xml.");
+        }
+
+        Configuracion cfg = new Configuracion(ctx::getInitParameter);
+        DataSource fuente = ds;
+        List<DataSource> replicas = replicas(cfg.texto("inventario.replicas", ""));
+        if (cfg.booleano("inventario.jdbc.instrumentado", false)) {
+            MetricasJdbc jdbc = new MetricasJdbc(cfg.largo("inventario.jdbc.lentaMs", 500));
+            fuente = new DataSourceInstrumentado(ds, jdbc);
+            replicas.replaceAll(r -> new DataSourceInstrumentado(r, jdbc));
+            ctx.setAttribute(MetricasJdbc.ATRIBUTO, jdbc);
+        }
+
+        try (Connection con = fuente.getConnection()) {
+            int version = new MigradorEsquema().migrar(con);
+            ctx.log("[Esquema] Versión del esquema: " + version);
+        } catch (Exception e) {
+            throw new IllegalStateException("No se pudo migrar el esquema: " + e.getMessage(), e);
+        }
+
+        MetricasHttp http = new MetricasHttp();
+        ctx.setAttribute(MetricasHttp.ATRIBUTO, http);
+        ctx.setAttribute(ProductoFacade.ATRIBUTO, new ProductoFacade(fuente, cfg, http::enCurso, replicas, null));
+        if (!replicas.isEmpty()) ctx.log("[Réplicas] Lecturas repartidas entre " + replicas.size() + " réplica(s)");
+
+        if (cfg.booleano("inventario.async.habilitado", false)) {
+            ctx.setAttribute(EjecutorPeticiones.ATRIBUTO, new EjecutorPeticiones(
+                    cfg.entero("inventario.async.permisos", 16),
+                    cfg.largo("inventario.async.esperaPermisoMs", 1000),
+                    cfg.largo("inventario.async.timeoutMs", 30_000)));
+        }
+    }
+
+    /* Nombres JNDI separados por comas (pools de GlassFish apuntando a las réplicas) */
+    private static List<DataSource> replicas(String nombres) {
+        List<DataSource> out = new ArrayList<>();
+        if (nombres.isBlank()) return out;
+        try {
+            InitialContext ic = new InitialContext();
+            for (String n : nombres.split(",")) {
+                if (!n.isBlank()) out.add((DataSource) ic.lookup(n.trim()));
+            }
+        } catch (NamingException e) {
+            throw new IllegalStateException("No se pudo obtener una réplica de inventario.replicas: " + e.getMessage(), e);
+        }
+        return out;
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        ServletContext ctx = sce.getServletContext();
+        if (ctx.getAttribute(EjecutorPeticiones.ATRIBUTO) instanceof EjecutorPeticiones ejecutor) {
+            ejecutor.close();
+        }
+        if (ctx.getAttribute(ProductoFacade.ATRIBUTO) instanceof ProductoFacade facade) {
+            facade.cerrar();
+        }
+        ctx.removeAttribute(EjecutorPeticiones.ATRIBUTO);
+        ctx.removeAttribute(ProductoFacade.ATRIBUTO);
+        ctx.removeAttribute(MetricasHttp.ATRIBUTO);
+        ctx.removeAttribute(MetricasJdbc.ATRIBUTO);
+    }
+}
@@ -0,0 +1,69 @@
+package com.inventario.metricas;
+
+import java.io.PrintWriter;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Escritor mínimo del formato de texto de Prometheus (versión 0.0.4).
+ * Emite # HELP / # TYPE una vez por familia y luego las muestras.
+ */
+public class EscritorPrometheus {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=UTF-8";
+
+    private final PrintWriter out;
+    private final Set<String> declaradas = new HashSet<>();
+
+    public EscritorPrometheus(PrintWriter out) {
+        this.out = out;
+    }
+
+    /** Declara la familia (counter, gauge, summary) si aún no se declaró. */
+    public EscritorPrometheus familia(String nombre, String tipo, String ayuda) {
+        if (declaradas.add(nombre)) {
+            out.append("# HELP ").append(nombre).append(' ').append(ayuda).append('\n');
+            out.append("# TYPE ").append(nombre).append(' ').append(tipo).append('\n');
+        }
+        return this;
+    }
+
+    /** Muestra sin etiquetas. */
+    public EscritorPrometheus muestra(String nombre, double valor) {
+        return muestra(nombre, null, valor);
+    }
+
+    /**
+     * Muestra con etiquetas ya formateadas (usar {@link #etiquetas(String...)}).
+     */
+    public EscritorPrometheus muestra(String nombre, String etiquetas, double valor) {
+        out.append(nombre);
+        if (etiquetas != null && !etiquetas.isEmpty()) out.append('{').append(etiquetas).append('}');
+        out.append(' ');
+        if (valor == Math.rint(valor) && !Double.isInfinite(valor) && Math.abs(valor) < 1e15) {
+            out.append(Long.toString((long) valor));
+        } else {
+            out.append(Double.toString(valor));
+        }
+        out.append('\n');
+        return this;
+    }
+
+    /** Formatea pares clave, valor: etiquetas("cache", "productos") -> cache="productos" */
+    public static String etiquetas(String... pares) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i + 1 < pares.length; i += 2) {
+            if (sb.length() > 0) sb.append(',');
+            sb.append(pares[i]).append("=\"");
+            String v = pares[i + 1] == null ? "" : pares[i + 1];
+            for (int j = 0; j < v.length(); j++) {
+                char c = v.charAt(j);
+                if (c == '\\' || c == '"') sb.append('\\').append(c);
+                else if (c == '\n') sb.append("\\n");
+                else sb.append(c);
+            }
+            sb.append('"');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,76 @@
+package com.inventario.metricas;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latencias en nanosegundos, sin candados, al estilo HDR:
+ * cubetas log-lineales con 32 subdivisiones por potencia de dos (error
+ * relativo < 3 %) hasta ~18 minutos. Registrar es un incremento atómico
+ * sobre un arreglo; los percentiles se calculan al leer.
+ */
+public class HistogramaLatencia {
+
+    private static final int BITS_SUB = 5;
+    private static final int SUB = 1 << BITS_SUB;
+    private static final int MSB_MAX = 40;                       // 2^40 ns ≈ 18 min
+    private static final int CUBETAS = (MSB_MAX - BITS_SUB + 2) * SUB;
+    private static final long VALOR_MAX = (1L << (MSB_MAX + 1)) - 1;
+
+    private final AtomicLongArray cuentas = new AtomicLongArray(CUBETAS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder suma = new LongAdder();
+    private final AtomicLong maximo = new AtomicLong();
+
+    public void registrar(long nanos) {
+        long v = Math.max(0, Math.min(nanos, VALOR_MAX));
+        cuentas.incrementAndGet(indice(v));
+        total.increment();
+        suma.add(v);
+        if (v > maximo.get()) maximo.accumulateAndGet(v, Math::max);
+    }
+
+    public long cuenta() { return total.sum(); }
+    public long sumaNanos() { return suma.sum(); }
+    public long maximoNanos() { return maximo.get(); }
+
+    /** Percentil (0-100) en nanosegundos; 0 si no hay muestras. */
+    public long percentil(double p) {
+        return percentil(p, this, null);
+    }
+
+    /** Percentil sobre la unión de dos histogramas (ventanas consecutivas). */
+    public static long percentil(double p, HistogramaLatencia a, HistogramaLatencia b) {
+        long n = 0;
+        long[] c = new long[CUBETAS];
+        for (int i = 0; i < CUBETAS; i++) {
+            c[i] = a.cuentas.get(i) + (b == null ? 0 : b.cuentas.get(i));
+            n += c[i];
+        }
+        if (n == 0) return 0;
+        long objetivo = Math.max(1, (long) Math.ceil(n * p / 100.0));
+        long acumulado = 0;
+        for (int i = 0; i < CUBETAS; i++) {
+            acumulado += c[i];
+            if (acumulado >= objetivo) return valor(i);
+        }
+        return valor(CUBETAS - 1);
+    }
+
+    static int indice(long v) {
+        if (v < SUB) return (int) v;
+        int msb = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int) ((v >>> (msb - BITS_SUB)) & (SUB - 1));
+        return (msb - BITS_SUB + 1) * SUB + sub;
+    }
+
+    /* Punto medio de la cubeta */
+    static long valor(int indice) {
+        if (indice < SUB) return indice;
+        int msb = indice / SUB + BITS_SUB - 1;
+        long sub = indice % SUB;
+        long inferior = (1L << msb) | (sub << (msb - BITS_SUB));
+        return inferior + ((1L << (msb - BITS_SUB)) >> 1);
+    }
+}
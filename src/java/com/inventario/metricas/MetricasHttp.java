@@ -0,0 +1,93 @@
+package com.inventario.metricas;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.inventario.metricas.EscritorPrometheus.etiquetas;
+
+/**
+ * Registro de latencias HTTP por ruta, acción y clase de estado (2xx, 4xx...).
+ * Los contadores son acumulados; los percentiles y el throughput se calculan
+ * sobre una ventana deslizante (la ventana actual más la anterior). También
+ * recoge las decisiones de ControlAdmisionFilter (admitidas, en espera,
+ * rechazadas con 429) por acción limitada.
+ */
+public class MetricasHttp {
+
+    /** Atributo de ServletContext donde InventarioListener publica el registro. */
+    public static final String ATRIBUTO = "metricasHttp";
+
+    private static final long VENTANA_NANOS = 60_000_000_000L;
+
+    private final ConcurrentHashMap<String, SerieVentana> series = new ConcurrentHashMap<>();
+    private final LongAdder enCurso = new LongAdder();
+    private final ConcurrentHashMap<String, LongAdder> admision = new ConcurrentHashMap<>();
+    private final SerieVentana esperaAdmision = new SerieVentana(VENTANA_NANOS);
+    private final LongAdder enColaAdmision = new LongAdder();
+
+    public void inicio() { enCurso.increment(); }
+
+    /** Registra una petición terminada. ruta y accion deben ser de cardinalidad acotada. */
+    public void fin(String ruta, String accion, int status, long nanos) {
+        enCurso.decrement();
+        String clave = ruta + '\u0000' + accion + '\u0000' + claseEstado(status);
+        SerieVentana s = series.get(clave);
+        if (s == null) s = series.computeIfAbsent(clave, k -> new SerieVentana(VENTANA_NANOS));
+        s.registrar(nanos);
+    }
+
+    /** Peticiones en curso en este momento. */
+    public long enCurso() { return enCurso.sum(); }
+
+    /**
+     * Decisión del control de admisión sobre una acción limitada (de cardinalidad
+     * acotada): admitida, espera (con los nanos esperados) o rechazada_*.
+     */
+    public void admision(String accion, String resultado, long esperaNanos) {
+        String clave = accion + '\u0000' + resultado;
+        LongAdder c = admision.get(clave);
+        if (c == null) c = admision.computeIfAbsent(clave, k -> new LongAdder());
+        c.increment();
+        if (esperaNanos > 0) esperaAdmision.registrar(esperaNanos);
+    }
+
+    /** Peticiones esperando un token: +1 al entrar en la cola, -1 al salir. */
+    public void colaAdmision(int delta) { enColaAdmision.add(delta); }
+
+    public void escribir(EscritorPrometheus w) {
+        w.familia("inventario_http_peticiones_en_curso", "gauge", "Peticiones en curso");
+        w.muestra("inventario_http_peticiones_en_curso", enCurso());
+
+        // Cada familia con todas sus muestras seguidas, como pide el formato de texto
+        Map<String, SerieVentana> ordenadas = new TreeMap<>();
+        series.forEach((clave, s) -> {
+            String[] p = clave.split("\u0000", 3);
+            ordenadas.put(etiquetas("ruta", p[0], "accion", p[1], "estado", p[2]), s);
+        });
+        w.familia("inventario_http_peticion_segundos", "summary",
+                "Latencia de las peticiones (percentiles sobre los últimos 1-2 minutos)");
+        ordenadas.forEach((base, s) -> s.escribirResumen(w, "inventario_http_peticion_segundos", base, 1e9));
+        w.familia("inventario_http_peticion_max_segundos", "gauge", "Latencia máxima desde el arranque");
+        ordenadas.forEach((base, s) -> w.muestra("inventario_http_peticion_max_segundos", base, s.maximo() / 1e9));
+        w.familia("inventario_http_throughput", "gauge", "Peticiones por segundo en los últimos 1-2 minutos");
+        ordenadas.forEach((base, s) -> w.muestra("inventario_http_throughput", base, s.porSegundo()));
+
+        if (admision.isEmpty()) return;
+        w.familia("inventario_http_admision_total", "counter", "Decisiones del control de admisión por acción limitada");
+        new TreeMap<>(admision).forEach((clave, c) -> {
+            String[] p = clave.split("\u0000", 2);
+            w.muestra("inventario_http_admision_total", etiquetas("accion", p[0], "resultado", p[1]), c.sum());
+        });
+        w.familia("inventario_http_admision_en_cola", "gauge", "Peticiones esperando un token");
+        w.muestra("inventario_http_admision_en_cola", enColaAdmision.sum());
+        w.familia("inventario_http_admision_espera_segundos", "summary",
+                "Espera por un token de las peticiones encoladas (últimos 1-2 minutos)");
+        esperaAdmision.escribirResumen(w, "inventario_http_admision_espera_segundos", "", 1e9);
+    }
+
+    private static String claseEstado(int status) {
+        return status >= 100 && status < 600 ? (status / 100) + "xx" : "otro";
+    }
+}
@@ -0,0 +1,194 @@
+package com.inventario.metricas;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import static com.inventario.metricas.EscritorPrometheus.etiquetas;
+
+/**
+ * Estadísticas del acceso JDBC: espera por conexión del pool, tiempo y filas
+ * por sentencia SQL, sentencias por petición HTTP y log de consultas lentas
+ * con sus parámetros. Lo alimenta persistence.DataSourceInstrumentado.
+ */
+public class MetricasJdbc {
+
+    /** Atributo de ServletContext donde InventarioListener publica el registro. */
+    public static final String ATRIBUTO = "metricasJdbc";
+
+    private static final Logger LOG = Logger.getLogger(MetricasJdbc.class.getName());
+    private static final long VENTANA_NANOS = 60_000_000_000L;
+    private static final int MAX_SENTENCIAS = 500;
+    private static final int MAX_SQL_CACHEADO = 2_000;
+    private static final int MAX_LARGO_PARAMETRO = 100;
+
+    // (?, ?, ?) -> (?…) y (?…), (?…), ... -> (?…), … para que los IN y los INSERT multi-fila compartan serie
+    private static final Pattern LISTA = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern TUPLAS = Pattern.compile("\\(\\?…\\)(?:\\s*,\\s*\\(\\?…\\))+");
+    private static final Pattern ESPACIOS = Pattern.compile("\\s+");
+
+    /** Serie de una sentencia SQL normalizada. */
+    public static final class Sentencia {
+        private final String sql;
+        private final SerieVentana tiempos = new SerieVentana(VENTANA_NANOS);
+        private final LongAdder errores = new LongAdder();
+        private final LongAdder filas = new LongAdder();
+
+        private Sentencia(String sql) { this.sql = sql; }
+
+        public void filaLeida() { filas.increment(); }
+    }
+
+    /** Sentencias de una petición; los hilos que trabajan para ella comparten el mismo ámbito. */
+    public static final class Ambito {
+        private final AtomicInteger sentencias = new AtomicInteger();
+
+        private Ambito() { }
+    }
+
+    private final long umbralLentaNanos;
+    private final SerieVentana adquisicion = new SerieVentana(VENTANA_NANOS);
+    private final LongAdder erroresAdquisicion = new LongAdder();
+    private final SerieVentana sentenciasPorPeticion = new SerieVentana(VENTANA_NANOS);
+    private final ConcurrentHashMap<String, Sentencia> porSqlNormalizado = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Sentencia> porSql = new ConcurrentHashMap<>();
+    private final Sentencia otras = new Sentencia("(otras)");
+    private final LongAdder lentas = new LongAdder();
+
+    private static final ThreadLocal<Ambito> AMBITO = new ThreadLocal<>();
+
+    /**
+     * @param umbralLentaMs sentencias que tarden al menos esto se escriben en el log
+     *                      con sus parámetros; 0 o negativo lo desactiva
+     */
+    public MetricasJdbc(long umbralLentaMs) {
+        this.umbralLentaNanos = umbralLentaMs > 0 ? umbralLentaMs * 1_000_000L : Long.MAX_VALUE;
+    }
+
+    /* ===== Registro (llamado desde los proxies JDBC) ===== */
+
+    public void adquisicion(long nanos, boolean ok) {
+        adquisicion.registrar(nanos);
+        if (!ok) erroresAdquisicion.increment();
+    }
+
+    /** Serie de la sentencia; se resuelve una vez por prepareStatement. */
+    public Sentencia sentencia(String sql) {
+        Sentencia s = porSql.get(sql);
+        if (s != null) return s;
+        String normal = normalizar(sql);
+        s = porSqlNormalizado.get(normal);
+        if (s == null) {
+            s = porSqlNormalizado.size() < MAX_SENTENCIAS
+                    ? porSqlNormalizado.computeIfAbsent(normal, Sentencia::new)
+                    : otras;
+        }
+        if (porSql.size() < MAX_SQL_CACHEADO) porSql.putIfAbsent(sql, s);
+        return s;
+    }
+
+    /**
+     * @param parametros parámetros enlazados (índice 1 en la posición 1), puede ser null
+     * @param ultimo     último índice enlazado
+     * @param lote       número de juegos de parámetros si fue executeBatch, 0 si no
+     */
+    public void ejecucion(Sentencia s, String sql, Object[] parametros, int ultimo, int lote, long nanos, boolean ok) {
+        s.tiempos.registrar(nanos);
+        if (!ok) s.errores.increment();
+        Ambito ambito = AMBITO.get();
+        if (ambito != null) ambito.sentencias.incrementAndGet();
+        if (nanos >= umbralLentaNanos) {
+            lentas.increment();
+            LOG.warning(String.format("[SQL lenta] %.1f ms%s%s: %s%s",
+                    nanos / 1e6,
+                    ok ? "" : " (error)",
+                    lote > 0 ? " lote=" + lote : "",
+                    ESPACIOS.matcher(sql).replaceAll(" ").trim(),
+                    parametros == null ? "" : " " + formatear(parametros, ultimo)));
+        }
+    }
+
+    /* ===== Ámbito por petición HTTP (TiempoRespuestaFilter) ===== */
+
+    /** Abre un ámbito nuevo en el hilo actual. */
+    public Ambito abrirAmbito() {
+        Ambito ambito = new Ambito();
+        AMBITO.set(ambito);
+        return ambito;
+    }
+
+    /** Registra cuántas sentencias ejecutó la petición (el ámbito ya no debe estar asociado a ningún hilo). */
+    public void cerrarAmbito(Ambito ambito) {
+        sentenciasPorPeticion.registrar(ambito.sentencias.get());
+    }
+
+    /** Ámbito del hilo actual, null si no hay; para propagarlo al trabajo asíncrono de la petición. */
+    public static Ambito ambitoActual() {
+        return AMBITO.get();
+    }
+
+    /** Asocia el hilo actual a 'ambito' (null = a ninguno) y devuelve el que tenía. */
+    public static Ambito asociar(Ambito ambito) {
+        Ambito previo = AMBITO.get();
+        if (ambito == null) AMBITO.remove();
+        else AMBITO.set(ambito);
+        return previo;
+    }
+
+    /* ===== Exposición ===== */
+
+    public void escribir(EscritorPrometheus w) {
+        w.familia("inventario_jdbc_adquisicion_segundos", "summary", "Espera por una conexión del DataSource");
+        adquisicion.escribirResumen(w, "inventario_jdbc_adquisicion_segundos", null, 1e9);
+        w.familia("inventario_jdbc_adquisicion_errores_total", "counter", "getConnection() que fallaron");
+        w.muestra("inventario_jdbc_adquisicion_errores_total", erroresAdquisicion.sum());
+
+        w.familia("inventario_jdbc_sentencias_por_peticion", "summary", "Sentencias SQL ejecutadas por petición HTTP");
+        sentenciasPorPeticion.escribirResumen(w, "inventario_jdbc_sentencias_por_peticion", null, 1);
+
+        w.familia("inventario_jdbc_lentas_total", "counter", "Sentencias por encima del umbral de consulta lenta");
+        w.muestra("inventario_jdbc_lentas_total", lentas.sum());
+
+        Map<String, Sentencia> ordenadas = new TreeMap<>(porSqlNormalizado);
+        if (otras.tiempos.total() > 0) ordenadas.put(otras.sql, otras);
+        Map<String, Sentencia> porEtiqueta = new LinkedHashMap<>();
+        ordenadas.values().forEach(s -> porEtiqueta.put(etiquetas("sql", s.sql), s));
+
+        // Una familia tras otra: el formato de texto no admite muestras intercaladas
+        w.familia("inventario_jdbc_sentencia_segundos", "summary", "Tiempo de ejecución por sentencia SQL");
+        porEtiqueta.forEach((et, s) -> s.tiempos.escribirResumen(w, "inventario_jdbc_sentencia_segundos", et, 1e9));
+        w.familia("inventario_jdbc_sentencia_max_segundos", "gauge", "Tiempo máximo por sentencia SQL desde el arranque");
+        porEtiqueta.forEach((et, s) -> w.muestra("inventario_jdbc_sentencia_max_segundos", et, s.tiempos.maximo() / 1e9));
+        w.familia("inventario_jdbc_sentencia_errores_total", "counter", "Ejecuciones que lanzaron SQLException");
+        porEtiqueta.forEach((et, s) -> w.muestra("inventario_jdbc_sentencia_errores_total", et, s.errores.sum()));
+        w.familia("inventario_jdbc_filas_total", "counter", "Filas leídas de los ResultSet");
+        porEtiqueta.forEach((et, s) -> w.muestra("inventario_jdbc_filas_total", et, s.filas.sum()));
+    }
+
+    static String normalizar(String sql) {
+        String s = ESPACIOS.matcher(sql).replaceAll(" ").trim();
+        s = LISTA.matcher(s).replaceAll("(?…)");
+        s = TUPLAS.matcher(s).replaceAll("(?…), …");
+        return s.length() > 300 ? s.substring(0, 300) + "…" : s;
+    }
+
+    private static String formatear(Object[] parametros, int ultimo) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 1; i <= ultimo && i < parametros.length; i++) {
+            if (i > 1) sb.append(", ");
+            Object v = parametros[i];
+            String t = v instanceof byte[] b ? "byte[" + b.length + "]"
+                     : v instanceof Object[] a ? Arrays.toString(a)
+                     : String.valueOf(v);
+            if (t.length() > MAX_LARGO_PARAMETRO) t = t.substring(0, MAX_LARGO_PARAMETRO) + "…";
+            sb.append(v instanceof String ? "'" + t + "'" : t);
+        }
+        return sb.append(']').toString();
+    }
+}
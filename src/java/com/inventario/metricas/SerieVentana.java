@@ -0,0 +1,78 @@
+package com.inventario.metricas;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Serie de latencias con contadores acumulados y percentiles sobre una ventana
+ * deslizante: la ventana actual más la anterior (entre 1 y 2 ventanas de datos).
+ * La rotación la hace, sin candados, el primer hilo que registra o lee tras
+ * vencer la ventana; así una serie sin tráfico no sigue mostrando percentiles viejos.
+ */
+final class SerieVentana {
+
+    private final long ventanaNanos;
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sumaNanos = new LongAdder();
+    private final AtomicLong maximo = new AtomicLong();
+    private final AtomicLong inicioVentana = new AtomicLong(System.nanoTime());
+    private volatile HistogramaLatencia actual = new HistogramaLatencia();
+    private volatile HistogramaLatencia anterior = new HistogramaLatencia();
+    private volatile long inicioAnterior;
+
+    SerieVentana(long ventanaNanos) {
+        this.ventanaNanos = ventanaNanos;
+        this.inicioAnterior = inicioVentana.get() - ventanaNanos;
+    }
+
+    void registrar(long nanos) {
+        rotar(System.nanoTime());
+        actual.registrar(nanos);
+        total.increment();
+        sumaNanos.add(nanos);
+        if (nanos > maximo.get()) maximo.accumulateAndGet(nanos, Math::max);
+    }
+
+    long total() { return total.sum(); }
+    long sumaNanos() { return sumaNanos.sum(); }
+    long maximo() { return maximo.get(); }
+
+    /* Un solo hilo rota; los demás siguen con la que vean */
+    private void rotar(long ahora) {
+        long inicio = inicioVentana.get();
+        if (ahora - inicio <= ventanaNanos || !inicioVentana.compareAndSet(inicio, ahora)) return;
+        if (ahora - inicio > 2 * ventanaNanos) {
+            // Más de dos ventanas sin rotar: lo de la actual ya quedó fuera
+            anterior = new HistogramaLatencia();
+            inicioAnterior = ahora - ventanaNanos;
+        } else {
+            anterior = actual;
+            inicioAnterior = inicio;
+        }
+        actual = new HistogramaLatencia();
+    }
+
+    long percentil(double p) {
+        rotar(System.nanoTime());
+        return HistogramaLatencia.percentil(p, actual, anterior);
+    }
+
+    /** Registros por segundo dentro de la ventana deslizante. */
+    double porSegundo() {
+        rotar(System.nanoTime());
+        HistogramaLatencia act = actual, ant = anterior;
+        double segundos = Math.max(1e-9, (System.nanoTime() - inicioAnterior) / 1e9);
+        return (act.cuenta() + ant.cuenta()) / segundos;
+    }
+
+    /** Emite quantile 0.5/0.95/0.99, _count y _sum de un summary (en segundos si escala = 1e9). */
+    void escribirResumen(EscritorPrometheus w, String nombre, String etiquetas, double escala) {
+        String prefijo = etiquetas == null || etiquetas.isEmpty() ? "" : etiquetas + ",";
+        for (double q : new double[] {50, 95, 99}) {
+            w.muestra(nombre, prefijo + EscritorPrometheus.etiquetas("quantile", Double.toString(q / 100)),
+                    percentil(q) / escala);
+        }
+        w.muestra(nombre + "_count", etiquetas, total());
+        w.muestra(nombre + "_sum", etiquetas, sumaNanos() / escala);
+    }
+}
@@ -0,0 +1,9 @@
+package com.inventario.model;
+
+import java.util.List;
+
+/**
+ * Resultado de una búsqueda de varios códigos: los productos encontrados y
+ * los códigos que no existen, ambos en el orden en que se pidieron.
+ */
+public record BusquedaPorCodigos(List<Producto> encontrados, List<String> faltantes) { }
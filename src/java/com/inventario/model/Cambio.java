@@ -0,0 +1,16 @@
+package com.inventario.model;
+
+/**
+ * Evento del feed de cambios (tabla productos_cambios): secuencia creciente,
+ * tipo de escritura y el producto con su stock tras el cambio.
+ */
+public record Cambio(long secuencia, String tipo, int productoId, String codigo, int stock,
+                     long registradoEnMillis) {
+
+    public static final String ALTA = "alta";
+    public static final String BAJA = "baja";
+    public static final String STOCK = "stock";
+    public static final String IMPORTACION = "importacion";
+    /** Movimiento diferido que no se pudo aplicar (no existe o el stock quedaría negativo). */
+    public static final String STOCK_DESCARTADO = "stock_descartado";
+}
@@ -0,0 +1,27 @@
+package com.inventario.model;
+
+import java.math.BigDecimal;
+import java.util.Set;
+
+/**
+ * Filtros de la búsqueda facetada; los null no filtran.
+ *
+ * @param texto      prefijo del nombre o, con palabras = true, palabras del nombre en cualquier posición
+ * @param palabras   búsqueda por palabras (FULLTEXT en MySQL) en lugar de prefijo
+ * @param categorias una o más categorías (vacío = todas)
+ */
+public record CriteriosBusqueda(String texto, boolean palabras, Set<String> categorias, Boolean activo,
+                                BigDecimal precioMin, BigDecimal precioMax,
+                                Integer stockMin, Integer stockMax) {
+
+    public CriteriosBusqueda {
+        texto = texto == null || texto.isBlank() ? null : texto.trim();
+        categorias = categorias == null ? Set.of() : Set.copyOf(categorias);
+    }
+
+    /** ¿Hay algún filtro además de la categoría? (si no, las facetas salen del contador) */
+    public boolean filtraAdemasDeCategoria() {
+        return texto != null || activo != null || precioMin != null || precioMax != null
+                || stockMin != null || stockMax != null;
+    }
+}
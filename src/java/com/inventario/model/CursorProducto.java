@@ -0,0 +1,60 @@
+package com.inventario.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Posición en el listado ordenado por (nombre, id).
+ * Se entrega al cliente como token opaco (Base64 URL) para la paginación keyset.
+ */
+public final class CursorProducto {
+
+    private final boolean siguiente;
+    private final String nombre;
+    private final int id;
+
+    private CursorProducto(boolean siguiente, String nombre, int id) {
+        this.siguiente = siguiente;
+        this.nombre = nombre;
+        this.id = id;
+    }
+
+    /** Cursor que avanza a las filas posteriores a p. */
+    public static CursorProducto despuesDe(Producto p) {
+        return new CursorProducto(true, p.getNombre(), p.getId());
+    }
+
+    public static CursorProducto despuesDe(ProductoVista p) {
+        return new CursorProducto(true, p.nombre(), p.id());
+    }
+
+    /** Cursor que retrocede a las filas anteriores a p. */
+    public static CursorProducto antesDe(ProductoVista p) {
+        return new CursorProducto(false, p.nombre(), p.id());
+    }
+
+    public boolean isSiguiente() { return siguiente; }
+    public String getNombre() { return nombre; }
+    public int getId() { return id; }
+
+    public String codificar() {
+        String plano = (siguiente ? "s" : "a") + "|" + id + "|" + nombre;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(plano.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static CursorProducto decodificar(String token) {
+        try {
+            String plano = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int a = plano.indexOf('|');
+            int b = plano.indexOf('|', a + 1);
+            if (a != 1 || b < 0) throw new IllegalArgumentException("Cursor inválido.");
+            char dir = plano.charAt(0);
+            if (dir != 's' && dir != 'a') throw new IllegalArgumentException("Cursor inválido.");
+            int id = Integer.parseInt(plano.substring(a + 1, b));
+            return new CursorProducto(dir == 's', plano.substring(b + 1), id);
+        } catch (IllegalArgumentException e) { // incluye NumberFormatException y Base64 mal formado
+            throw new IllegalArgumentException("Cursor inválido.", e);
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.inventario.model;
+
+/**
+ * Fila rechazada en una importación: número de línea, código (si se pudo
+ * leer) y motivo.
+ */
+public record ErrorImportacion(int fila, String codigo, String mensaje) { }
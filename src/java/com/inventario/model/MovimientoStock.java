@@ -0,0 +1,6 @@
+package com.inventario.model;
+
+/**
+ * Movimiento de stock de un SKU: cantidad positiva = entrada, negativa = salida.
+ */
+public record MovimientoStock(String codigo, int cantidad) { }
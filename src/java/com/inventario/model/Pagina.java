@@ -0,0 +1,23 @@
+package com.inventario.model;
+
+import java.util.List;
+
+/**
+ * Página de resultados con los tokens de continuación hacia adelante y atrás
+ * (null cuando no hay más filas en esa dirección).
+ */
+public class Pagina<T> {
+    private final List<T> items;
+    private final String siguiente;
+    private final String anterior;
+
+    public Pagina(List<T> items, String siguiente, String anterior) {
+        this.items = items;
+        this.siguiente = siguiente;
+        this.anterior = anterior;
+    }
+
+    public List<T> getItems() { return items; }
+    public String getSiguiente() { return siguiente; }
+    public String getAnterior() { return anterior; }
+}
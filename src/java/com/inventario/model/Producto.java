@@ -24,6 +24,12 @@ public class Producto {
         this.activo = activo;
     }
 
+    /** Copia superficial (los campos son inmutables); la usa la cache para no compartir instancias. */
+    public Producto(Producto otro) {
+        this(otro.codigo, otro.nombre, otro.categoria, otro.precio, otro.stock, otro.activo);
+        this.id = otro.id;
+    }
+
     public Integer getId() { return id; }
     public void setId(Integer id) { this.id = id; }
 
@@ -70,6 +76,6 @@ public class Producto {
 
     @Override
     public int hashCode() {
-        return id != null ? Objects.hash(id) : Objects.hash(codigo);
+        return id != null ? id.hashCode() : Objects.hashCode(codigo);
     }
 }
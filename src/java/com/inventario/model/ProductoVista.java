@@ -0,0 +1,66 @@
+package com.inventario.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Producto de solo lectura para los caminos de lectura (listados, búsqueda):
+ * campos primitivos, precio en centavos y categoría canónica compartida, sin
+ * boxing ni BigDecimal por fila. Producto (mutable) queda para formularios,
+ * validación y escrituras.
+ *
+ * Los getX() son para los JSP: EL 5 (Jakarta EE 10) no resuelve los
+ * componentes de un record como propiedades.
+ */
+public record ProductoVista(int id, String codigo, String nombre, String categoria,
+                            long centavos, int stock, boolean activo) {
+
+    private static final int MAX_CATEGORIAS = 256;
+    private static final ConcurrentHashMap<String, String> CATEGORIAS = new ConcurrentHashMap<>();
+
+    /** Misma instancia para la misma categoría (hay pocas y se repiten en cada fila); acotado. */
+    public static String categoriaCanonica(String categoria) {
+        if (categoria == null) return null;
+        String c = CATEGORIAS.get(categoria);
+        if (c != null) return c;
+        if (CATEGORIAS.size() >= MAX_CATEGORIAS) return categoria;
+        c = CATEGORIAS.putIfAbsent(categoria, categoria);
+        return c == null ? categoria : c;
+    }
+
+    /**
+     * Precio en centavos (HALF_UP). Hasta 15 dígitos con escala <= 2 el paso
+     * por double es exacto y no crea objetos; si no, se usa la vía BigDecimal.
+     */
+    public static long centavos(BigDecimal precio) {
+        if (precio.scale() <= 2 && precio.precision() <= 15) return Math.round(precio.doubleValue() * 100);
+        return precio.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static ProductoVista de(Producto p) {
+        return new ProductoVista(p.getId() == null ? 0 : p.getId(), p.getCodigo(), p.getNombre(),
+                categoriaCanonica(p.getCategoria()), p.getPrecio() == null ? 0 : centavos(p.getPrecio()),
+                p.getStock() == null ? 0 : p.getStock(), Boolean.TRUE.equals(p.getActivo()));
+    }
+
+    /** Precio como BigDecimal de escala 2 (se crea en cada llamada). */
+    public BigDecimal precio() {
+        return BigDecimal.valueOf(centavos, 2);
+    }
+
+    public Producto aProducto() {
+        Producto p = new Producto(codigo, nombre, categoria, precio(), stock, activo);
+        p.setId(id);
+        return p;
+    }
+
+    /* ===== Propiedades para EL ===== */
+    public int getId() { return id; }
+    public String getCodigo() { return codigo; }
+    public String getNombre() { return nombre; }
+    public String getCategoria() { return categoria; }
+    public BigDecimal getPrecio() { return precio(); }
+    public int getStock() { return stock; }
+    public boolean isActivo() { return activo; }
+}
@@ -0,0 +1,11 @@
+package com.inventario.model;
+
+import java.util.Map;
+
+/**
+ * Página de la búsqueda más el conteo por categoría de todo lo que coincide
+ * (sin aplicar el filtro de categoría, para poder cambiarlo). Con muchas
+ * coincidencias las facetas se cuentan sobre una muestra acotada y
+ * facetasExactas es false.
+ */
+public record ResultadoBusqueda(Pagina<ProductoVista> pagina, Map<String, Long> facetas, boolean facetasExactas) { }
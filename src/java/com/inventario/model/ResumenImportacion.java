@@ -0,0 +1,39 @@
+package com.inventario.model;
+
+/**
+ * Totales de una importación masiva. Los errores por fila se entregan
+ * aparte, a medida que ocurren, para no acumularlos en memoria.
+ */
+public class ResumenImportacion {
+    private long leidas;
+    private long rechazadas;
+    private long guardadas;
+    private long omitidas;
+    private long filasAfectadas;
+    private long transacciones;
+    private long millis;
+
+    public long getLeidas() { return leidas; }
+    public void setLeidas(long leidas) { this.leidas = leidas; }
+
+    public long getRechazadas() { return rechazadas; }
+    public void setRechazadas(long rechazadas) { this.rechazadas = rechazadas; }
+
+    /** Filas que insertaron o actualizaron un producto. */
+    public long getGuardadas() { return guardadas; }
+    public void setGuardadas(long guardadas) { this.guardadas = guardadas; }
+
+    /** Filas válidas ignoradas por duplicadas (código ya vivo con duplicados=ignorar). */
+    public long getOmitidas() { return omitidas; }
+    public void setOmitidas(long omitidas) { this.omitidas = omitidas; }
+
+    /** Filas afectadas según MySQL (1 por insert, 2 por update, 0 sin cambios). */
+    public long getFilasAfectadas() { return filasAfectadas; }
+    public void setFilasAfectadas(long filasAfectadas) { this.filasAfectadas = filasAfectadas; }
+
+    public long getTransacciones() { return transacciones; }
+    public void setTransacciones(long transacciones) { this.transacciones = transacciones; }
+
+    public long getMillis() { return millis; }
+    public void setMillis(long millis) { this.millis = millis; }
+}
@@ -0,0 +1,207 @@
+package com.inventario.persistence;
+
+import com.inventario.metricas.MetricasJdbc;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+/**
+ * DataSource que envuelve al del pool y mide, con proxies dinámicos sobre
+ * Connection / Statement / ResultSet, la espera por conexión, el tiempo de
+ * cada ejecución, las filas leídas y los parámetros enlazados (para el log
+ * de consultas lentas). Todo se vuelca en {@link MetricasJdbc}.
+ * Statement.getConnection() y ResultSet.getStatement() devuelven los proxies,
+ * no los objetos del driver, para que lo ejecutado a través de ellos también cuente.
+ */
+public final class DataSourceInstrumentado implements DataSource {
+
+    private static final ClassLoader CARGADOR = DataSourceInstrumentado.class.getClassLoader();
+
+    private final DataSource ds;
+    private final MetricasJdbc metricas;
+
+    public DataSourceInstrumentado(DataSource ds, MetricasJdbc metricas) {
+        this.ds = ds;
+        this.metricas = metricas;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return adquirir(null, null);
+    }
+
+    @Override
+    public Connection getConnection(String usuario, String clave) throws SQLException {
+        return adquirir(usuario, clave);
+    }
+
+    private Connection adquirir(String usuario, String clave) throws SQLException {
+        long inicio = System.nanoTime();
+        Connection con;
+        try {
+            con = usuario == null ? ds.getConnection() : ds.getConnection(usuario, clave);
+        } catch (SQLException | RuntimeException e) {
+            metricas.adquisicion(System.nanoTime() - inicio, false);
+            throw e;
+        }
+        metricas.adquisicion(System.nanoTime() - inicio, true);
+        return (Connection) Proxy.newProxyInstance(CARGADOR,
+                new Class<?>[] {Connection.class}, new Conexion(con));
+    }
+
+    /* ===== Delegación ===== */
+
+    @Override public PrintWriter getLogWriter() throws SQLException { return ds.getLogWriter(); }
+    @Override public void setLogWriter(PrintWriter out) throws SQLException { ds.setLogWriter(out); }
+    @Override public void setLoginTimeout(int seconds) throws SQLException { ds.setLoginTimeout(seconds); }
+    @Override public int getLoginTimeout() throws SQLException { return ds.getLoginTimeout(); }
+    @Override public Logger getParentLogger() throws SQLFeatureNotSupportedException { return ds.getParentLogger(); }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return iface.isInstance(this) ? iface.cast(this) : ds.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || ds.isWrapperFor(iface);
+    }
+
+    /* ===== Proxies ===== */
+
+    private static Object invocar(Object destino, Method m, Object[] args) throws Throwable {
+        try {
+            return m.invoke(destino, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private final class Conexion implements InvocationHandler {
+        private final Connection con;
+
+        Conexion(Connection con) { this.con = con; }
+
+        @Override
+        public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+            switch (m.getName()) {
+                case "prepareStatement", "prepareCall" -> {
+                    String sql = (String) args[0];
+                    Object st = invocar(con, m, args);
+                    Class<?> tipo = st instanceof CallableStatement ? CallableStatement.class : PreparedStatement.class;
+                    return Proxy.newProxyInstance(CARGADOR, new Class<?>[] {tipo},
+                            new Sentencia((Connection) proxy, (Statement) st, metricas.sentencia(sql), sql));
+                }
+                case "createStatement" -> {
+                    Object st = invocar(con, m, args);
+                    return Proxy.newProxyInstance(CARGADOR, new Class<?>[] {Statement.class},
+                            new Sentencia((Connection) proxy, (Statement) st, null, null));
+                }
+                case "unwrap" -> {
+                    return ((Class<?>) args[0]).isInstance(proxy) ? proxy : invocar(con, m, args);
+                }
+                default -> {
+                    return invocar(con, m, args);
+                }
+            }
+        }
+    }
+
+    private final class Sentencia implements InvocationHandler {
+        private final Connection conexion;                // el proxy
+        private final Statement st;
+        private final MetricasJdbc.Sentencia preparada;   // null para Statement simple
+        private final String sql;
+        private Object[] parametros;
+        private int ultimoIndice;
+        private int lote;
+
+        Sentencia(Connection conexion, Statement st, MetricasJdbc.Sentencia preparada, String sql) {
+            this.conexion = conexion;
+            this.st = st;
+            this.preparada = preparada;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+            String nombre = m.getName();
+            if (nombre.startsWith("execute")) {
+                return ejecutar(proxy, m, args);
+            }
+            if (nombre.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer i
+                    && m.getDeclaringClass() != Statement.class) {
+                enlazar(i, nombre.equals("setNull") ? null : args[1]);
+            } else if (nombre.equals("clearParameters")) {
+                parametros = null;
+                ultimoIndice = 0;
+            } else if (nombre.equals("addBatch")) {
+                lote++;
+            } else if (nombre.equals("clearBatch")) {
+                lote = 0;
+            } else if (nombre.equals("getResultSet") || nombre.equals("getGeneratedKeys")) {
+                return envolver((ResultSet) invocar(st, m, args), preparada, (Statement) proxy);
+            } else if (nombre.equals("getConnection")) {
+                return conexion;
+            }
+            return invocar(st, m, args);
+        }
+
+        private Object ejecutar(Object proxy, Method m, Object[] args) throws Throwable {
+            MetricasJdbc.Sentencia s = preparada;
+            String texto = sql;
+            if (args != null && args.length > 0 && args[0] instanceof String directo) {
+                texto = directo;
+                s = metricas.sentencia(directo);
+            } else if (s == null) {
+                // executeBatch de un Statement simple: SQL heterogéneo
+                texto = "(lote de Statement)";
+                s = metricas.sentencia(texto);
+            }
+            boolean loteado = m.getName().endsWith("Batch");
+            int enLote = loteado ? lote : 0;
+            if (loteado) lote = 0;
+
+            long inicio = System.nanoTime();
+            boolean ok = false;
+            try {
+                Object r = invocar(st, m, args);
+                ok = true;
+                return r instanceof ResultSet rs ? envolver(rs, s, (Statement) proxy) : r;
+            } finally {
+                metricas.ejecucion(s, texto, parametros, ultimoIndice, enLote, System.nanoTime() - inicio, ok);
+            }
+        }
+
+        private void enlazar(int indice, Object valor) {
+            if (parametros == null) parametros = new Object[Math.max(indice + 1, 8)];
+            else if (indice >= parametros.length) parametros = Arrays.copyOf(parametros, Math.max(indice + 1, parametros.length * 2));
+            parametros[indice] = valor;
+            ultimoIndice = Math.max(ultimoIndice, indice);
+        }
+    }
+
+    /* s null: no se cuentan filas, pero getStatement() sigue devolviendo el proxy */
+    private static ResultSet envolver(ResultSet rs, MetricasJdbc.Sentencia s, Statement sentencia) {
+        if (rs == null) return null;
+        return (ResultSet) Proxy.newProxyInstance(CARGADOR, new Class<?>[] {ResultSet.class}, (proxy, m, args) -> {
+            if (m.getName().equals("getStatement")) return sentencia;
+            Object r = invocar(rs, m, args);
+            if (s != null && r == Boolean.TRUE && m.getName().equals("next")) s.filaLeida();
+            return r;
+        });
+    }
+}
@@ -0,0 +1,212 @@
+package com.inventario.persistence;
+
+import javax.sql.DataSource;
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reparte las lecturas entre las réplicas (round-robin) y deja las escrituras
+ * y lo que necesita el dato al día en la primaria.
+ *
+ * Una réplica puede ir atrasada respecto a la primaria, así que durante
+ * ventanaMs después de una escritura van a la primaria:
+ * - todas las lecturas de la sesión que escribió (Marca, asociada al hilo por
+ *   LecturaPropiaFilter), para que vea lo que acaba de hacer;
+ * - las lecturas de los códigos escritos, en esta instancia o en otra (aviso
+ *   del bus de invalidación), para no volver a cachear la versión vieja.
+ * Una réplica que falla al dar conexión queda fuera castigoMs.
+ */
+public class EnrutadorLecturas {
+
+    private static final Logger LOG = Logger.getLogger(EnrutadorLecturas.class.getName());
+
+    /** Códigos recientes recordados; pasado esto se manda todo a la primaria durante la ventana. */
+    private static final int MAX_RECIENTES = 10_000;
+
+    /** Atributo de sesión con la Marca de la sesión. */
+    public static final String ATRIBUTO_SESION = "inventario.marcaLectura";
+
+    /** Hasta cuándo las lecturas de una sesión van a la primaria; se guarda en la sesión. */
+    public static final class Marca implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private volatile long primariaHastaMillis;
+
+        public boolean activa() {
+            return System.currentTimeMillis() < primariaHastaMillis;
+        }
+    }
+
+    private static final ThreadLocal<Marca> MARCA = new ThreadLocal<>();
+
+    private final DataSource primaria;
+    private final List<DataSource> replicas;
+    private final long ventanaMs;
+    private final long castigoMs;
+    private final AtomicInteger turno = new AtomicInteger();
+    private final AtomicLongArray fueraHasta;
+    private final ConcurrentHashMap<String, Long> recientes = new ConcurrentHashMap<>();
+    private volatile long todoPrimariaHasta;
+
+    private final LongAdder lecturasReplica = new LongAdder();
+    private final LongAdder lecturasPrimaria = new LongAdder();
+    private final LongAdder porSesion = new LongAdder();
+    private final LongAdder porCodigo = new LongAdder();
+    private final LongAdder fallosReplica = new LongAdder();
+
+    public EnrutadorLecturas(DataSource primaria, List<DataSource> replicas, long ventanaMs, long castigoMs) {
+        this.primaria = primaria;
+        this.replicas = List.copyOf(replicas);
+        this.ventanaMs = Math.max(0, ventanaMs);
+        this.castigoMs = Math.max(0, castigoMs);
+        this.fueraHasta = new AtomicLongArray(this.replicas.size());
+    }
+
+    /* ===== Marca de la sesión (la fija LecturaPropiaFilter; EjecutorPeticiones la propaga) ===== */
+
+    /** Marca de la petición que atiende este hilo, o null. */
+    public static Marca marcaActual() {
+        return MARCA.get();
+    }
+
+    /** Asocia la marca al hilo actual (null la quita) y devuelve la anterior. */
+    public static Marca asociar(Marca marca) {
+        Marca previa = MARCA.get();
+        if (marca == null) MARCA.remove();
+        else MARCA.set(marca);
+        return previa;
+    }
+
+    /* ===== Escrituras ===== */
+
+    /** Una escritura de esta instancia hizo commit: la sesión y los códigos van a la primaria. */
+    public void escribio(Collection<String> codigos, boolean todo) {
+        Marca m = MARCA.get();
+        if (m != null && !replicas.isEmpty()) m.primariaHastaMillis = System.currentTimeMillis() + ventanaMs;
+        escrituraRemota(codigos, todo);
+    }
+
+    /** Escritura de otra instancia (o de esta, vista por el bus): solo los códigos. */
+    public void escrituraRemota(Collection<String> codigos, boolean todo) {
+        if (replicas.isEmpty() || ventanaMs == 0) return;
+        long hasta = System.currentTimeMillis() + ventanaMs;
+        if (todo || recientes.size() + codigos.size() > MAX_RECIENTES) {
+            olvidarVencidos();
+            if (todo || recientes.size() + codigos.size() > MAX_RECIENTES) {
+                todoPrimariaHasta = hasta;
+                recientes.clear();
+                return;
+            }
+        }
+        for (String c : codigos) recientes.put(clave(c), hasta);
+    }
+
+    /* MySQL compara los códigos sin distinguir mayúsculas: "abc" y "ABC" son el mismo producto */
+    private static String clave(String codigo) {
+        return codigo.trim().toUpperCase(Locale.ROOT);
+    }
+
+    private void olvidarVencidos() {
+        long ahora = System.currentTimeMillis();
+        recientes.values().removeIf(h -> h <= ahora);
+    }
+
+    /* ===== Lecturas ===== */
+
+    /** true si hay réplicas y la última escritura cae dentro de la ventana de retraso. */
+    public boolean puedeIrAtrasada(long ultimaEscrituraMillis) {
+        return !replicas.isEmpty() && System.currentTimeMillis() - ultimaEscrituraMillis < ventanaMs;
+    }
+
+    /** true si el código (sin distinguir mayúsculas) se escribió dentro de la ventana (sin réplicas, siempre false). */
+    public boolean escritoRecientemente(String codigo) {
+        if (replicas.isEmpty()) return false;
+        long ahora = System.currentTimeMillis();
+        if (ahora < todoPrimariaHasta) return true;
+        String clave = clave(codigo);
+        Long hasta = recientes.get(clave);
+        if (hasta == null) return false;
+        if (hasta > ahora) return true;
+        recientes.remove(clave, hasta);
+        return false;
+    }
+
+    /** Conexión para una lectura que tolera el retraso de la réplica (salvo la marca de la sesión). */
+    public Connection lectura() throws SQLException {
+        if (replicas.isEmpty()) return primaria.getConnection();
+        Marca m = MARCA.get();
+        if (m != null && m.activa()) {
+            porSesion.increment();
+            return primariaContada();
+        }
+        return replica();
+    }
+
+    /** Conexión para leer estos códigos: a la primaria si alguno se escribió hace poco. */
+    public Connection lectura(Collection<String> codigos) throws SQLException {
+        if (replicas.isEmpty()) return primaria.getConnection();
+        for (String c : codigos) {
+            if (escritoRecientemente(c)) {
+                porCodigo.increment();
+                return primariaContada();
+            }
+        }
+        return lectura();
+    }
+
+    private Connection primariaContada() throws SQLException {
+        lecturasPrimaria.increment();
+        return primaria.getConnection();
+    }
+
+    /* Round-robin saltando las castigadas; si ninguna responde, la primaria */
+    private Connection replica() throws SQLException {
+        int n = replicas.size();
+        int inicio = Math.floorMod(turno.getAndIncrement(), n);
+        long ahora = System.currentTimeMillis();
+        for (int i = 0; i < n; i++) {
+            int r = (inicio + i) % n;
+            if (fueraHasta.get(r) > ahora) continue;
+            try {
+                Connection con = replicas.get(r).getConnection();
+                lecturasReplica.increment();
+                return con;
+            } catch (SQLException e) {
+                fallosReplica.increment();
+                fueraHasta.set(r, ahora + castigoMs);
+                LOG.log(Level.WARNING, "[Réplicas] La réplica " + r + " no responde; fuera " + castigoMs + " ms", e);
+            }
+        }
+        return primariaContada();
+    }
+
+    /** Contadores para /metricas. */
+    public Map<String, Long> estadisticas() {
+        long ahora = System.currentTimeMillis();
+        long disponibles = 0;
+        for (int i = 0; i < fueraHasta.length(); i++) {
+            if (fueraHasta.get(i) <= ahora) disponibles++;
+        }
+        Map<String, Long> m = new LinkedHashMap<>();
+        m.put("replicas", (long) replicas.size());
+        m.put("disponibles", disponibles);
+        m.put("lecturasReplica", lecturasReplica.sum());
+        m.put("lecturasPrimaria", lecturasPrimaria.sum());
+        m.put("porSesion", porSesion.sum());
+        m.put("porCodigo", porCodigo.sum());
+        m.put("fallosReplica", fallosReplica.sum());
+        m.put("codigosRecientes", (long) recientes.size());
+        return m;
+    }
+}
@@ -0,0 +1,14 @@
+package com.inventario.persistence;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Convierte la fila actual del ResultSet en un objeto. En ProductoDAO las
+ * columnas llegan por posición: 1 id, 2 codigo, 3 nombre, 4 categoria,
+ * 5 precio, 6 stock, 7 activo.
+ */
+@FunctionalInterface
+public interface MapeadorFila<T> {
+    T mapear(ResultSet rs) throws SQLException;
+}
@@ -0,0 +1,235 @@
+package com.inventario.persistence;
+
+import java.sql.*;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Logger;
+
+/**
+ * Migrador versionado del esquema.
+ * Se ejecuta una sola vez al desplegar (ver InventarioListener) y registra
+ * cada versión aplicada en la tabla esquema_version, de modo que el DAO
+ * nunca emite DDL durante una petición.
+ *
+ * En MySQL el DDL hace commit implícito, por eso cada paso debe ser idempotente
+ * (CREATE ... IF NOT EXISTS, crearIndiceSiFalta) y poder reintentarse.
+ */
+public class MigradorEsquema {
+
+    private static final Logger LOG = Logger.getLogger(MigradorEsquema.class.getName());
+
+    /** Un paso de migración: recibe la conexión dentro de la transacción del migrador. */
+    @FunctionalInterface
+    public interface Paso {
+        void aplicar(Connection con) throws SQLException;
+    }
+
+    /** Versión + descripción + paso. Las versiones deben ser crecientes. */
+    public record Migracion(int version, String descripcion, Paso paso) { }
+
+    private static final List<Migracion> MIGRACIONES = List.of(
+        new Migracion(1, "Tabla productos", con -> ejecutar(con, """
+            CREATE TABLE IF NOT EXISTS productos (
+              id        INT AUTO_INCREMENT PRIMARY KEY,
+              codigo    VARCHAR(50)  NOT NULL UNIQUE,
+              nombre    VARCHAR(120) NOT NULL,
+              categoria VARCHAR(80)  NULL,
+              precio    DECIMAL(12,2) NOT NULL DEFAULT 0.00,
+              stock     INT NOT NULL DEFAULT 0,
+              activo    TINYINT(1) NOT NULL DEFAULT 1
+            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4
+            """)),
+        new Migracion(2, "Índices por categoría y nombre", con -> {
+            crearIndiceSiFalta(con, "productos", "idx_categoria", "categoria");
+            // (nombre, id) cubre el ORDER BY nombre y sirve de desempate estable
+            crearIndiceSiFalta(con, "productos", "idx_nombre", "nombre, id");
+        }),
+        new Migracion(3, "Segmentos del journal de stock ya aplicados", con -> ejecutar(con, """
+            CREATE TABLE IF NOT EXISTS stock_journal_aplicado (
+              segmento    VARCHAR(100) PRIMARY KEY,
+              aplicado_en TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4
+            """)),
+        new Migracion(4, "Índices para la búsqueda facetada", con -> {
+            // Filtros por categoría + activo con rango de precio; rango de stock (reposición)
+            crearIndiceSiFalta(con, "productos", "idx_categoria_activo_precio", "categoria, activo, precio");
+            crearIndiceSiFalta(con, "productos", "idx_stock", "stock");
+            // FULLTEXT solo existe en MySQL/MariaDB; la primera vez InnoDB reconstruye la tabla
+            if (esMySql(con) && !existeIndice(con, "productos", ProductoDAO.INDICE_TEXTO)) {
+                ejecutar(con, "ALTER TABLE productos ADD FULLTEXT INDEX " + ProductoDAO.INDICE_TEXTO + " (nombre)");
+            }
+        }),
+        new Migracion(5, "Marca de modificación para la analítica incremental", con -> {
+            if (!existeColumna(con, "productos", "actualizado_en")) {
+                ejecutar(con, """
+                    ALTER TABLE productos ADD COLUMN actualizado_en TIMESTAMP(3) NOT NULL
+                      DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3)
+                    """);
+            }
+            crearIndiceSiFalta(con, "productos", "idx_actualizado_en", "actualizado_en");
+        }),
+        new Migracion(6, "Bajas lógicas (lápidas) y tabla de archivo", con -> {
+            if (!existeColumna(con, "productos", "eliminado")) {
+                ejecutar(con, "ALTER TABLE productos ADD COLUMN eliminado TINYINT(1) NOT NULL DEFAULT 0");
+            }
+            // MySQL no tiene índices parciales: eliminado va primero y las consultas
+            // con eliminado = 0 usan el resto del índice como antes
+            crearIndiceSiFalta(con, "productos", "idx_vivos_nombre", "eliminado, nombre, id");
+            crearIndiceSiFalta(con, "productos", "idx_vivos_categoria", "eliminado, categoria, activo, precio");
+            for (String viejo : new String[] { "idx_nombre", "idx_categoria", "idx_categoria_activo_precio" }) {
+                borrarIndiceSiExiste(con, "productos", viejo);
+            }
+            ejecutar(con, """
+                CREATE TABLE IF NOT EXISTS productos_archivo (
+                  archivo_id   BIGINT AUTO_INCREMENT PRIMARY KEY,
+                  id           INT NOT NULL,
+                  codigo       VARCHAR(50)  NOT NULL,
+                  nombre       VARCHAR(120) NOT NULL,
+                  categoria    VARCHAR(80)  NULL,
+                  precio       DECIMAL(12,2) NOT NULL,
+                  stock        INT NOT NULL,
+                  activo       TINYINT(1) NOT NULL,
+                  eliminado_en TIMESTAMP(3) NULL,
+                  archivado_en TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3)
+                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4
+                """);
+            crearIndiceSiFalta(con, "productos_archivo", "idx_archivo_codigo", "codigo");
+        }),
+        new Migracion(7, "Feed de cambios (outbox)", con -> ejecutar(con, """
+            CREATE TABLE IF NOT EXISTS productos_cambios (
+              secuencia     BIGINT AUTO_INCREMENT PRIMARY KEY,
+              tipo          VARCHAR(20) NOT NULL,
+              producto_id   INT NOT NULL,
+              codigo        VARCHAR(50) NOT NULL,
+              stock         INT NOT NULL,
+              registrado_en TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3)
+            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4
+            """)),
+        new Migracion(8, "Índice por fecha de archivo para la analítica incremental", con ->
+            crearIndiceSiFalta(con, "productos_archivo", "idx_archivo_fecha", "archivado_en")),
+        new Migracion(9, "Reemisión de cambios confirmados tarde", con -> {
+            if (!existeColumna(con, "productos_cambios", "reemite_de")) {
+                ejecutar(con, "ALTER TABLE productos_cambios ADD COLUMN reemite_de BIGINT NULL");
+            }
+            // Único: si varias instancias ven el mismo cambio tardío, solo una lo reemite
+            if (!existeIndice(con, "productos_cambios", "uq_cambios_reemite")) {
+                ejecutar(con, "CREATE UNIQUE INDEX uq_cambios_reemite ON productos_cambios (reemite_de)");
+            }
+        })
+    );
+
+    private final List<Migracion> migraciones;
+
+    public MigradorEsquema() {
+        this(MIGRACIONES);
+    }
+
+    public MigradorEsquema(List<Migracion> migraciones) {
+        this.migraciones = migraciones;
+    }
+
+    /**
+     * Aplica las migraciones pendientes y devuelve la versión final del esquema.
+     */
+    public int migrar(Connection con) throws SQLException {
+        ejecutar(con, """
+            CREATE TABLE IF NOT EXISTS esquema_version (
+              version     INT PRIMARY KEY,
+              descripcion VARCHAR(200) NOT NULL,
+              aplicado_en TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+            )
+            """);
+
+        int actual = versionActual(con);
+        boolean autoCommit = con.getAutoCommit();
+        try {
+            for (Migracion m : migraciones) {
+                if (m.version() <= actual) continue;
+
+                con.setAutoCommit(false);
+                try {
+                    m.paso().aplicar(con);
+                    registrar(con, m);
+                    con.commit();
+                } catch (SQLException e) {
+                    con.rollback();
+                    // Otro nodo pudo haber aplicado la misma versión en paralelo
+                    if (versionActual(con) >= m.version()) continue;
+                    throw new SQLException("Falló la migración " + m.version() + " (" + m.descripcion() + ")", e);
+                }
+                LOG.info(() -> "[Esquema] Migración " + m.version() + " aplicada: " + m.descripcion());
+                actual = m.version();
+            }
+        } finally {
+            con.setAutoCommit(autoCommit);
+        }
+        return actual;
+    }
+
+    public int versionActual(Connection con) throws SQLException {
+        try (Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COALESCE(MAX(version), 0) FROM esquema_version")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static void registrar(Connection con, Migracion m) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(
+                "INSERT INTO esquema_version (version, descripcion) VALUES (?, ?)")) {
+            ps.setInt(1, m.version());
+            ps.setString(2, m.descripcion());
+            ps.executeUpdate();
+        }
+    }
+
+    /* ---------- util para los pasos ---------- */
+
+    static void ejecutar(Connection con, String sql) throws SQLException {
+        try (Statement st = con.createStatement()) {
+            st.executeUpdate(sql);
+        }
+    }
+
+    /* MySQL no admite CREATE INDEX IF NOT EXISTS; el script inicial ya declara algunos */
+    static void crearIndiceSiFalta(Connection con, String tabla, String indice, String columnas)
+            throws SQLException {
+        if (existeIndice(con, tabla, indice)) return;
+        ejecutar(con, "CREATE INDEX " + indice + " ON " + tabla + " (" + columnas + ")");
+    }
+
+    static void borrarIndiceSiExiste(Connection con, String tabla, String indice) throws SQLException {
+        if (!existeIndice(con, tabla, indice)) return;
+        ejecutar(con, "ALTER TABLE " + tabla + " DROP INDEX " + indice);
+    }
+
+    static boolean existeColumna(Connection con, String tabla, String columna) throws SQLException {
+        DatabaseMetaData md = con.getMetaData();
+        for (String t : new String[] { tabla, tabla.toUpperCase(Locale.ROOT) }) {
+            try (ResultSet rs = md.getColumns(con.getCatalog(), null, t, null)) {
+                while (rs.next()) {
+                    if (columna.equalsIgnoreCase(rs.getString("COLUMN_NAME"))) return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    static boolean esMySql(Connection con) throws SQLException {
+        String producto = con.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT);
+        return producto.contains("mysql") || producto.contains("mariadb");
+    }
+
+    static boolean existeIndice(Connection con, String tabla, String indice) throws SQLException {
+        DatabaseMetaData md = con.getMetaData();
+        for (String t : new String[] { tabla, tabla.toUpperCase(Locale.ROOT) }) {
+            try (ResultSet rs = md.getIndexInfo(con.getCatalog(), null, t, false, true)) {
+                while (rs.next()) {
+                    String nombre = rs.getString("INDEX_NAME");
+                    if (nombre != null && nombre.equalsIgnoreCase(indice)) return true;
+                }
+            }
+        }
+        return false;
+    }
+}
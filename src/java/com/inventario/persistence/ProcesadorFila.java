@@ -0,0 +1,14 @@
+package com.inventario.persistence;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Recibe cada fila de un recorrido en streaming directamente desde el
+ * ResultSet, sin construir objetos intermedios. Las columnas llegan en el
+ * orden documentado por el método del DAO que lo invoca.
+ */
+@FunctionalInterface
+public interface ProcesadorFila {
+    void procesar(ResultSet rs) throws SQLException;
+}
@@ -1,63 +1,115 @@
 package com.inventario.persistence;
 
+import com.inventario.model.Cambio;
+import com.inventario.model.CriteriosBusqueda;
+import com.inventario.model.CursorProducto;
 import com.inventario.model.Producto;
+import com.inventario.model.ProductoVista;
 
 import java.math.BigDecimal;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
 
 /**
- * Data Access Object para Producto
+ * Data Access Object para Producto.
+ * Es stateless: la conexión llega en cada llamada y el esquema lo prepara
+ * MigradorEsquema al desplegar, así que una sola instancia se reutiliza.
+ *
+ * Las bajas son lápidas (eliminado = 1) que PurgadorEliminados archiva y borra
+ * más tarde; todas las lecturas y ajustes filtran eliminado = 0.
  */
 public class ProductoDAO {
-    private final Connection con;
 
-    public ProductoDAO(Connection con) throws SQLException {
-        this.con = con;
-        ensureSchema();
-    }
+    /** Mapeadores de fila: Producto (bean mutable) o ProductoVista (solo lectura, sin boxing). */
+    public static final MapeadorFila<Producto> PRODUCTO = ProductoDAO::mapRow;
+    public static final MapeadorFila<ProductoVista> VISTA = ProductoDAO::mapVista;
 
-    /* Crea la tabla si no existe (MySQL) */
-    private void ensureSchema() throws SQLException {
-        final String sql = """
-            CREATE TABLE IF NOT EXISTS productos (
-              id        INT AUTO_INCREMENT PRIMARY KEY,
-              codigo    VARCHAR(50)  NOT NULL UNIQUE,
-              nombre    VARCHAR(120) NOT NULL,
-              categoria VARCHAR(80)  NULL,
-              precio    DECIMAL(12,2) NOT NULL DEFAULT 0.00,
-              stock     INT NOT NULL DEFAULT 0,
-              activo    TINYINT(1) NOT NULL DEFAULT 1
-            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4
-            """;
-        try (Statement st = con.createStatement()) {
-            st.executeUpdate(sql);
-        }
+    /* ===== Listado paginado ===== */
+    public List<Producto> listar(Connection con, int limit, int offset) throws SQLException {
+        return listar(con, limit, offset, PRODUCTO);
     }
 
-    /* ===== Listado paginado ===== */
-    public List<Producto> listar(int limit, int offset) throws SQLException {
+    public <T> List<T> listar(Connection con, int limit, int offset, MapeadorFila<T> mapeador) throws SQLException {
         final String sql = """
             SELECT id, codigo, nombre, categoria, precio, stock, activo
             FROM productos
-            ORDER BY nombre ASC
+            WHERE eliminado = 0
+            ORDER BY nombre ASC, id ASC
             LIMIT ? OFFSET ?
             """;
-        List<Producto> out = new ArrayList<>();
+        List<T> out = new ArrayList<>();
         try (PreparedStatement ps = con.prepareStatement(sql)) {
             ps.setInt(1, Math.max(1, limit));
             ps.setInt(2, Math.max(0, offset));
             try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) out.add(mapRow(rs));
+                while (rs.next()) out.add(mapeador.mapear(rs));
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Listado keyset sobre idx_vivos_nombre (eliminado, nombre, id): cualquier página cuesta lo
+     * mismo que la primera. Con cursor hacia atrás las filas vuelven en orden
+     * descendente; la fachada las invierte.
+     */
+    public List<Producto> listarKeyset(Connection con, CursorProducto cursor, int limit) throws SQLException {
+        return listarKeyset(con, cursor, limit, PRODUCTO);
+    }
+
+    public <T> List<T> listarKeyset(Connection con, CursorProducto cursor, int limit,
+                                    MapeadorFila<T> mapeador) throws SQLException {
+        final String sql;
+        if (cursor == null) {
+            sql = """
+                SELECT id, codigo, nombre, categoria, precio, stock, activo
+                FROM productos
+                WHERE eliminado = 0
+                ORDER BY nombre ASC, id ASC
+                LIMIT ?
+                """;
+        } else if (cursor.isSiguiente()) {
+            sql = """
+                SELECT id, codigo, nombre, categoria, precio, stock, activo
+                FROM productos
+                WHERE eliminado = 0 AND (nombre > ? OR (nombre = ? AND id > ?))
+                ORDER BY nombre ASC, id ASC
+                LIMIT ?
+                """;
+        } else {
+            sql = """
+                SELECT id, codigo, nombre, categoria, precio, stock, activo
+                FROM productos
+                WHERE eliminado = 0 AND (nombre < ? OR (nombre = ? AND id < ?))
+                ORDER BY nombre DESC, id DESC
+                LIMIT ?
+                """;
+        }
+        List<T> out = new ArrayList<>();
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            int i = 1;
+            if (cursor != null) {
+                ps.setString(i++, cursor.getNombre());
+                ps.setString(i++, cursor.getNombre());
+                ps.setInt(i++, cursor.getId());
+            }
+            ps.setInt(i, Math.max(1, limit));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) out.add(mapeador.mapear(rs));
             }
         }
         return out;
     }
 
-    public int contar() throws SQLException {
-        final String sql = "SELECT COUNT(*) FROM productos";
+    public int contar(Connection con) throws SQLException {
+        final String sql = "SELECT COUNT(*) FROM productos WHERE eliminado = 0";
         try (PreparedStatement ps = con.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
             rs.next();
@@ -65,12 +117,154 @@ public class ProductoDAO {
         }
     }
 
+    /** Conteo por categoría (recorre solo idx_vivos_categoria). La clave puede ser null. */
+    public Map<String, Long> contarPorCategoria(Connection con) throws SQLException {
+        final String sql = "SELECT categoria, COUNT(*) FROM productos WHERE eliminado = 0 GROUP BY categoria";
+        Map<String, Long> out = new HashMap<>();
+        try (PreparedStatement ps = con.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) out.put(rs.getString(1), rs.getLong(2));
+        }
+        return out;
+    }
+
+    /** Estimación de filas según las estadísticas de InnoDB (MySQL); incluye las lápidas aún sin purgar. */
+    public long estimarTotal(Connection con) throws SQLException {
+        final String sql = """
+            SELECT TABLE_ROWS FROM information_schema.TABLES
+            WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'productos'
+            """;
+        try (PreparedStatement ps = con.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Recorre la tabla en orden de id con un ResultSet forward-only y de solo
+     * lectura, entregando cada fila al procesador sin materializarla.
+     * Columnas: 1 id, 2 codigo, 3 nombre, 4 categoria, 5 precio, 6 stock, 7 activo.
+     * Con MySQL, fetchSize = Integer.MIN_VALUE hace que el driver transmita fila a fila.
+     * Devuelve el número de filas recorridas.
+     */
+    public long recorrer(Connection con, String categoria, Boolean activo, int fetchSize,
+                         ProcesadorFila procesador) throws SQLException {
+        StringBuilder sql = new StringBuilder(
+                "SELECT id, codigo, nombre, categoria, precio, stock, activo FROM productos");
+        sql.append(" WHERE eliminado = 0");
+        if (categoria != null) sql.append(" AND categoria = ?");
+        if (activo != null) sql.append(" AND activo = ?");
+        sql.append(" ORDER BY id");
+
+        long filas = 0;
+        try (PreparedStatement ps = con.prepareStatement(sql.toString(),
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(fetchSize);
+            int i = 1;
+            if (categoria != null) ps.setString(i++, categoria);
+            if (activo != null) ps.setBoolean(i, activo);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    procesador.procesar(rs);
+                    filas++;
+                }
+            }
+        }
+        return filas;
+    }
+
+    /**
+     * Como recorrer, para la analítica: filas modificadas desde 'desde' en orden
+     * de id, incluidas las que pasaron a lápida; con desde = null, todas las vivas.
+     * Columnas 1 a 7 como en recorrer, 8 actualizado_en y 9 eliminado.
+     */
+    public long recorrerCambios(Connection con, Timestamp desde, int fetchSize,
+                                ProcesadorFila procesador) throws SQLException {
+        String sql = "SELECT id, codigo, nombre, categoria, precio, stock, activo, actualizado_en, eliminado"
+                + " FROM productos" + (desde == null ? " WHERE eliminado = 0" : " WHERE actualizado_en >= ?")
+                + " ORDER BY id";
+        long filas = 0;
+        try (PreparedStatement ps = con.prepareStatement(sql,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(fetchSize);
+            if (desde != null) ps.setTimestamp(1, desde);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    procesador.procesar(rs);
+                    filas++;
+                }
+            }
+        }
+        return filas;
+    }
+
+    /**
+     * Las filas de estos ids (ordenados de menor a mayor), con las columnas de
+     * recorrerCambios y en orden de id; los que ya no existen no aparecen.
+     */
+    public long recorrerPorIds(Connection con, List<Integer> ids, ProcesadorFila procesador) throws SQLException {
+        long filas = 0;
+        for (int desde = 0; desde < ids.size(); desde += MAX_IN) {
+            List<Integer> trozo = ids.subList(desde, Math.min(ids.size(), desde + MAX_IN));
+            String sql = "SELECT id, codigo, nombre, categoria, precio, stock, activo, actualizado_en, eliminado"
+                    + " FROM productos WHERE id IN (" + marcadores(trozo.size()) + ") ORDER BY id";
+            try (PreparedStatement ps = con.prepareStatement(sql)) {
+                int i = 1;
+                for (int id : trozo) ps.setInt(i++, id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        procesador.procesar(rs);
+                        filas++;
+                    }
+                }
+            }
+        }
+        return filas;
+    }
+
+    /** Ids archivados (purgados de productos) desde el instante dado. */
+    public List<Integer> idsArchivados(Connection con, Timestamp desde) throws SQLException {
+        final String sql = "SELECT id FROM productos_archivo WHERE archivado_en >= ?";
+        List<Integer> out = new ArrayList<>();
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            ps.setTimestamp(1, desde);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) out.add(rs.getInt(1));
+            }
+        }
+        return out;
+    }
+
     /* ===== Búsqueda, inserción y eliminación ===== */
-    public Optional<Producto> buscarPorCodigo(String codigo) throws SQLException {
+    public Optional<Producto> buscarPorId(Connection con, int id) throws SQLException {
+        return buscarPorId(con, id, false);
+    }
+
+    /** Igual que buscarPorId pero bloquea la fila (SELECT ... FOR UPDATE); requiere transacción. */
+    public Optional<Producto> bloquearPorId(Connection con, int id) throws SQLException {
+        return buscarPorId(con, id, true);
+    }
+
+    private Optional<Producto> buscarPorId(Connection con, int id, boolean bloquear) throws SQLException {
         final String sql = """
             SELECT id, codigo, nombre, categoria, precio, stock, activo
             FROM productos
-            WHERE codigo = ?
+            WHERE id = ? AND eliminado = 0
+            """ + (bloquear ? " FOR UPDATE" : "");
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) return Optional.of(mapRow(rs));
+                return Optional.empty();
+            }
+        }
+    }
+
+    public Optional<Producto> buscarPorCodigo(Connection con, String codigo) throws SQLException {
+        final String sql = """
+            SELECT id, codigo, nombre, categoria, precio, stock, activo
+            FROM productos
+            WHERE codigo = ? AND eliminado = 0
             """;
         try (PreparedStatement ps = con.prepareStatement(sql)) {
             ps.setString(1, codigo);
@@ -81,7 +275,7 @@ public class ProductoDAO {
         }
     }
 
-    public void insertar(Producto p) throws SQLException {
+    public void insertar(Connection con, Producto p) throws SQLException {
         final String sql = """
             INSERT INTO productos (codigo, nombre, categoria, precio, stock, activo)
             VALUES (?, ?, ?, ?, ?, ?)
@@ -103,24 +297,538 @@ public class ProductoDAO {
         }
     }
 
-    public void eliminarPorId(int id) throws SQLException {
-        final String sql = "DELETE FROM productos WHERE id = ?";
+    /**
+     * Inserción multi-fila (un solo INSERT ... VALUES (...),(...)) para importaciones.
+     * Los códigos repetidos se resuelven con ON DUPLICATE KEY: se actualizan los
+     * datos o, con actualizar=false, se dejan como estaban (salvo que fueran una lápida).
+     * Devuelve las filas afectadas que informa el driver.
+     */
+    public int insertarLote(Connection con, List<Producto> lote, boolean actualizar) throws SQLException {
+        if (lote.isEmpty()) return 0;
+        StringBuilder sql = new StringBuilder(80 + lote.size() * 20)
+                .append("INSERT INTO productos (codigo, nombre, categoria, precio, stock, activo) VALUES ");
+        for (int i = 0; i < lote.size(); i++) {
+            sql.append(i == 0 ? "(?, ?, ?, ?, ?, ?)" : ", (?, ?, ?, ?, ?, ?)");
+        }
+        // MySQL 8.0.20 depreca VALUES(col) en ON DUPLICATE KEY UPDATE: desde 8.0.19 se usa
+        // un alias de fila. H2 y los MySQL anteriores solo entienden VALUES(col).
+        String nuevo;
+        if (aliasDeFila(con)) {
+            sql.append(" AS nuevo");
+            nuevo = "nuevo.%s";
+        } else {
+            nuevo = "VALUES(%s)";
+        }
+        // Un código en lápida se revive con los datos nuevos también con actualizar=false;
+        // eliminado va al final porque MySQL asigna de izquierda a derecha
+        sql.append(" ON DUPLICATE KEY UPDATE");
+        String sep = " ";
+        for (String col : new String[] {"nombre", "categoria", "precio", "stock", "activo"}) {
+            String valor = nuevo.formatted(col);
+            // Con actualizar=false la columna conserva su valor salvo en una lápida que se revive
+            sql.append(sep).append(col).append(" = ")
+               .append(actualizar ? valor : "CASE WHEN eliminado = 1 THEN " + valor + " ELSE " + col + " END");
+            sep = ", ";
+        }
+        sql.append(", eliminado = 0");
+
+        try (PreparedStatement ps = con.prepareStatement(sql.toString())) {
+            int i = 1;
+            for (Producto p : lote) {
+                ps.setString(i++, p.getCodigo());
+                ps.setString(i++, p.getNombre());
+                ps.setString(i++, p.getCategoria());
+                ps.setBigDecimal(i++, p.getPrecio() != null ? p.getPrecio() : BigDecimal.ZERO);
+                ps.setInt(i++, p.getStock() != null ? p.getStock() : 0);
+                ps.setBoolean(i++, p.getActivo() != null ? p.getActivo() : Boolean.TRUE);
+            }
+            return ps.executeUpdate();
+        }
+    }
+
+    /* ===== Stock ===== */
+
+    /**
+     * Suma delta al stock en una sola sentencia condicional: no se aplica si
+     * dejaría el stock negativo o si el código no existe (devuelve false).
+     */
+    public boolean ajustarStock(Connection con, String codigo, int delta) throws SQLException {
+        final String sql = "UPDATE productos SET stock = stock + ? WHERE codigo = ? AND eliminado = 0 AND stock + ? >= 0";
         try (PreparedStatement ps = con.prepareStatement(sql)) {
-            ps.setInt(1, id);
+            ps.setInt(1, delta);
+            ps.setString(2, codigo);
+            ps.setInt(3, delta);
+            return ps.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Varios ajustes condicionales en un lote JDBC, en el orden de iteración de
+     * netos (la fachada pasa un mapa ordenado por código para bloquear siempre
+     * en el mismo orden). Con rewriteBatchedStatements=true, Connector/J lo envía
+     * en un solo viaje. Devuelve los update counts en ese mismo orden.
+     */
+    public int[] ajustarStocks(Connection con, Map<String, Integer> netos) throws SQLException {
+        final String sql = "UPDATE productos SET stock = stock + ? WHERE codigo = ? AND eliminado = 0 AND stock + ? >= 0";
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            for (Map.Entry<String, Integer> e : netos.entrySet()) {
+                ps.setInt(1, e.getValue());
+                ps.setString(2, e.getKey());
+                ps.setInt(3, e.getValue());
+                ps.addBatch();
+            }
+            return ps.executeBatch();
+        }
+    }
+
+    public Optional<Integer> leerStock(Connection con, String codigo) throws SQLException {
+        final String sql = "SELECT stock FROM productos WHERE codigo = ? AND eliminado = 0";
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            ps.setString(1, codigo);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? Optional.of(rs.getInt(1)) : Optional.empty();
+            }
+        }
+    }
+
+    /** Stock actual de varios códigos (los inexistentes no aparecen). */
+    public Map<String, Integer> leerStocks(Connection con, Collection<String> codigos) throws SQLException {
+        Map<String, Integer> out = new HashMap<>();
+        for (List<String> trozo : trozos(codigos)) {
+            String sql = "SELECT codigo, stock FROM productos WHERE eliminado = 0 AND codigo IN ("
+                    + marcadores(trozo.size()) + ")";
+            try (PreparedStatement ps = con.prepareStatement(sql)) {
+                int i = 1;
+                for (String c : trozo) ps.setString(i++, c);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) out.put(rs.getString(1), rs.getInt(2));
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Productos de varios códigos, por código tal como está en la base.
+     * Los inexistentes no aparecen. Una consulta por cada MAX_IN códigos.
+     */
+    public Map<String, Producto> buscarPorCodigos(Connection con, Collection<String> codigos) throws SQLException {
+        Map<String, Producto> out = new HashMap<>();
+        for (List<String> trozo : trozos(codigos)) {
+            String sql = """
+                SELECT id, codigo, nombre, categoria, precio, stock, activo
+                FROM productos
+                WHERE eliminado = 0 AND codigo IN (%s)
+                """.formatted(marcadores(trozo.size()));
+            try (PreparedStatement ps = con.prepareStatement(sql)) {
+                int i = 1;
+                for (String c : trozo) ps.setString(i++, c);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        Producto p = mapRow(rs);
+                        out.put(p.getCodigo(), p);
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    /** ¿Ya se aplicó este segmento del journal de stock diferido? */
+    public boolean segmentoAplicado(Connection con, String segmento) throws SQLException {
+        final String sql = "SELECT 1 FROM stock_journal_aplicado WHERE segmento = ?";
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            ps.setString(1, segmento);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /** Marca el segmento como aplicado; debe ir en la misma transacción que sus ajustes. */
+    public void registrarSegmento(Connection con, String segmento) throws SQLException {
+        final String sql = "INSERT INTO stock_journal_aplicado (segmento) VALUES (?)";
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            ps.setString(1, segmento);
             ps.executeUpdate();
         }
     }
 
+    /** Olvida segmentos cuyo archivo ya se borró: no queda nada que reaplicar. */
+    public int olvidarSegmentos(Connection con, Collection<String> segmentos) throws SQLException {
+        int n = 0;
+        for (List<String> trozo : trozos(segmentos)) {
+            String sql = "DELETE FROM stock_journal_aplicado WHERE segmento IN (%s)".formatted(marcadores(trozo.size()));
+            try (PreparedStatement ps = con.prepareStatement(sql)) {
+                int i = 1;
+                for (String c : trozo) ps.setString(i++, c);
+                n += ps.executeUpdate();
+            }
+        }
+        return n;
+    }
+
+    /** Deja la fila como lápida (eliminado = 1). Devuelve true si estaba viva. */
+    public boolean eliminarPorId(Connection con, int id) throws SQLException {
+        final String sql = "UPDATE productos SET eliminado = 1 WHERE id = ? AND eliminado = 0";
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            ps.setInt(1, id);
+            return ps.executeUpdate() > 0;
+        }
+    }
+
+    /* ===== Purga de lápidas ===== */
+
+    /**
+     * Hasta 'limite' ids en lápida, bloqueados (FOR UPDATE) hasta el commit para
+     * que nadie los reviva entre el archivo y el borrado; requiere transacción.
+     */
+    public List<Integer> bloquearEliminados(Connection con, int limite) throws SQLException {
+        final String sql = "SELECT id FROM productos WHERE eliminado = 1 LIMIT ? FOR UPDATE";
+        List<Integer> out = new ArrayList<>();
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            ps.setInt(1, Math.max(1, limite));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) out.add(rs.getInt(1));
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Copia las lápidas de 'ids' a productos_archivo y las borra de productos.
+     * Debe ir en la misma transacción que bloquearEliminados. Devuelve las filas borradas.
+     */
+    public int archivar(Connection con, List<Integer> ids) throws SQLException {
+        if (ids.isEmpty()) return 0;
+        String en = marcadores(ids.size());
+        try (PreparedStatement copia = con.prepareStatement("""
+                INSERT INTO productos_archivo (id, codigo, nombre, categoria, precio, stock, activo, eliminado_en)
+                SELECT id, codigo, nombre, categoria, precio, stock, activo, actualizado_en
+                FROM productos
+                WHERE eliminado = 1 AND id IN (%s)
+                """.formatted(en));
+             PreparedStatement borrado = con.prepareStatement(
+                "DELETE FROM productos WHERE eliminado = 1 AND id IN (" + en + ")")) {
+            for (int i = 0; i < ids.size(); i++) {
+                copia.setInt(i + 1, ids.get(i));
+                borrado.setInt(i + 1, ids.get(i));
+            }
+            copia.executeUpdate();
+            return borrado.executeUpdate();
+        }
+    }
+
+    /**
+     * Archiva ya la lápida que ocupe 'codigo' (la columna es UNIQUE), para poder
+     * darlo de alta de nuevo sin esperar a la purga; requiere transacción.
+     */
+    public boolean liberarCodigo(Connection con, String codigo) throws SQLException {
+        final String sql = "SELECT id FROM productos WHERE codigo = ? AND eliminado = 1 FOR UPDATE";
+        Integer id = null;
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            ps.setString(1, codigo);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) id = rs.getInt(1);
+            }
+        }
+        return id != null && archivar(con, List.of(id)) > 0;
+    }
+
+    /* ===== Feed de cambios (outbox) ===== */
+
+    /**
+     * Registra un cambio por cada código con el estado actual de la fila (también
+     * si es una lápida). Debe ir en la transacción de la escritura que lo causa:
+     * el evento existe si y solo si la escritura hizo commit.
+     */
+    public int registrarCambios(Connection con, String tipo, Collection<String> codigos) throws SQLException {
+        int n = 0;
+        for (List<String> trozo : trozos(codigos)) {
+            String sql = """
+                INSERT INTO productos_cambios (tipo, producto_id, codigo, stock)
+                SELECT ?, id, codigo, stock FROM productos WHERE codigo IN (%s)
+                """.formatted(marcadores(trozo.size()));
+            try (PreparedStatement ps = con.prepareStatement(sql)) {
+                int i = 1;
+                ps.setString(i++, tipo);
+                for (String c : trozo) ps.setString(i++, c);
+                n += ps.executeUpdate();
+            }
+        }
+        return n;
+    }
+
+    /** Cambios con desde < secuencia <= hasta, en orden, como mucho 'limite'. */
+    public List<Cambio> leerCambios(Connection con, long desde, long hasta, int limite) throws SQLException {
+        final String sql = """
+            SELECT secuencia, tipo, producto_id, codigo, stock, registrado_en
+            FROM productos_cambios
+            WHERE secuencia > ? AND secuencia <= ?
+            ORDER BY secuencia
+            LIMIT ?
+            """;
+        List<Cambio> out = new ArrayList<>();
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            ps.setLong(1, desde);
+            ps.setLong(2, hasta);
+            ps.setInt(3, Math.max(1, limite));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    out.add(new Cambio(rs.getLong(1), rs.getString(2), rs.getInt(3), rs.getString(4),
+                            rs.getInt(5), rs.getTimestamp(6).getTime()));
+                }
+            }
+        }
+        return out;
+    }
+
+    /** Cambios dentro de los rangos [desde, hasta] dados, en orden, como mucho 'limite'. */
+    public List<Cambio> leerCambiosEnRangos(Connection con, List<long[]> rangos, int limite) throws SQLException {
+        if (rangos.isEmpty()) return List.of();
+        StringBuilder donde = new StringBuilder();
+        for (int i = 0; i < rangos.size(); i++) {
+            donde.append(i == 0 ? "" : " OR ").append("secuencia BETWEEN ? AND ?");
+        }
+        final String sql = """
+            SELECT secuencia, tipo, producto_id, codigo, stock, registrado_en
+            FROM productos_cambios
+            WHERE %s
+            ORDER BY secuencia
+            LIMIT ?
+            """.formatted(donde);
+        List<Cambio> out = new ArrayList<>();
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            int i = 1;
+            for (long[] r : rangos) {
+                ps.setLong(i++, r[0]);
+                ps.setLong(i++, r[1]);
+            }
+            ps.setInt(i, Math.max(1, limite));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    out.add(new Cambio(rs.getLong(1), rs.getString(2), rs.getInt(3), rs.getString(4),
+                            rs.getInt(5), rs.getTimestamp(6).getTime()));
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Copia el cambio 'secuencia' con una secuencia nueva (reemite_de = la
+     * original). false si otra instancia ya lo había reemitido.
+     */
+    public boolean reemitirCambio(Connection con, long secuencia) throws SQLException {
+        final String sql = """
+            INSERT INTO productos_cambios (tipo, producto_id, codigo, stock, reemite_de)
+            SELECT tipo, producto_id, codigo, stock, secuencia FROM productos_cambios WHERE secuencia = ?
+            """;
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            ps.setLong(1, secuencia);
+            return ps.executeUpdate() > 0;
+        } catch (SQLIntegrityConstraintViolationException yaReemitido) {
+            return false;
+        }
+    }
+
+    /** Menor y mayor secuencia presentes ({0, 0} si la tabla está vacía). */
+    public long[] rangoCambios(Connection con) throws SQLException {
+        final String sql = "SELECT COALESCE(MIN(secuencia), 0), COALESCE(MAX(secuencia), 0) FROM productos_cambios";
+        try (PreparedStatement ps = con.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            return new long[] { rs.getLong(1), rs.getLong(2) };
+        }
+    }
+
+    /**
+     * Borra cambios registrados antes de 'antes' con secuencia < 'tope' (un rango
+     * de la clave primaria, para que cada DELETE sea corto). Devuelve las filas borradas.
+     */
+    public int borrarCambios(Connection con, long tope, Timestamp antes) throws SQLException {
+        final String sql = "DELETE FROM productos_cambios WHERE secuencia < ? AND registrado_en < ?";
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            ps.setLong(1, tope);
+            ps.setTimestamp(2, antes);
+            return ps.executeUpdate();
+        }
+    }
+
+    /* ===== Búsqueda facetada ===== */
+
+    /** Nombre del índice FULLTEXT sobre nombre (MigradorEsquema v4, solo MySQL). */
+    public static final String INDICE_TEXTO = "ft_nombre";
+
+    /* innodb_ft_min_token_size por defecto: las palabras más cortas no están en el índice */
+    private static final int MIN_PALABRA_TEXTO = 3;
+    private static final Pattern SEPARADORES = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    public boolean soportaTextoCompleto(Connection con) throws SQLException {
+        return MigradorEsquema.existeIndice(con, "productos", INDICE_TEXTO);
+    }
+
+    /**
+     * Productos que cumplen los criterios, ordenados por (nombre, id) y a partir
+     * del cursor si se indica. El texto por prefijo usa idx_vivos_nombre; por palabras
+     * usa MATCH ... AGAINST si hay FULLTEXT y, si no, LIKE '%palabra%' (recorre la tabla).
+     */
+    public <T> List<T> buscar(Connection con, CriteriosBusqueda c, boolean textoCompleto,
+                              CursorProducto despues, int limit, MapeadorFila<T> mapeador) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        StringBuilder where = filtro(c, textoCompleto, true, params);
+        if (despues != null) {
+            // Forma equivalente a (nombre, id) > (?, ?) que aprovecha el índice en MySQL y H2
+            y(where).append("nombre >= ? AND (nombre > ? OR id > ?)");
+            params.add(despues.getNombre());
+            params.add(despues.getNombre());
+            params.add(despues.getId());
+        }
+        params.add(Math.max(1, limit));
+        String sql = "SELECT id, codigo, nombre, categoria, precio, stock, activo FROM productos"
+                + where + " ORDER BY nombre ASC, id ASC LIMIT ?";
+
+        List<T> out = new ArrayList<>();
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            enlazar(ps, params);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) out.add(mapeador.mapear(rs));
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Conteo por categoría de lo que cumple los criterios, ignorando el filtro de
+     * categoría. Cuenta como mucho 'maximo' filas (muestra acotada); el llamador
+     * sabe que el resultado es exacto si la suma es menor que 'maximo'.
+     */
+    public Map<String, Long> facetasCategoria(Connection con, CriteriosBusqueda c, boolean textoCompleto,
+                                              int maximo) throws SQLException {
+        List<Object> params = new ArrayList<>();
+        StringBuilder where = filtro(c, textoCompleto, false, params);
+        params.add(maximo);
+        String sql = "SELECT categoria, COUNT(*) FROM (SELECT categoria FROM productos"
+                + where + " LIMIT ?) t GROUP BY categoria";
+
+        Map<String, Long> out = new HashMap<>();
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            enlazar(ps, params);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) out.put(rs.getString(1), rs.getLong(2));
+            }
+        }
+        return out;
+    }
+
+    private static StringBuilder filtro(CriteriosBusqueda c, boolean textoCompleto, boolean conCategoria,
+                                        List<Object> params) {
+        StringBuilder w = new StringBuilder();
+        y(w).append("eliminado = 0");
+        if (c.texto() != null) {
+            if (!c.palabras()) {
+                y(w).append("nombre LIKE ? ESCAPE '!'");
+                params.add(escaparLike(c.texto()) + "%");
+            } else {
+                List<String> palabras = new ArrayList<>();
+                for (String p : SEPARADORES.split(c.texto())) if (!p.isEmpty()) palabras.add(p);
+                boolean indexables = !palabras.isEmpty()
+                        && palabras.stream().allMatch(p -> p.length() >= MIN_PALABRA_TEXTO);
+                if (textoCompleto && indexables) {
+                    StringBuilder q = new StringBuilder();
+                    for (String p : palabras) q.append(q.length() == 0 ? "+" : " +").append(p).append('*');
+                    y(w).append("MATCH(nombre) AGAINST (? IN BOOLEAN MODE)");
+                    params.add(q.toString());
+                } else {
+                    for (String p : palabras) {
+                        y(w).append("nombre LIKE ? ESCAPE '!'");
+                        params.add("%" + escaparLike(p) + "%");
+                    }
+                }
+            }
+        }
+        if (conCategoria && !c.categorias().isEmpty()) {
+            y(w).append("categoria IN (").append(marcadores(c.categorias().size())).append(')');
+            params.addAll(new TreeSet<>(c.categorias()));
+        }
+        if (c.activo() != null) {
+            y(w).append("activo = ?");
+            params.add(c.activo());
+        }
+        if (c.precioMin() != null) { y(w).append("precio >= ?"); params.add(c.precioMin()); }
+        if (c.precioMax() != null) { y(w).append("precio <= ?"); params.add(c.precioMax()); }
+        if (c.stockMin() != null) { y(w).append("stock >= ?"); params.add(c.stockMin()); }
+        if (c.stockMax() != null) { y(w).append("stock <= ?"); params.add(c.stockMax()); }
+        return w;
+    }
+
+    /* ¿Admite INSERT ... AS alias ON DUPLICATE KEY UPDATE? (MySQL >= 8.0.19) */
+    private static boolean aliasDeFila(Connection con) throws SQLException {
+        DatabaseMetaData md = con.getMetaData();
+        if (!"MySQL".equalsIgnoreCase(md.getDatabaseProductName())) return false;
+        int mayor = md.getDatabaseMajorVersion(), menor = md.getDatabaseMinorVersion();
+        if (mayor != 8 || menor != 0) return mayor > 8 || (mayor == 8 && menor > 0);
+        // 8.0.x: el parche solo viene en el texto de la versión ("8.0.35", "8.0.19-log")
+        String[] v = md.getDatabaseProductVersion().split("[.\\-]");
+        try {
+            return v.length > 2 && Integer.parseInt(v[2].replaceAll("\\D.*", "")) >= 19;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static StringBuilder y(StringBuilder where) {
+        return where.append(where.length() == 0 ? " WHERE " : " AND ");
+    }
+
+    private static String escaparLike(String s) {
+        return s.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
+    private static void enlazar(PreparedStatement ps, List<Object> params) throws SQLException {
+        int i = 1;
+        for (Object v : params) {
+            if (v instanceof String t) ps.setString(i++, t);
+            else if (v instanceof Integer n) ps.setInt(i++, n);
+            else if (v instanceof BigDecimal d) ps.setBigDecimal(i++, d);
+            else if (v instanceof Boolean b) ps.setBoolean(i++, b);
+            else ps.setObject(i++, v);
+        }
+    }
+
     /* ---------- util ---------- */
-    private Producto mapRow(ResultSet rs) throws SQLException {
+    /* Listas IN acotadas: MAX_IN parámetros por sentencia */
+    private static final int MAX_IN = 500;
+
+    private static List<List<String>> trozos(Collection<String> codigos) {
+        List<String> todos = new ArrayList<>(codigos);
+        List<List<String>> out = new ArrayList<>();
+        for (int i = 0; i < todos.size(); i += MAX_IN) {
+            out.add(todos.subList(i, Math.min(todos.size(), i + MAX_IN)));
+        }
+        return out;
+    }
+
+    private static String marcadores(int n) {
+        return "?" + ", ?".repeat(n - 1);
+    }
+
+    /* Por posición: todos los SELECT de producto piden id, codigo, nombre, categoria, precio, stock, activo */
+    private static Producto mapRow(ResultSet rs) throws SQLException {
         Producto p = new Producto();
-        p.setId(rs.getInt("id"));
-        p.setCodigo(rs.getString("codigo"));
-        p.setNombre(rs.getString("nombre"));
-        p.setCategoria(rs.getString("categoria"));
-        p.setPrecio(rs.getBigDecimal("precio"));
-        p.setStock(rs.getInt("stock"));
-        p.setActivo(rs.getBoolean("activo"));
+        p.setId(rs.getInt(1));
+        p.setCodigo(rs.getString(2));
+        p.setNombre(rs.getString(3));
+        p.setCategoria(rs.getString(4));
+        p.setPrecio(rs.getBigDecimal(5));
+        p.setStock(rs.getInt(6));
+        p.setActivo(rs.getBoolean(7));
         return p;
     }
+
+    private static ProductoVista mapVista(ResultSet rs) throws SQLException {
+        return new ProductoVista(rs.getInt(1), rs.getString(2), rs.getString(3),
+                ProductoVista.categoriaCanonica(rs.getString(4)), ProductoVista.centavos(rs.getBigDecimal(5)),
+                rs.getInt(6), rs.getBoolean(7));
+    }
 }
@@ -148,8 +148,35 @@
   </table>
 </div>
 
-<!-- Paginador -->
+<!-- Paginador: por cursor (por defecto) o por número de página (?page=, heredado) -->
 <div style="margin-top:10px; display:flex; align-items:center; gap:10px; flex-wrap:wrap;">
+<c:choose>
+  <c:when test="${modoCursor}">
+  <span>Mostrando ${fn:length(productos)} de ${total}</span>
+
+  <div>
+    <c:choose>
+      <c:when test="${not empty cursorAnterior}">
+        <c:url var="urlAnterior" value="/productos"><c:param name="cursor" value="${cursorAnterior}"/></c:url>
+        <a href="${urlAnterior}">&laquo; Anterior</a>
+      </c:when>
+      <c:otherwise>
+        <span style="color:#999;">&laquo; Anterior</span>
+      </c:otherwise>
+    </c:choose>
+
+    <c:choose>
+      <c:when test="${not empty cursorSiguiente}">
+        <c:url var="urlSiguiente" value="/productos"><c:param name="cursor" value="${cursorSiguiente}"/></c:url>
+        <a href="${urlSiguiente}" style="margin-left:8px;">Siguiente &raquo;</a>
+      </c:when>
+      <c:otherwise>
+        <span style="color:#999; margin-left:8px;">Siguiente &raquo;</span>
+      </c:otherwise>
+    </c:choose>
+  </div>
+  </c:when>
+  <c:otherwise>
   <span>
     <c:set var="from" value="${(page - 1) * limit + 1}" />
     <c:set var="to"   value="${(page * limit) > total ? total : (page * limit)}" />
@@ -177,6 +204,8 @@
       </c:otherwise>
     </c:choose>
   </div>
+  </c:otherwise>
+</c:choose>
 </div>
 
 <div class="form-section">